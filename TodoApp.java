@@ -2,40 +2,108 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
+
 import java.io.*;
 import java.nio.file.*;
-import java.text.*;
 import java.util.*;
 import java.util.List;
-import java.util.Timer;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.function.IntSupplier;
+import java.util.function.ToIntFunction;
+
+import todo.*;
+
+import static todo.SnapshotFiles.*;
+import static todo.TaskEngine.DEFAULT_REMIND_MINUTES;
+import static todo.TaskEngine.newBackgroundExecutor;
+import static todo.Tasks.*;
 
 public class TodoApp extends JFrame {
     // UI components
     private JTable table;
-    private DefaultTableModel model;
+    private final TaskEngine engine = TaskEngine.fromSystemProperties();
+    private final TaskStore store = engine.store;
+    private TaskTableModel model;
+    private final FilterEngine filters = engine.filters;
+    private final RowStyles rowStyles = new RowStyles();
     private JTextField tfTask, tfSearch;
     private JLabel status;
     private JSpinner spinnerDue;
     private JComboBox<String> cbPriority;
-    private JComboBox<String> cbFilter;
-    private JCheckBox cbDarkMode;
+    private JComboBox<String> cbFilter, cbSort;
+    private JCheckBox cbDarkMode, cbMetrics, cbLive;
+    private JButton btnUndo, btnRedo;
+    private JLabel metricsLabel;
     private JSpinner spinnerNotifyAhead; // minutes before due to notify
 
-    private final Path saveFile = Paths.get("todo.csv");
-    private final SimpleDateFormat dtFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-
     // color theme 
     private Color bg = new Color(250, 245, 255);
     private Color headerStart = new Color(190, 0, 255);
     private Color headerEnd = new Color(255, 0, 150);
     private Color statusBarColor = new Color(190,0,255);
 
-    // Timer for notifications
-    private Timer notifyTimer;
+    private final NotificationDispatcher notifier = new NotificationDispatcher(this, this::status);
+
+    // Search runs off the EDT: keystrokes are coalesced, evaluated on a background
+    // executor, and only the newest result is published back to the table.
+    private static final int SEARCH_DEBOUNCE_MS = 120;
+    private static final int ARCHIVE_VIEW_ROWS = 100_000; // most archived tasks one search shows
+    private final ExecutorService searchExecutor = newBackgroundExecutor("todo-search");
+    private javax.swing.Timer searchDebounce;
+    private Future<?> pendingSearch;
+    private long searchGeneration;
+
+    // The EDT only reads published snapshots and never takes the store lock. GUI
+    // changes run on the writer thread, so a long write elsewhere (a bulk API call,
+    // a compaction) cannot stall the window.
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "todo-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Snapshots arrive from whichever thread wrote, with the slots they changed.
+    // They are merged here and applied to the table in one pass on the EDT; past
+    // BULK_REFRESH_ROWS slots, or when slots were renumbered, the query is re-run.
+    private static final int BULK_REFRESH_ROWS = 256;
+    private final IntList changedSlots = new IntList(); // guarded by itself
+    private TaskSnapshot latestSnapshot;                 // guarded by changedSlots
+    private boolean requeryPending, drainPending;        // guarded by changedSlots
+    // where slots went each time the store renumbered them, by the epoch they left,
+    // so the selection can follow its tasks into the re-run query
+    private final Map<Long, int[]> renumberings = new HashMap<>(); // guarded by changedSlots
+    // EDT only: the query the rows answer, and slots patched while a search was running.
+    // rowsStale: the rows may be out of order for the table's snapshot, so changes wait
+    // for the next search instead of being patched in.
+    private String viewQuery = "", viewFilter = "All";
+    private final IntList changedDuringSearch = new IntList();
+    private boolean searchOutdated, rowsStale;
+    private String fileNotice; // EDT only: what changed on disk, kept for the status line of the re-run query
+    // sort mode a click on each column header selects
+    private static final int[] COLUMN_SORTS = {
+        FilterEngine.SORT_LIST, FilterEngine.SORT_OVERDUE, FilterEngine.SORT_PRIORITY, FilterEngine.SORT_DUE};
+
+    // Metrics overlay. A probe posted to the EDT every EDT_PROBE_MS measures how long
+    // events wait there; while the overlay shows, the same thread estimates the heap
+    // held by the store, since that walks every task.
+    private static final int EDT_PROBE_MS = 250, METRICS_REFRESH_MS = 1000;
+    private final ScheduledExecutorService metricsProbe = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "todo-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile boolean metricsShown;
+    private volatile long storeBytes = -1;
+
+    // Startup, timed from JVM start as the FirstPaint and Interactive operations. With
+    // --startup both are printed and the app exits once they are in; the cds build
+    // profile archives the classes that run loads.
+    private static boolean exitAfterStartup;
+    private boolean painted, interactive, loading; // EDT only
 
     public TodoApp() {
         super("Todo List App");
@@ -43,8 +111,62 @@ public class TodoApp extends JFrame {
         setSize(980, 680);
         setLocationRelativeTo(null);
         initUI();
+        engine.addListener(new TaskEngine.Listener() {
+            public void published(TaskSnapshot snapshot, int[] changed) { queueChange(snapshot, changed); }
+            public void reminder(int slot, String text, long due, boolean overdue) {
+                SwingUtilities.invokeLater(() -> remind(slot, text, due, overdue));
+            }
+            public void journalFailed(IOException ex) {
+                SwingUtilities.invokeLater(() -> status("Journal write failed: " + ex.getMessage()));
+            }
+            public void renumbered(long fromEpoch, int[] to) {
+                synchronized (changedSlots) { renumberings.put(fromEpoch, to); }
+            }
+            public void fileChanged(String summary) {
+                SwingUtilities.invokeLater(() -> {
+                    fileNotice = summary;
+                    status(summary);
+                });
+            }
+            public void unreadable(int count, String first, Path backup) {
+                String msg = count + " rows or cells of " + engine.saveFile() + " could not be read, the first being "
+                        + first + ".\nThey show as Pending, Medium or without a due date, or not at all, and are saved that way.\n"
+                        + (backup != null ? "The file as it was is kept in " + backup + "." : "Copying the file aside failed; keep a copy before saving.");
+                SwingUtilities.invokeLater(() ->
+                        JOptionPane.showMessageDialog(TodoApp.this, msg, "Unreadable tasks", JOptionPane.WARNING_MESSAGE));
+            }
+        });
+        // The window shows before any task is read: the load runs on the writer
+        // thread, and what needs the tasks is queued behind it there.
         loadTasks();
+        watchFiles(cbLive.isSelected());
         startNotificationChecker();
+        startMetrics();
+        startApiServer();
+        writer.execute(() -> SwingUtilities.invokeLater(this::startedUp));
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (painted) return;
+        painted = true;
+        Operation.FIRST_PAINT.sinceLaunch(0);
+        reportStartup();
+    }
+
+    // The tasks are loaded and indexed, and the EDT has caught up with them.
+    private void startedUp() {
+        interactive = true;
+        Operation.INTERACTIVE.sinceLaunch(store.published().size());
+        reportStartup();
+    }
+
+    private void reportStartup() {
+        if (!exitAfterStartup || !painted || !interactive) return;
+        System.out.printf("First paint %.0f ms, interactive %.0f ms (%d tasks)%n", Operation.FIRST_PAINT.getLastMillis(),
+                Operation.INTERACTIVE.getLastMillis(), Operation.INTERACTIVE.getLastRows());
+        System.exit(0);
     }
 
     private void initUI() {
@@ -92,7 +214,7 @@ public class TodoApp extends JFrame {
         spinnerDue.setEditor(de);
 
         // Notification lead time
-        spinnerNotifyAhead = new JSpinner(new SpinnerNumberModel(10, 0, 1440, 5)); // default 10 minutes
+        spinnerNotifyAhead = new JSpinner(new SpinnerNumberModel(DEFAULT_REMIND_MINUTES, 0, 1440, 5));
 
         // Buttons 
         JButton btnAdd = gradientButton("➕ Add Task", new Color(45,140,255), new Color(30,110,220));
@@ -130,30 +252,85 @@ public class TodoApp extends JFrame {
         tfSearch.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         tfSearch.setToolTipText("Search tasks live...");
 
-        cbFilter = new JComboBox<>(new String[]{"All","Pending","Done","High","Medium","Low"});
+        cbFilter = new JComboBox<>(new String[]{"All","Pending","Done","High","Medium","Low","Archive"});
         cbFilter.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        cbFilter.setToolTipText("Archive: search done tasks moved out of the list (read-only)");
+
+        cbSort = new JComboBox<>(FilterEngine.SORT_LABELS);
+        cbSort.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+
+        // actions on many tasks at once, also on the table's context menu
+        JPopupMenu bulkMenu = new JPopupMenu();
+        JMenu reprioritize = new JMenu("Set priority of selected");
+        for (String p : PRIORITY_LABELS) {
+            reprioritize.add(new JMenuItem(p)).addActionListener(e -> reprioritizeSelected(parsePriority(p)));
+        }
+        bulkMenu.add(reprioritize);
+        bulkMenu.add(new JMenuItem("Mark all shown done")).addActionListener(e -> markShownDone());
+        bulkMenu.add(new JMenuItem("Delete all done")).addActionListener(e -> deleteAllDone());
+        JButton btnBulk = gradientButton("☰ Bulk", new Color(255,150,40), new Color(230,110,20));
+        btnBulk.addActionListener(e -> bulkMenu.show(btnBulk, 0, btnBulk.getHeight()));
+        btnUndo = gradientButton("↶ Undo", new Color(120,120,140), new Color(90,90,110));
+        btnRedo = gradientButton("↷ Redo", new Color(120,120,140), new Color(90,90,110));
+        btnUndo.addActionListener(e -> undo(true));
+        btnRedo.addActionListener(e -> undo(false));
+        btnUndo.setEnabled(false);
+        btnRedo.setEnabled(false);
+        JButton btnExport = gradientButton("📤 Export", new Color(0,160,200), new Color(0,125,170));
+        btnExport.setToolTipText("Export the shown tasks to Excel (.xlsx) or PDF");
+        btnExport.addActionListener(e -> exportShown());
 
         cbDarkMode = new JCheckBox("Dark Mode");
         cbDarkMode.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         cbDarkMode.setBackground(bg);
 
+        cbMetrics = new JCheckBox("Metrics");
+        cbMetrics.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        cbMetrics.setBackground(bg);
+        cbMetrics.setToolTipText("Show timings in the status bar; all figures are on JMX under todo:type=Operation");
+
+        cbLive = new JCheckBox("Live reload", Boolean.parseBoolean(System.getProperty("todo.watch", "true")));
+        cbLive.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        cbLive.setBackground(bg);
+        cbLive.setToolTipText("Show changes other programs, or other copies of this app, make to "
+                + engine.saveFile().getFileName() + " as they happen");
+
         midPanel.add(new JLabel("Search:"));
         midPanel.add(tfSearch);
         midPanel.add(new JLabel("Filter:"));
         midPanel.add(cbFilter);
+        midPanel.add(new JLabel("Sort:"));
+        midPanel.add(cbSort);
+        midPanel.add(btnBulk);
+        midPanel.add(btnUndo);
+        midPanel.add(btnRedo);
+        midPanel.add(btnExport);
         midPanel.add(cbDarkMode);
+        midPanel.add(cbMetrics);
+        midPanel.add(cbLive);
 
         // Table setup
-        String[] cols = {"Task","Status","Priority","Due"};
-        model = new DefaultTableModel(cols,0) {
-            public boolean isCellEditable(int r, int c) { return false; }
+        model = new TaskTableModel();
+        table = new JTable(model) {
+            protected void paintComponent(Graphics g) {
+                Operation.Span span = Operation.PAINT.start();
+                super.paintComponent(g);
+                span.end(rowsPainted(g.getClipBounds()));
+            }
+
+            private int rowsPainted(Rectangle clip) {
+                if (clip == null) return getRowCount();
+                int first = rowAtPoint(new Point(0, clip.y));
+                int last = rowAtPoint(new Point(0, clip.y + clip.height - 1));
+                return first < 0 ? 0 : (last < 0 ? getRowCount() - 1 : last) - first + 1;
+            }
         };
-        table = new JTable(model);
         table.setRowHeight(34);
         table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 14));
-        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        table.setDefaultRenderer(Object.class, new TaskCellRenderer());
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        table.setDefaultRenderer(Object.class, new TaskCellRenderer(model, rowStyles));
+        table.setComponentPopupMenu(bulkMenu);
 
         JScrollPane scroll = new JScrollPane(table);
         scroll.setBorder(new EmptyBorder(10,16,10,16));
@@ -165,6 +342,18 @@ public class TodoApp extends JFrame {
         status.setForeground(Color.WHITE);
         status.setBorder(new EmptyBorder(8,12,8,12));
 
+        metricsLabel = new JLabel();
+        metricsLabel.setOpaque(true);
+        metricsLabel.setBackground(statusBarColor);
+        metricsLabel.setForeground(Color.WHITE);
+        metricsLabel.setBorder(new EmptyBorder(8,12,8,12));
+        metricsLabel.setVisible(false);
+
+        JPanel statusBar = new JPanel(new BorderLayout());
+        statusBar.setOpaque(false);
+        statusBar.add(status, BorderLayout.CENTER);
+        statusBar.add(metricsLabel, BorderLayout.EAST);
+
         
         JPanel centerStack = new JPanel();
         centerStack.setLayout(new BoxLayout(centerStack, BoxLayout.Y_AXIS));
@@ -191,7 +380,7 @@ public class TodoApp extends JFrame {
         // Add components to frame
         add(header, BorderLayout.NORTH);
         add(centerStack, BorderLayout.CENTER);
-        add(status, BorderLayout.PAGE_END);
+        add(statusBar, BorderLayout.PAGE_END);
 
         // Action listeners
         btnAdd.addActionListener(e -> addTask());
@@ -203,23 +392,49 @@ public class TodoApp extends JFrame {
 
         // Live search & filter listeners
         tfSearch.getDocument().addDocumentListener(new DocumentListener() {
-            public void insertUpdate(DocumentEvent e) { applyFilters(); }
-            public void removeUpdate(DocumentEvent e) { applyFilters(); }
-            public void changedUpdate(DocumentEvent e) { applyFilters(); }
+            public void insertUpdate(DocumentEvent e) { searchDebounce.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchDebounce.restart(); }
+            public void changedUpdate(DocumentEvent e) { searchDebounce.restart(); }
+        });
+        searchDebounce = new javax.swing.Timer(SEARCH_DEBOUNCE_MS, e -> runSearch());
+        searchDebounce.setRepeats(false);
+        cbFilter.addActionListener(e -> runSearch());
+        cbSort.addActionListener(e -> runSearch());
+        // header clicks pick the sort mode for that column; the Task column restores list order
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int col = table.convertColumnIndexToModel(table.getTableHeader().columnAtPoint(e.getPoint()));
+                if (col >= 0) cbSort.setSelectedIndex(COLUMN_SORTS[col]);
+            }
         });
-        cbFilter.addActionListener(e -> applyFilters());
         cbDarkMode.addActionListener(e -> toggleDarkMode(cbDarkMode.isSelected()));
+        cbMetrics.addActionListener(e -> toggleMetrics(cbMetrics.isSelected()));
+        cbLive.addActionListener(e -> watchFiles(cbLive.isSelected()));
+
+        // Ctrl+Z / Ctrl+Y (or Ctrl+Shift+Z) anywhere in the window
+        InputMap keys = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        keys.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        getRootPane().getActionMap().put("undo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) { undo(true); }
+        });
+        getRootPane().getActionMap().put("redo", new AbstractAction() {
+            public void actionPerformed(ActionEvent e) { undo(false); }
+        });
 
         
         table.addMouseListener(new MouseAdapter() {
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount()==2) {
-                    int r = table.getSelectedRow();
-                    if (r>=0) {
-                        tfTask.setText((String)model.getValueAt(r,0));
-                        cbPriority.setSelectedItem((String)model.getValueAt(r,2));
-                        String due = (String)model.getValueAt(r,3);
-                        try { Date d = dtFormat.parse(due); spinnerDue.setValue(d); } catch (Exception ex) {}
+                    int r = selectedModelRow();
+                    TaskSnapshot tasks = model.snapshot();
+                    if (r>=0 && tasks.isLive(model.slotAt(r))) {
+                        int slot = model.slotAt(r);
+                        tfTask.setText(tasks.text(slot));
+                        cbPriority.setSelectedItem(PRIORITY_LABELS[tasks.priority(slot)]);
+                        long due = tasks.due(slot);
+                        if (due != NO_DUE) spinnerDue.setValue(new Date(due));
                     }
                 }
             }
@@ -264,203 +479,484 @@ public class TodoApp extends JFrame {
     }
 
     
-    private class TaskCellRenderer extends DefaultTableCellRenderer {
-        private final Color high = new Color(255, 230, 230);
-        private final Color medium = new Color(245, 245, 235);
-        private final Color low = new Color(230, 255, 240);
-        private final Color doneBg = new Color(225, 240, 255);
-
-        public Component getTableCellRendererComponent(JTable table, Object value,
-                                                       boolean isSelected, boolean hasFocus,
-                                                       int row, int column) {
-            Component comp = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-            String statusVal = (String)model.getValueAt(row,1);
-            String priorityVal = (String)model.getValueAt(row,2);
-
-            Color bgc = Color.WHITE;
-            if ("✔ Done".equals(statusVal)) bgc = doneBg;
-            else {
-                if ("High".equalsIgnoreCase(priorityVal)) bgc = high;
-                else if ("Medium".equalsIgnoreCase(priorityVal)) bgc = medium;
-                else if ("Low".equalsIgnoreCase(priorityVal)) bgc = low;
-            }
-
-            if (isSelected) {
-                comp.setBackground(new Color(180,210,255));
-                comp.setForeground(Color.BLACK);
-            } else {
-                comp.setBackground(bgc);
-                comp.setForeground(Color.BLACK);
-            }
-
-            // overdue highlight: red text if overdue and not done
-            try {
-                String dueStr = (String)model.getValueAt(row,3);
-                Date due = dtFormat.parse(dueStr);
-                if (due.before(new Date()) && !"✔ Done".equals(statusVal)) {
-                    comp.setForeground(Color.RED.darker());
-                }
-            } catch (Exception ex) { }
-
-            return comp;
-        }
-    }
-
     // ---------- Application logic ----------
     private void addTask() {
         String task = tfTask.getText().trim();
         if (task.isEmpty()) { showMsg("Enter a task description"); return; }
-        String priority = (String)cbPriority.getSelectedItem();
-        Date due = (Date)spinnerDue.getValue();
-        String dueStr = dtFormat.format(due);
-        model.addRow(new String[]{task, "Pending", priority, dueStr});
+        byte priority = parsePriority((String)cbPriority.getSelectedItem());
+        long due = truncateToMinute(((Date)spinnerDue.getValue()).getTime());
+        writer.execute(() -> engine.undoable(n -> "Task added", () -> {
+            engine.add(task, STATUS_PENDING, priority, due);
+            return 1;
+        }));
         tfTask.setText("");
         status("Task added");
-        applyFilters();
     }
 
     private void editTask() {
-        int r = table.getSelectedRow();
-        if (r<0) { showMsg("Select task to edit"); return; }
+        int selected = table.getSelectedRowCount();
+        if (selected == 0) { showMsg("Select task to edit"); return; }
+        if (selected > 1) { showMsg("Select a single task to edit"); return; }
         String task = tfTask.getText().trim();
         if (task.isEmpty()) { showMsg("Task cannot be empty"); return; }
-        String priority = (String)cbPriority.getSelectedItem();
-        Date due = (Date)spinnerDue.getValue();
-        String dueStr = dtFormat.format(due);
-        model.setValueAt(task, r, 0);
-        model.setValueAt(priority, r, 2);
-        model.setValueAt(dueStr, r, 3);
-        status("Task updated");
-        applyFilters();
+        byte priority = parsePriority((String)cbPriority.getSelectedItem());
+        long due = truncateToMinute(((Date)spinnerDue.getValue()).getTime());
+        changeSelected(slots -> engine.edit(slots[0], task, priority, due) ? 1 : -1, "updated");
     }
 
     private void deleteTask() {
-        int r = table.getSelectedRow();
-        if (r<0) { showMsg("Select task to delete"); return; }
-        int opt = JOptionPane.showConfirmDialog(this, "Delete selected task?", "Confirm", JOptionPane.YES_NO_OPTION);
+        int selected = table.getSelectedRowCount();
+        if (selected == 0) { showMsg("Select task to delete"); return; }
+        String question = selected == 1 ? "Delete selected task?" : "Delete " + selected + " selected tasks?";
+        int opt = JOptionPane.showConfirmDialog(this, question, "Confirm", JOptionPane.YES_NO_OPTION);
         if (opt==JOptionPane.YES_OPTION) {
-            model.removeRow(r);
-            status("Task deleted");
-            applyFilters();
+            changeSelected(engine::deleteAll, "deleted");
         }
     }
 
     private void markDone() {
-        int r = table.getSelectedRow();
-        if (r<0) { showMsg("Select task to mark done"); return; }
-        model.setValueAt("✔ Done", r, 1);
-        status("Task marked done");
-        applyFilters();
+        if (table.getSelectedRowCount() == 0) { showMsg("Select task to mark done"); return; }
+        changeSelected(slots -> engine.setStatusAll(slots, STATUS_DONE), "marked done");
+    }
+
+    private void reprioritizeSelected(byte priority) {
+        if (table.getSelectedRowCount() == 0) { showMsg("Select tasks to reprioritize"); return; }
+        changeSelected(slots -> engine.setPriorityAll(slots, priority), "set to " + PRIORITY_LABELS[priority]);
+    }
+
+    // Everything the current search and filter match when the writer gets to it,
+    // which may include rows the table has not caught up with yet.
+    private void markShownDone() {
+        int shown = model.getRowCount();
+        if (shown == 0) { showMsg("No tasks shown"); return; }
+        if (archiveShown()) { showMsg("Archived tasks are already done"); return; }
+        int opt = JOptionPane.showConfirmDialog(this, "Mark all " + shown + " shown tasks done?", "Confirm",
+                JOptionPane.YES_NO_OPTION);
+        if (opt != JOptionPane.YES_OPTION) return;
+        String q = viewQuery, filter = viewFilter;
+        changeAll(() -> engine.setStatusAll(engine.find(q, filter), STATUS_DONE), "marked done");
+    }
+
+    private void deleteAllDone() {
+        int opt = JOptionPane.showConfirmDialog(this, "Delete every task marked done?", "Confirm",
+                JOptionPane.YES_NO_OPTION);
+        if (opt != JOptionPane.YES_OPTION) return;
+        changeAll(() -> engine.deleteAll(engine.find("", "Done")), "deleted");
+    }
+
+    // Applies a change to the selected tasks on the writer thread, as one batch. Row
+    // slots are only trusted if the store has not renumbered slots since the table's
+    // snapshot. `change` answers how many tasks it changed, or -1 if the task is gone.
+    private void changeSelected(ToIntFunction<int[]> change, String what) {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) return; // the rows went away while a dialog was open
+        if (archiveShown()) { showMsg("Archived tasks are read-only"); return; }
+        int[] slots = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) slots[i] = model.slotAt(table.convertRowIndexToModel(rows[i]));
+        long epoch = model.snapshot().epoch;
+        writer.execute(() -> {
+            int n;
+            synchronized (store) {
+                n = store.epoch() == epoch ? engine.undoable(k -> changedText(k, what), () -> change.applyAsInt(slots)) : -1;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (n < 0) showMsg("The task was changed elsewhere; select it again");
+                else reportChanged(n, what);
+            });
+        });
+    }
+
+    private boolean archiveShown() { return model.snapshot().epoch == TaskArchive.EPOCH; }
+
+    private void changeAll(IntSupplier change, String what) {
+        status("Working...");
+        writer.execute(() -> {
+            int n = engine.undoable(k -> changedText(k, what), change);
+            SwingUtilities.invokeLater(() -> reportChanged(n, what));
+        });
+    }
+
+    private void reportChanged(int n, String what) {
+        status(changedText(n, what));
     }
 
+    private static String changedText(int n, String what) {
+        return n == 1 ? "Task " + what : n + " tasks " + what;
+    }
+
+    private void undo(boolean undoing) {
+        writer.execute(() -> {
+            String label = undoing ? engine.undo() : engine.redo();
+            SwingUtilities.invokeLater(() -> {
+                if (label == null) status(undoing ? "Nothing to undo" : "Nothing to redo");
+                else status((undoing ? "Undone: " : "Redone: ") + label);
+            });
+        });
+    }
+
+    // The engine's labels are read without the lock; called after each publish.
+    private void refreshUndo() {
+        String u = engine.undoLabel(), r = engine.redoLabel();
+        btnUndo.setEnabled(u != null);
+        btnUndo.setToolTipText(u == null ? null : "Undo: " + u + " (Ctrl+Z)");
+        btnRedo.setEnabled(r != null);
+        btnRedo.setToolTipText(r == null ? null : "Redo: " + r + " (Ctrl+Y)");
+    }
+
+    // The engine writes a frozen copy on its own thread; editing carries on meanwhile.
     private void saveTasks() {
-        try (BufferedWriter w = Files.newBufferedWriter(saveFile)) {
-            w.write("task,status,priority,due\n");
-            for (int i=0;i<model.getRowCount();i++) {
-                String task = escapeCSV((String)model.getValueAt(i,0));
-                String statusVal = escapeCSV((String)model.getValueAt(i,1));
-                String pr = escapeCSV((String)model.getValueAt(i,2));
-                String due = escapeCSV((String)model.getValueAt(i,3));
-                w.write(String.join(",", task, statusVal, pr, due));
-                w.write("\n");
+        status("Saving...");
+        engine.saveInBackground().whenComplete((v, ex) -> SwingUtilities.invokeLater(() -> {
+            if (ex == null) {
+                status("Saved to " + engine.saveFile().getFileName());
+            } else {
+                status("Save failed: " + ex.getMessage());
+                showMsg("Save failed: " + ex.getMessage());
             }
-            status("Saved to " + saveFile.getFileName());
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            showMsg("Save failed: " + ex.getMessage());
-        }
+        }));
     }
 
+    // Exports the rows as shown, in their order, on a SwingWorker; the progress
+    // dialog's Cancel stops it at the next TaskExport.STEP rows and removes the file.
+    private void exportShown() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Export shown tasks");
+        FileNameExtensionFilter xlsx = new FileNameExtensionFilter("Excel workbook (*.xlsx)", "xlsx");
+        FileNameExtensionFilter pdf = new FileNameExtensionFilter("PDF document (*.pdf)", "pdf");
+        chooser.addChoosableFileFilter(xlsx);
+        chooser.addChoosableFileFilter(pdf);
+        chooser.setAcceptAllFileFilterUsed(false);
+        chooser.setFileFilter(xlsx);
+        chooser.setSelectedFile(new File("tasks.xlsx"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        FileNameExtensionFilter chosen = (FileNameExtensionFilter) chooser.getFileFilter();
+        if (!chosen.accept(file)) file = new File(file.getPath() + "." + chosen.getExtensions()[0]);
+        Path target = file.toPath();
+
+        TaskSnapshot tasks = model.snapshot();
+        int[] slots = model.rowSlots();
+        ProgressMonitor monitor = new ProgressMonitor(this, "Exporting " + slots.length + " tasks to "
+                + target.getFileName(), null, 0, 100);
+        long started = System.nanoTime();
+        SwingWorker<Long, Void> export = new SwingWorker<Long, Void>() {
+            protected Long doInBackground() throws IOException {
+                return TaskExport.write(tasks, slots, slots.length, target, done -> {
+                    if (isCancelled()) throw new CancellationException();
+                    setProgress((int) (done * 100L / Math.max(1, slots.length)));
+                });
+            }
+
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    status("Export cancelled");
+                    return;
+                }
+                try {
+                    long bytes = get();
+                    status(String.format("Exported %d tasks to %s (%d KB, %d ms)", slots.length,
+                            target.getFileName(), bytes >> 10, (System.nanoTime() - started) / 1_000_000));
+                } catch (InterruptedException | ExecutionException ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    status("Export failed: " + cause.getMessage());
+                    showMsg("Export failed: " + cause.getMessage());
+                }
+            }
+        };
+        export.addPropertyChangeListener(e -> {
+            if (monitor.isCanceled()) export.cancel(false);
+            else if ("progress".equals(e.getPropertyName())) monitor.setProgress((Integer) e.getNewValue());
+        });
+        status("Exporting...");
+        export.execute();
+    }
+
+    // On the writer thread, as turning live reload on reads what changed meanwhile.
+    private void watchFiles(boolean on) {
+        writer.execute(() -> {
+            try {
+                engine.watch(on);
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> status("Live reload failed: " + ex.getMessage()));
+            }
+        });
+    }
+
+    // On the writer thread; into an empty table the rows show as they are read.
     private void loadTasks() {
-        model.setRowCount(0);
-        if (!Files.exists(saveFile)) {
-            status("No saved file (starting fresh)");
-            return;
+        loading = true;
+        status("Loading " + engine.saveFile().getFileName() + "...");
+        writer.execute(() -> {
+            try {
+                boolean fresh = !Files.exists(engine.saveFile());
+                int replayed = engine.load();
+                int n = store.published().size(), archived = engine.archived();
+                SwingUtilities.invokeLater(() -> {
+                    loading = false;
+                    if (fresh && n == 0) status("No saved file (starting fresh)");
+                    else status("Loaded " + n + " tasks"
+                            + (replayed > 0 ? " (" + replayed + " journaled changes)" : "")
+                            + (archived > 0 ? ", " + archived + " more in the archive" : ""));
+                });
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> {
+                    loading = false;
+                    status("Load failed: " + ex.getMessage());
+                    showMsg("Load failed: " + ex.getMessage());
+                });
+            }
+        });
+    }
+
+    // Called by the engine, on the writing thread, with the store locked.
+    private void queueChange(TaskSnapshot snapshot, int[] slots) {
+        synchronized (changedSlots) {
+            latestSnapshot = snapshot;
+            if (slots == null || changedSlots.size + slots.length > BULK_REFRESH_ROWS) requeryPending = true;
+            else if (!requeryPending) for (int slot : slots) changedSlots.add(slot);
+            if (drainPending) return;
+            drainPending = true;
         }
-        try (BufferedReader r = Files.newBufferedReader(saveFile)) {
-            String header = r.readLine(); // skip
-            String line;
-            while ((line = r.readLine()) != null) {
-                String[] parts = parseCSVLine(line);
-                if (parts.length >= 4) {
-                    model.addRow(new String[]{parts[0], parts[1], parts[2], parts[3]});
-                }
+        SwingUtilities.invokeLater(this::drainChanges);
+    }
+
+    private void drainChanges() {
+        TaskSnapshot snapshot;
+        int[] slots;
+        boolean requery;
+        synchronized (changedSlots) {
+            snapshot = latestSnapshot;
+            slots = Arrays.copyOf(changedSlots.a, changedSlots.size);
+            requery = requeryPending;
+            changedSlots.size = 0;
+            requeryPending = drainPending = false;
+        }
+        refreshUndo();
+        if (snapshot.epoch != model.snapshot().epoch) {
+            // slot numbers changed meaning: keep showing the old snapshot until the search answers
+            requestSearch();
+        } else if (requery) {
+            model.setSnapshot(snapshot);
+            rowStyles.clear();
+            table.repaint();
+            rowsStale = true;
+            requestSearch();
+        } else {
+            fileNotice = null; // shown as it came; no search will follow
+            for (int slot : slots) rowStyles.invalidate(slot);
+            if (rowsStale) {
+                model.setSnapshot(snapshot);
+                table.repaint();
+            } else {
+                model.patch(snapshot, slots, slots.length, this::visible);
+            }
+            if (pendingSearch != null) {
+                // the running search may predate these changes; publishSearch re-applies them
+                if (changedDuringSearch.size + slots.length > BULK_REFRESH_ROWS) searchOutdated = true;
+                else for (int slot : slots) changedDuringSearch.add(slot);
             }
-            status("Loaded " + model.getRowCount() + " tasks");
-            applyFilters();
-        } catch (IOException ex) {
-            ex.printStackTrace();
-            showMsg("Load failed: " + ex.getMessage());
         }
     }
 
     // ------------ Filtering & Search --------------
-    private void applyFilters() {
+    private void runSearch() {
+        searchDebounce.stop();
         String q = tfSearch.getText().trim().toLowerCase();
         String filter = (String)cbFilter.getSelectedItem();
+        int sort = cbSort.getSelectedIndex();
+        long gen = ++searchGeneration;
+        if (pendingSearch != null) pendingSearch.cancel(true);
+        changedDuringSearch.size = 0;
+        searchOutdated = false;
+        long started = System.nanoTime();
+        pendingSearch = searchExecutor.submit(() -> {
+            FilterEngine.Matches m;
+            if (!"Archive".equals(filter)) {
+                m = engine.query(q, filter, sort);
+            } else {
+                try {
+                    m = engine.searchArchive(q, sort, ARCHIVE_VIEW_ROWS);
+                } catch (IOException ex) {
+                    if (Thread.currentThread().isInterrupted()) return; // cancelled mid-read
+                    SwingUtilities.invokeLater(() -> {
+                        if (gen == searchGeneration) status("Archive search failed: " + ex.getMessage());
+                    });
+                    return;
+                }
+            }
+            long searchNanos = System.nanoTime() - started;
+            SwingUtilities.invokeLater(() -> publishSearch(gen, q, filter, m, searchNanos));
+        });
+    }
 
-        TableRowSorter<TableModel> sorter = new TableRowSorter<>(model);
-        List<RowFilter<Object,Object>> filters = new ArrayList<>();
+    // Re-runs the current query after background changes. A search already in
+    // flight is left to finish and then repeated, so a steady stream of changes
+    // cannot keep cancelling it.
+    private void requestSearch() {
+        if (pendingSearch != null) searchOutdated = true;
+        else runSearch();
+    }
 
-        if (!q.isEmpty()) {
-            filters.add(RowFilter.regexFilter("(?i)" + Pattern.quote(q), 0)); // search in task column
+    private void publishSearch(long gen, String q, String filter, FilterEngine.Matches m, long searchNanos) {
+        if (gen != searchGeneration) return; // superseded by a newer query
+        pendingSearch = null;
+        boolean archived = m.epoch == TaskArchive.EPOCH;
+        if (!archived && store.published().epoch != m.epoch) { runSearch(); return; } // slots renumbered since the query ran
+        long t0 = System.nanoTime();
+        // the rows follow m.snapshot; changes drained since then are patched back in
+        TaskSnapshot shown = model.snapshot();
+        boolean newer = shown.epoch == m.epoch && shown.version > m.snapshot.version;
+        if (shown.epoch != m.epoch) rowStyles.clear();
+        viewQuery = q;
+        viewFilter = filter;
+        BitSet selected = selectedSlots(shown.epoch, m.epoch);
+        model.setRows(m.snapshot, m.slots, m.slots.length, m.sort);
+        if (selected != null) reselect(selected);
+        if (searchOutdated) {
+            if (newer) model.setSnapshot(shown);
+            rowsStale = true;
+            runSearch();
+        } else {
+            rowsStale = false;
+            if (!archived) // live slots mean nothing to archived rows
+                model.patch(newer ? shown : m.snapshot, changedDuringSearch.a, changedDuringSearch.size, this::visible);
+        }
+        long edtNanos = System.nanoTime() - t0;
+        String shownText = archived
+                ? String.format("Showing %s%d archived tasks, read-only (search %d ms, UI blocked %d ms)",
+                        model.getRowCount() == ARCHIVE_VIEW_ROWS ? "the first " : "", model.getRowCount(),
+                        searchNanos / 1_000_000, edtNanos / 1_000_000)
+                : String.format("Showing %d of %d tasks (search %d ms, UI blocked %d ms)",
+                        model.getRowCount(), model.snapshot().size(), searchNanos / 1_000_000, edtNanos / 1_000_000);
+        if (loading) shownText += " · loading...";
+        status(fileNotice == null ? shownText : fileNotice + " · " + shownText);
+        fileNotice = null;
+        for (int c = 0; c < COLUMN_SORTS.length; c++) {
+            TableColumn col = table.getColumnModel().getColumn(table.convertColumnIndexToView(c));
+            col.setHeaderValue(model.getColumnName(c) + (COLUMN_SORTS[c] == m.sort && c > 0 ? " ▲" : ""));
         }
+        table.getTableHeader().repaint();
+    }
 
-        if (filter != null && !"All".equals(filter)) {
-            if ("Pending".equals(filter)) {
-                filters.add(RowFilter.regexFilter("^Pending$", 1));
-            } else if ("Done".equals(filter)) {
-                filters.add(RowFilter.regexFilter("^✔ Done$", 1));
-            } else if ("High".equals(filter) || "Medium".equals(filter) || "Low".equals(filter)) {
-                filters.add(RowFilter.regexFilter("^" + filter + "$", 2));
+    // The slots of the selected rows, followed from epoch `from` to `to` through the
+    // renumberings between; null if nothing is selected or a step is missing.
+    private BitSet selectedSlots(long from, long to) {
+        List<int[]> steps = new ArrayList<>();
+        synchronized (changedSlots) {
+            for (long e = from; e < to && steps != null; e++) {
+                int[] step = renumberings.get(e);
+                if (step == null) steps = null;
+                else steps.add(step);
+            }
+            renumberings.keySet().removeIf(e -> e < to);
+        }
+        int[] rows = table.getSelectedRows();
+        // archived rows and live ones never stand for each other
+        if (rows.length == 0 || steps == null || (from == TaskArchive.EPOCH) != (to == TaskArchive.EPOCH)) return null;
+        BitSet slots = new BitSet();
+        for (int r : rows) {
+            int slot = model.slotAt(table.convertRowIndexToModel(r));
+            for (int i = 0; i < steps.size() && slot >= 0; i++) {
+                int[] step = steps.get(i);
+                slot = slot < step.length ? step[slot] : -1;
             }
+            if (slot >= 0) slots.set(slot);
         }
+        return slots;
+    }
 
-        RowFilter<Object,Object> rf = filters.isEmpty() ? null : RowFilter.andFilter(filters);
-        sorter.setRowFilter(rf);
-        table.setRowSorter(sorter);
+    private void reselect(BitSet slots) {
+        ListSelectionModel selection = table.getSelectionModel();
+        selection.setValueIsAdjusting(true);
+        try {
+            selection.clearSelection();
+            for (int r = 0, n = model.getRowCount(); r < n; r++) {
+                if (!slots.get(model.slotAt(r))) continue;
+                int row = table.convertRowIndexToView(r);
+                selection.addSelectionInterval(row, row);
+            }
+        } finally {
+            selection.setValueIsAdjusting(false);
+        }
+    }
+
+    // Whether a slot belongs in the rows, judged against the table's snapshot and
+    // the query its rows answer.
+    private boolean visible(int slot) {
+        return FilterEngine.matches(model.snapshot(), slot, viewQuery, viewFilter);
     }
 
     // ------------ Notifications --------------
     private void startNotificationChecker() {
-        notifyTimer = new Timer(true);
-        notifyTimer.scheduleAtFixedRate(new TimerTask() {
-            public void run() { checkForNotifications(); }
-        }, 30_000, 30_000); // run every 30 seconds (first run after 30s)
+        spinnerNotifyAhead.addChangeListener(e -> {
+            long lead = notifyLeadMillis();
+            writer.execute(() -> engine.setReminderLead(lead));
+        });
+        // behind the load on the writer thread, so the first reminders see every task
+        writer.execute(engine::startReminders);
     }
 
-    private void checkForNotifications() {
-        SwingUtilities.invokeLater(() -> {
-            int aheadMinutes = (Integer)spinnerNotifyAhead.getValue();
-            Date now = new Date();
-            Date until = new Date(now.getTime() + aheadMinutes * 60L * 1000L);
-            for (int i=0;i<model.getRowCount();i++) {
-                String statusVal = (String)model.getValueAt(i,1);
-                if ("✔ Done".equals(statusVal)) continue;
-                String dueStr = (String)model.getValueAt(i,3);
-                try {
-                    Date due = dtFormat.parse(dueStr);
-                    if (due.before(now)) {
-                        String task = (String)model.getValueAt(i,0);
-                        showNotification("Overdue: " + task, "Task is overdue since " + dueStr);
-                    } else if (!due.after(until)) {
-                        String task = (String)model.getValueAt(i,0);
-                        showNotification("Upcoming: " + task, "Due at " + dueStr);
-                    }
-                } catch (ParseException ex) { }
-            }
-        });
+    private void startMetrics() {
+        metricsProbe.scheduleWithFixedDelay(() -> {
+            Operation.Span lag = Operation.EDT_LAG.start();
+            SwingUtilities.invokeLater(() -> lag.end(0));
+        }, EDT_PROBE_MS, EDT_PROBE_MS, TimeUnit.MILLISECONDS);
+        metricsProbe.scheduleWithFixedDelay(() -> {
+            if (metricsShown) storeBytes = store.published().estimatedBytes();
+        }, 0, METRICS_REFRESH_MS, TimeUnit.MILLISECONDS);
+        new javax.swing.Timer(METRICS_REFRESH_MS, e -> {
+            if (metricsShown) showMetrics();
+        }).start();
+    }
+
+    private void toggleMetrics(boolean shown) {
+        metricsShown = shown;
+        if (shown) showMetrics();
+        metricsLabel.setVisible(shown);
+    }
+
+    private void showMetrics() {
+        long bytes = storeBytes;
+        metricsLabel.setText(String.format("filter %.1f ms · save %.1f ms · EDT lag %.1f ms · store %s · startup %.0f ms",
+                Operation.SEARCH.getLastMillis(), Operation.SAVE.getLastMillis(), Operation.EDT_LAG.getLastMillis(),
+                bytes < 0 ? "…" : String.format("≈%.1f MB", bytes / 1048576.0), Operation.INTERACTIVE.getLastMillis()));
+    }
+
+    private long notifyLeadMillis() {
+        return (Integer)spinnerNotifyAhead.getValue() * 60_000L;
+    }
+
+    // Reminder from the engine, already checked against the task's current state.
+    private void remind(int slot, String text, long due, boolean overdue) {
+        if (overdue) {
+            // the row turns red now
+            rowStyles.invalidate(slot);
+            int row = model.rowOf(slot);
+            if (row >= 0) model.rowUpdated(row);
+            showNotification("Overdue: " + text, "Task is overdue since " + formatDue(due));
+        } else {
+            showNotification("Upcoming: " + text, "Due at " + formatDue(due));
+        }
+    }
+
+    // -Dtodo.api.port=N also serves the HTTP API from the windowed app, on the same tasks
+    private void startApiServer() {
+        String port = System.getProperty("todo.api.port");
+        if (port == null) return;
+        try {
+            TaskServer server = new TaskServer(engine);
+            server.start(Integer.parseInt(port));
+            status("API on http://127.0.0.1:" + server.port() + "/tasks, token in " + server.tokenFile());
+        } catch (IOException | NumberFormatException ex) {
+            Operation.API.failed(ex);
+            status("Cannot start the API server: " + ex.getMessage());
+            showMsg("Cannot start the API server: " + ex.getMessage());
+        }
     }
 
     private void showNotification(String title, String message) {
-        JOptionPane optionPane = new JOptionPane(message, JOptionPane.INFORMATION_MESSAGE);
-        JDialog dialog = optionPane.createDialog(this, title);
-        dialog.setModal(false);
-        dialog.setAlwaysOnTop(true);
-        dialog.setVisible(true);
-        new Timer().schedule(new TimerTask() {
-            public void run() { dialog.dispose(); }
-        }, 6000);
+        notifier.post(title, message);
     }
 
     // ------------- Utilities ---------------
@@ -473,6 +969,7 @@ public class TodoApp extends JFrame {
             getContentPane().setBackground(bg);
             status.setBackground(statusBarColor);
             status.setForeground(Color.WHITE);
+            metricsLabel.setBackground(statusBarColor);
             table.setBackground(new Color(48,48,52));
             table.setForeground(Color.WHITE);
             table.getTableHeader().setForeground(Color.WHITE);
@@ -485,6 +982,7 @@ public class TodoApp extends JFrame {
             getContentPane().setBackground(bg);
             status.setBackground(statusBarColor);
             status.setForeground(Color.WHITE);
+            metricsLabel.setBackground(statusBarColor);
             table.setBackground(Color.WHITE);
             table.setForeground(Color.BLACK);
             table.getTableHeader().setForeground(Color.BLACK);
@@ -496,41 +994,113 @@ public class TodoApp extends JFrame {
     private void showMsg(String m){ JOptionPane.showMessageDialog(this, m); }
     private void status(String s){ status.setText(" " + s); }
 
-    private String escapeCSV(String s) {
-        if (s == null) return "";
-        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
-            s = s.replace("\"", "\"\"");
-            return "\"" + s + "\"";
+    private int selectedModelRow() {
+        int r = table.getSelectedRow();
+        return r < 0 ? -1 : table.convertRowIndexToModel(r);
+    }
+
+    // ------------ Entry point ---------------
+    // java TodoApp --csv-to-binary todo.csv todo.bin  |  --binary-to-csv todo.bin todo.csv
+    private static void convertSnapshot(String mode, Path from, Path to) {
+        long t0 = System.nanoTime();
+        try {
+            int n = "--csv-to-binary".equals(mode) ? BinarySnapshot.fromCsv(from, to) : BinarySnapshot.toCsv(from, to);
+            System.out.printf("Converted %d tasks %s -> %s in %d ms (%d -> %d bytes)%n", n, from, to,
+                    (System.nanoTime() - t0) / 1_000_000, Files.size(from), Files.size(to));
+        } catch (IOException ex) {
+            System.err.println("Conversion failed: " + ex.getMessage());
+            System.exit(1);
         }
-        return s;
-    }
-
-    private String[] parseCSVLine(String line) {
-        List<String> fields = new ArrayList<>();
-        StringBuilder cur = new StringBuilder();
-        boolean inQuotes = false;
-        for (int i=0;i<line.length();i++) {
-            char ch = line.charAt(i);
-            if (inQuotes) {
-                if (ch == '"') {
-                    if (i+1 < line.length() && line.charAt(i+1) == '"') {
-                        cur.append('"'); i++;
-                    } else {
-                        inQuotes = false;
-                    }
-                } else cur.append(ch);
-            } else {
-                if (ch == '"') inQuotes = true;
-                else if (ch == ',') { fields.add(cur.toString()); cur.setLength(0); }
-                else cur.append(ch);
+    }
+
+    // java TodoApp --export todo.csv tasks.xlsx|tasks.pdf: every task, in list order
+    private static void exportSnapshot(Path from, Path to) {
+        long t0 = System.nanoTime();
+        try {
+            TaskStore store = new TaskStore();
+            readSnapshotFile(from, store);
+            int[] slots = new int[store.size()];
+            int n = 0;
+            for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) slots[n++] = s;
+            long bytes = TaskExport.write(store, slots, n, to, done -> {});
+            System.out.printf("Exported %d tasks %s -> %s in %d ms (%d bytes)%n", n, from, to,
+                    (System.nanoTime() - t0) / 1_000_000, bytes);
+        } catch (IOException ex) {
+            System.err.println("Export failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // java TodoApp --serve [port]: the engine and HTTP API without a window
+    private static void serve(int port) {
+        TaskEngine engine = TaskEngine.fromSystemProperties();
+        engine.addListener(new TaskEngine.Listener() {
+            public void reminder(int slot, String text, long due, boolean overdue) {
+                System.out.println((overdue ? "Overdue: " : "Upcoming: ") + text + " (due " + formatDue(due) + ")");
             }
+            public void journalFailed(IOException ex) {
+                System.err.println("Journal write failed: " + ex.getMessage());
+            }
+            public void fileChanged(String summary) {
+                System.out.println(summary);
+            }
+            public void unreadable(int count, String first, Path backup) {
+                System.err.printf("Warning: %d rows or cells of %s could not be read (first %s) and will be saved defaulted;"
+                        + " the file as it was is in %s%n", count, engine.saveFile(), first, backup);
+            }
+        });
+        try {
+            int replayed = engine.load();
+            engine.watch(Boolean.parseBoolean(System.getProperty("todo.watch", "true")));
+            engine.startReminders();
+            TaskServer server = new TaskServer(engine);
+            server.start(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(engine::close, "todo-shutdown"));
+            System.out.printf("Serving %d tasks from %s (%d journaled changes) on http://127.0.0.1:%d/tasks%n",
+                    engine.store.size(), engine.saveFile(), replayed, server.port());
+            System.out.printf("Send \"Authorization: Bearer <token>\" with the token in %s%n", server.tokenFile());
+        } catch (IOException ex) {
+            System.err.println("Cannot serve: " + ex.getMessage());
+            System.exit(1);
         }
-        fields.add(cur.toString());
-        return fields.toArray(new String[0]);
     }
 
-    // ------------ Entry point ---------------
+    // java TodoApp --browse [todo.csv]: a read-only, paged window over a CSV snapshot
+    private static void browse(Path file) {
+        if (isBinarySnapshot(file)) {
+            System.err.println("Browse mode reads CSV snapshots; convert with --binary-to-csv first");
+            System.exit(1);
+        }
+        SwingUtilities.invokeLater(() -> {
+            try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); }
+            catch (Exception ignored) {}
+            try {
+                new TaskFileBrowser(file).setVisible(true);
+            } catch (IOException ex) {
+                System.err.println("Cannot browse " + file + ": " + ex.getMessage());
+                System.exit(1);
+            }
+        });
+    }
+
     public static void main(String[] args) {
+        if (args.length >= 1 && "--serve".equals(args[0])) {
+            serve(args.length > 1 ? Integer.parseInt(args[1]) : TaskServer.DEFAULT_PORT);
+            return;
+        }
+        if (args.length == 3 && ("--csv-to-binary".equals(args[0]) || "--binary-to-csv".equals(args[0]))) {
+            convertSnapshot(args[0], Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        if (args.length == 3 && "--export".equals(args[0])) {
+            exportSnapshot(Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        if (args.length >= 1 && "--browse".equals(args[0])) {
+            browse(Paths.get(args.length > 1 ? args[1] : "todo.csv"));
+            return;
+        }
+        exitAfterStartup = args.length == 1 && "--startup".equals(args[0]);
         SwingUtilities.invokeLater(() -> {
             try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); }
             catch (Exception ignored) {}
@@ -0,0 +1,161 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Lining up tasks re-read from the files with the ones known before, and the file stamps that trigger it. */
+class AlignmentTest {
+    @TempDir
+    Path dir;
+
+    // before and after as "text" or "text!" for a High priority; then added, updated,
+    // deleted, and for each task after, the index before it came from (-1: new id)
+    private static final Object[][] CASES = {
+        {"unchanged", "a b c", "a b c", 0, 0, 0, new int[] {0, 1, 2}},
+        {"insert in the middle", "a b c", "a x b c", 1, 0, 0, new int[] {0, -1, 1, 2}},
+        {"insert at the front", "a b c", "x y a b c", 2, 0, 0, new int[] {-1, -1, 0, 1, 2}},
+        {"append", "a b c", "a b c d", 1, 0, 0, new int[] {0, 1, 2, -1}},
+        {"delete in the middle", "a b c d", "a c d", 0, 0, 1, new int[] {0, 2, 3}},
+        {"delete the first", "a b c", "b c", 0, 0, 1, new int[] {1, 2}},
+        {"delete the last", "a b c", "a b", 0, 0, 1, new int[] {0, 1}},
+        {"edit a field", "a b c", "a b! c", 0, 1, 0, new int[] {0, 1, 2}},
+        {"edit a text", "a b c", "a B c", 0, 1, 0, new int[] {0, 1, 2}},
+        {"move down", "a b c d", "a c d b", 1, 0, 1, new int[] {0, 2, 3, -1}},
+        {"move up", "a b c d", "d a b c", 1, 0, 1, new int[] {-1, 0, 1, 2}},
+        {"insert and delete", "a b c d e", "a x b d e", 1, 0, 1, new int[] {0, -1, 1, 3, 4}},
+        {"edit, insert and append", "a b c", "a! x b c y", 2, 1, 0, new int[] {0, -1, 1, 2, -1}},
+        // on a tie the aligner takes the insertion, so the second "a" is matched late
+        {"duplicate texts", "a a b a", "a b a", 1, 0, 2, new int[] {0, -1, 1}},
+        {"everything replaced", "a b", "x y", 0, 2, 0, new int[] {0, 1}},
+        {"emptied", "a b", "", 0, 0, 2, new int[] {}},
+        {"from empty", "", "a b", 2, 0, 0, new int[] {-1, -1}},
+    };
+
+    private static TaskStore store(String tasks) {
+        TaskStore s = new TaskStore();
+        for (String t : tasks.split(" ")) {
+            if (t.isEmpty()) continue;
+            boolean high = t.endsWith("!");
+            s.add(high ? t.substring(0, t.length() - 1) : t, STATUS_PENDING,
+                    high ? PRIORITY_HIGH : PRIORITY_MEDIUM, DUE);
+        }
+        return s;
+    }
+
+    @Test
+    void countsAndCarriesIds() {
+        for (Object[] c : CASES) {
+            String name = (String) c[0];
+            TaskStore from = store((String) c[1]), into = store((String) c[2]);
+            Alignment a = Alignment.of(from, into);
+            assertEquals(Arrays.asList(c[3], c[4], c[5]), Arrays.asList(a.added, a.updated, a.deleted), name);
+            int[] origins = (int[]) c[6];
+            int[] ids = new int[origins.length];
+            for (int s = 0; s < ids.length; s++) ids[s] = origins[s] < 0 ? -1 : from.id(origins[s]);
+            assertArrayEquals(ids, a.ids, name);
+            for (int s = 0; s < a.to.length; s++) assertEquals(indexOf(origins, s), a.to[s], name + ": to[" + s + "]");
+        }
+    }
+
+    private static int indexOf(int[] a, int v) {
+        for (int i = 0; i < a.length; i++) if (a[i] == v) return i;
+        return -1;
+    }
+
+    @Test
+    void adoptedIdsAreFoundWhateverTheirOrder() {
+        for (Object[] c : CASES) {
+            String name = (String) c[0];
+            TaskStore store = store((String) c[1]);
+            TaskSnapshot before = store.publish();
+            TaskStore fresh = store((String) c[2]);
+            Alignment a = Alignment.of(before, fresh);
+            store.adopt(fresh, a.ids);
+            int added = store.add("later", STATUS_PENDING, PRIORITY_LOW, DUE);
+            assertSlotsFoundById(store, name);
+            assertSlotsFoundById(store.publish(), name);
+            for (int s = 0; s < before.slotCount(); s++) {
+                assertEquals(a.to[s], store.slotOf(before.id(s)), name + ": task " + s + " before");
+            }
+            // a deleted task is not found, and closing up its slot keeps the others findable
+            if (store.size() > 1) {
+                int gone = store.id(0);
+                store.remove(0);
+                assertEquals(-1, store.slotOf(gone), name);
+                int[] renumbering = store.renumbering(store.publish());
+                int laterId = store.id(added);
+                store.compact(renumbering);
+                assertSlotsFoundById(store, name + ", compacted");
+                assertEquals("later", store.text(store.slotOf(laterId)), name);
+            }
+        }
+    }
+
+    private static void assertSlotsFoundById(TaskView v, String name) {
+        Set<Integer> seen = new HashSet<>();
+        for (int s = v.nextLive(0); s >= 0; s = v.nextLive(s + 1)) {
+            assertTrue(seen.add(v.id(s)), name + ": id " + v.id(s) + " twice");
+            assertEquals(s, v.slotOf(v.id(s)), name + ": slot " + s);
+        }
+        assertEquals(-1, v.slotOf(Integer.MAX_VALUE), name);
+        assertEquals(-1, v.slotOf(-1), name);
+    }
+
+    @Test
+    void anotherProgramsInsertKeepsLaterIds() throws IOException {
+        Path file = dir.resolve("todo.csv");
+        TaskEngine e = engine(file, false);
+        for (String t : new String[] {"a", "b", "c", "d"}) e.add(t, STATUS_PENDING, PRIORITY_LOW, DUE);
+        e.save();
+        Map<String, Integer> ids = new HashMap<>();
+        for (int s = 0; s < 4; s++) ids.put(e.store.text(s), e.store.id(s));
+        String due = formatDue(DUE);
+        Files.write(file, Arrays.asList("task,status,priority,due", "a,Pending,Low," + due, "new,Pending,Low," + due,
+                "b,Pending,Low," + due, "c,Pending,High," + due, "d,Pending,Low," + due), StandardCharsets.UTF_8);
+
+        e.load();
+        TaskSnapshot v = e.store.published();
+        for (Map.Entry<String, Integer> t : ids.entrySet()) {
+            assertEquals(t.getKey(), v.text(v.slotOf(t.getValue())), "kept its id");
+        }
+        assertFalse(ids.containsValue(v.id(1)), "the inserted task has a new id");
+        assertEquals(1, v.slotOf(v.id(1)));
+        e.close();
+    }
+
+    @Test
+    void stampsTellChangedAndReplacedFiles() throws IOException {
+        Path file = dir.resolve("todo.csv"), other = dir.resolve("other.csv");
+        assertNull(FileStamp.of(file));
+        Files.write(file, "one".getBytes(StandardCharsets.UTF_8));
+        FileStamp first = FileStamp.of(file);
+        assertEquals(first, FileStamp.of(file));
+        assertEquals(first.hashCode(), FileStamp.of(file).hashCode());
+
+        FileTime then = Files.getLastModifiedTime(file);
+        Files.write(file, "two".getBytes(StandardCharsets.UTF_8)); // same size
+        Files.setLastModifiedTime(file, FileTime.fromMillis(then.toMillis() + 2000));
+        assertNotEquals(first, FileStamp.of(file), "modified");
+
+        Files.setLastModifiedTime(file, then);
+        Files.write(other, "one".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(other, then);
+        Files.move(other, file, StandardCopyOption.REPLACE_EXISTING);
+        FileStamp replaced = FileStamp.of(file);
+        assertNotEquals(first, replaced, "another file in its place");
+
+        Files.write(file, "longer".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, then);
+        assertNotEquals(replaced, FileStamp.of(file), "size");
+    }
+}
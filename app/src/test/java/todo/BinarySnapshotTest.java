@@ -0,0 +1,136 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.SnapshotFiles.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** The binary snapshot format: what it keeps, what it refuses, and the CSV converters. */
+class BinarySnapshotTest {
+    @TempDir
+    Path dir;
+
+    private static TaskStore sample() {
+        TaskStore s = new TaskStore();
+        s.add("buy milk", STATUS_PENDING, PRIORITY_HIGH, DUE);
+        s.add("say \"hi\", twice\nand again", STATUS_DONE, PRIORITY_LOW, NO_DUE);
+        s.add("buy milk", STATUS_DONE, PRIORITY_MEDIUM, DUE + 60_000);
+        s.add("gone", STATUS_PENDING, PRIORITY_MEDIUM, DUE);
+        s.add("ünïcødé ✔ " + new String(new char[300]).replace('\0', 'x'), STATUS_PENDING, PRIORITY_LOW, 0);
+        s.remove(3);
+        return s;
+    }
+
+    private byte[] written() throws IOException {
+        Path bin = dir.resolve("todo.bin");
+        BinarySnapshot.write(sample(), bin);
+        return Files.readAllBytes(bin);
+    }
+
+    private IOException readFails(byte[] bytes) throws IOException {
+        Path bin = dir.resolve("bad.bin");
+        Files.write(bin, bytes);
+        return assertThrows(IOException.class, () -> BinarySnapshot.read(bin, new TaskStore()));
+    }
+
+    @Test
+    void keepsEveryLiveTask() throws IOException {
+        Path bin = dir.resolve("todo.bin");
+        TaskStore store = sample();
+        long crc = BinarySnapshot.write(store, bin);
+        TaskStore back = new TaskStore();
+        assertEquals(crc, BinarySnapshot.read(bin, back));
+        assertEquals(rows(store), rows(back));
+        assertTrue(isBinarySnapshot(bin));
+    }
+
+    @Test
+    void refusesABadMagicNumber() throws IOException {
+        byte[] b = written();
+        b[0] = 'X';
+        assertTrue(readFails(b).getMessage().startsWith("Not a todo binary snapshot"));
+    }
+
+    @Test
+    void refusesAnUnknownVersion() throws IOException {
+        byte[] b = written();
+        b[4] = 2;
+        assertTrue(readFails(b).getMessage().startsWith("Unsupported snapshot version"));
+    }
+
+    @Test
+    void refusesEveryTruncation() throws IOException {
+        byte[] b = written();
+        for (int n = 0; n < b.length; n++) readFails(Arrays.copyOf(b, n));
+    }
+
+    @Test
+    void refusesCorruptCounts() throws IOException {
+        byte[] b = written();
+        for (int[] header : new int[][] {{8, -1}, {8, 1 << 30}, {12, -1}, {12, 1000}}) {
+            byte[] c = b.clone();
+            ByteBuffer.wrap(c).putInt(header[0], header[1]);
+            readFails(c);
+        }
+    }
+
+    @Test
+    void refusesCorruptColumnsAndStringLengths() throws IOException {
+        byte[] b = written();
+        int rows = ByteBuffer.wrap(b).getInt(8), strings = ByteBuffer.wrap(b).getInt(12);
+        int status = 16 + rows * 8, ids = status + 2 * rows;
+        byte[] c = b.clone();
+        c[status] = 7;
+        readFails(c);
+        c = b.clone();
+        c[status + rows] = -1; // priority
+        readFails(c);
+        c = b.clone();
+        c[ids] = (byte) strings; // a string id past the table
+        readFails(c);
+        // the first string's length, made far larger than the file, then negative
+        int first = ids + rows;
+        byte[] huge = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        byte[] negative = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        for (byte[] len : new byte[][] {huge, negative}) {
+            byte[] d = new byte[b.length + 4];
+            System.arraycopy(b, 0, d, 0, first);
+            System.arraycopy(len, 0, d, first, 5);
+            System.arraycopy(b, first + 1, d, first + 5, b.length - first - 1);
+            readFails(d);
+        }
+    }
+
+    @Test
+    void convertersRoundTripCsvThroughBinary() throws IOException {
+        Path csv = dir.resolve("todo.csv"), bin = dir.resolve("todo.bin"), back = dir.resolve("back.csv");
+        writeCsvFile(sample(), csv);
+        assertEquals(sample().size(), BinarySnapshot.fromCsv(csv, bin));
+        assertEquals(sample().size(), BinarySnapshot.toCsv(bin, back));
+        assertTrue(isBinarySnapshot(bin));
+        assertArrayEquals(Files.readAllBytes(csv), Files.readAllBytes(back));
+        TaskStore loaded = new TaskStore();
+        readSnapshotFile(back, loaded);
+        assertEquals(rows(sample()), rows(loaded));
+    }
+
+    @Test
+    void binaryIsSmallerForRepeatedTexts() throws IOException {
+        TaskStore store = new TaskStore();
+        for (int i = 0; i < 10_000; i++) {
+            store.add("water the plants", STATUS_PENDING, PRIORITY_MEDIUM, DUE + i * 60_000L);
+        }
+        Path csv = dir.resolve("todo.csv"), bin = dir.resolve("todo.bin");
+        writeCsvFile(store, csv);
+        BinarySnapshot.write(store, bin);
+        assertTrue(Files.size(bin) < Files.size(csv) / 2, Files.size(bin) + " vs " + Files.size(csv));
+    }
+}
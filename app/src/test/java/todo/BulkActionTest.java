@@ -0,0 +1,114 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** The table's multi-row actions: one journal flush, one published snapshot and one undo entry each. */
+class BulkActionTest {
+    private static final int TASKS = 500;
+
+    @TempDir
+    Path dir;
+
+    private TaskEngine e;
+    private final List<int[]> published = new ArrayList<>();
+
+    @BeforeEach
+    void open() throws IOException {
+        e = engine(dir.resolve("todo.csv"), true);
+        for (int i = 0; i < TASKS; i++) e.add("task " + i, STATUS_PENDING, PRIORITY_MEDIUM, DUE + i * 60_000L);
+        e.save();
+        e.addListener(new TaskEngine.Listener() {
+            public void published(TaskSnapshot snapshot, int[] changed) { published.add(changed); }
+        });
+    }
+
+    @AfterEach
+    void close() { e.close(); }
+
+    private long journalLines() throws IOException {
+        return Files.readAllLines(dir.resolve("todo.csv.journal"), StandardCharsets.UTF_8).size();
+    }
+
+    // runs one action the way the window does and checks it went out as one batch of `n` records
+    private void assertOneBatch(String label, int n, IntSupplier change) throws IOException {
+        long flushes = Operation.JOURNAL.getCount(), lines = journalLines();
+        published.clear();
+        assertEquals(n, e.undoable(k -> label, change));
+        assertEquals(1, Operation.JOURNAL.getCount() - flushes, label + ": journal flushes");
+        assertEquals(n, journalLines() - lines, label + ": journal records");
+        assertEquals(1, published.size(), label + ": snapshots published");
+        assertEquals(n, published.get(0).length, label + ": changed slots");
+        assertEquals(label, e.undoLabel());
+    }
+
+    private void assertOneUndoEntry(String label, List<String> before) {
+        List<String> after = rows(e.store.published());
+        published.clear();
+        assertEquals(label, e.undo());
+        assertEquals(1, published.size(), label + ": the undo is one batch too");
+        assertEquals(before, rows(e.store.published()));
+        assertNull(e.undoLabel(), label + ": one entry for the whole action");
+        assertEquals(label, e.redo());
+        assertEquals(after, rows(e.store.published()));
+    }
+
+    private int[] everyOther() {
+        int[] slots = new int[TASKS / 2];
+        for (int i = 0; i < slots.length; i++) slots[i] = 2 * i;
+        return slots;
+    }
+
+    @Test
+    void markingSelectedDone() throws IOException {
+        List<String> before = rows(e.store.published());
+        assertOneBatch("done", TASKS / 2, () -> e.setStatusAll(everyOther(), STATUS_DONE));
+        assertOneUndoEntry("done", before);
+    }
+
+    @Test
+    void reprioritizingSelected() throws IOException {
+        List<String> before = rows(e.store.published());
+        assertOneBatch("high", TASKS / 2, () -> e.setPriorityAll(everyOther(), PRIORITY_HIGH));
+        assertOneUndoEntry("high", before);
+    }
+
+    @Test
+    void deletingSelected() throws IOException {
+        List<String> before = rows(e.store.published());
+        assertOneBatch("delete", TASKS / 2, () -> e.deleteAll(everyOther()));
+        assertEquals(TASKS / 2, e.store.size());
+        // the deleted tasks come back as new slots, so compare them as a set
+        published.clear();
+        assertEquals("delete", e.undo());
+        assertEquals(1, published.size());
+        List<String> restored = rows(e.store.published());
+        Collections.sort(restored);
+        Collections.sort(before);
+        assertEquals(before, restored);
+        assertNull(e.undoLabel());
+    }
+
+    @Test
+    void markingShownDoneAndDeletingAllDone() throws IOException {
+        List<String> before = rows(e.store.published());
+        // task 1, 10-19 and 100-199
+        assertOneBatch("shown done", 111, () -> e.setStatusAll(e.find("task 1", "Pending"), STATUS_DONE));
+        assertOneUndoEntry("shown done", before);
+
+        e.setStatusAll(everyOther(), STATUS_DONE); // 55 of them are done already
+        assertOneBatch("delete done", TASKS / 2 + 111 - 55, () -> e.deleteAll(e.find("", "Done")));
+    }
+}
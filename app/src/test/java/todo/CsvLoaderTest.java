@@ -0,0 +1,147 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+
+/**
+ * The parallel loader against a plain sequential read with parseCSVLine, with chunks
+ * small enough that cuts land inside quoted fields, doubled quotes and CRLF pairs.
+ */
+class CsvLoaderTest {
+    private static final String HEADER = "task,status,priority,due\n";
+    private static final int[] CHUNKS = {1, 2, 3, 5, 8, 13, 64, 1 << 20};
+
+    @TempDir
+    Path dir;
+
+    // What a one-record-at-a-time reader makes of the file: records end at newlines
+    // outside quotes, a CR before the newline is dropped, the header is skipped.
+    private static List<String> sequential(String csv) {
+        List<String> out = new ArrayList<>();
+        int start = 0;
+        boolean quoted = false, header = true;
+        for (int i = 0; i <= csv.length(); i++) {
+            if (i < csv.length()) {
+                char c = csv.charAt(i);
+                if (c == '"') quoted = !quoted;
+                if (c != '\n' || quoted) continue;
+            }
+            int end = i;
+            if (end > start && csv.charAt(end - 1) == '\r') end--;
+            String line = csv.substring(start, end);
+            start = i + 1;
+            if (header) { header = false; continue; }
+            if (i == csv.length() && line.isEmpty()) break;
+            String[] f = parseCSVLine(line);
+            if (f.length < 4) continue;
+            out.add(row(f[0], parseStatus(f[1]), parsePriority(f[2]), parseDue(f[3])));
+        }
+        return out;
+    }
+
+    private static String row(String text, byte status, byte priority, long due) {
+        return text + "|" + status + "|" + priority + "|" + due;
+    }
+
+    private List<String> load(String csv, int chunk, long[] crc) throws IOException {
+        Path file = dir.resolve("todo.csv");
+        Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+        List<String> out = new ArrayList<>();
+        crc[0] = CsvLoader.load(file, rows -> {
+            for (int i = 0; i < rows.size; i++) out.add(row(rows.text[i], rows.status[i], rows.priority[i], rows.due[i]));
+        }, chunk);
+        return out;
+    }
+
+    private void assertLoadsLikeSequential(String csv) throws IOException {
+        List<String> expected = sequential(csv);
+        CRC32 crc = new CRC32();
+        crc.update(csv.getBytes(StandardCharsets.UTF_8));
+        for (int chunk : CHUNKS) {
+            long[] got = {0};
+            assertEquals(expected, load(csv, chunk, got), "chunk " + chunk);
+            assertEquals(crc.getValue(), got[0], "crc, chunk " + chunk);
+        }
+    }
+
+    @Test
+    void quotedNewlinesAndDoubledQuotesAcrossCuts() throws IOException {
+        assertLoadsLikeSequential(HEADER
+                + "\"two\nlines\",Pending,High,2025-01-01 10:00\n"
+                + "\"say \"\"hi\"\", then, \"\"bye\"\"\",✔ Done,Low,\n"
+                + "\"\"\"\"\"\",Pending,Medium,2025-12-31 23:59\n"
+                + "\"ends with newline\n\",Pending,Low,\n"
+                + "plain,Pending,Medium,not a date\n");
+    }
+
+    @Test
+    void crlfLineEnds() throws IOException {
+        assertLoadsLikeSequential(HEADER.replace("\n", "\r\n")
+                + "one,Pending,High,2025-01-01 10:00\r\n"
+                + "\"quoted\r\nbreak\",✔ Done,Low,\r\n"
+                + "three,Pending,Low,2025-02-03 04:05\r\n");
+    }
+
+    @Test
+    void lastRecordWithoutNewline() throws IOException {
+        String csv = HEADER + "one,Pending,High,\n\"two, \"\"last\"\"\",✔ Done,Low,2025-01-01 10:00";
+        assertLoadsLikeSequential(csv);
+        assertEquals(2, sequential(csv).size());
+    }
+
+    @Test
+    void emptyAndHeaderOnlyFiles() throws IOException {
+        for (String csv : new String[] {"", HEADER, HEADER.trim(), HEADER + "\n"}) {
+            assertLoadsLikeSequential(csv);
+            assertTrue(sequential(csv).isEmpty());
+        }
+    }
+
+    @Test
+    void shortRowsAreSkippedAndCounted() throws IOException {
+        Path file = dir.resolve("todo.csv");
+        Files.write(file, (HEADER + "a,Pending,High,\njunk\n\nb,Pending,Low,\n").getBytes(StandardCharsets.UTF_8));
+        List<String> texts = new ArrayList<>();
+        int[] unread = {0};
+        CsvLoader.load(file, rows -> {
+            texts.addAll(Arrays.asList(rows.text).subList(0, rows.size));
+            unread[0] += rows.unread;
+        }, 4);
+        assertEquals(Arrays.asList("a", "b"), texts);
+        assertEquals(1, unread[0], "the blank line is not counted");
+    }
+
+    @Test
+    void randomFilesMatchTheSequentialReader() throws IOException {
+        Random r = new Random(7);
+        String alphabet = "ab ,\"\n\r✔é";
+        String[] statuses = {"Pending", "✔ Done", "done", ""};
+        String[] priorities = {"High", "Medium", "Low", "low", "urgent"};
+        String[] dues = {"", "2025-01-01 10:00", "2024-02-29 23:59", "2025-13-01 00:00", "soon"};
+        for (int file = 0; file < 40; file++) {
+            StringBuilder csv = new StringBuilder(HEADER);
+            int rows = r.nextInt(30);
+            for (int i = 0; i < rows; i++) {
+                StringBuilder text = new StringBuilder();
+                for (int k = r.nextInt(12); k > 0; k--) text.append(alphabet.charAt(r.nextInt(alphabet.length())));
+                // a bare CR before a record's newline would be taken as a CRLF; quote it in
+                String t = text.toString();
+                csv.append(t.endsWith("\r") ? "\"" + t.replace("\"", "\"\"") + "\"" : escapeCSV(t)).append(',')
+                   .append(escapeCSV(statuses[r.nextInt(statuses.length)])).append(',')
+                   .append(priorities[r.nextInt(priorities.length)]).append(',')
+                   .append(dues[r.nextInt(dues.length)]);
+                if (i + 1 < rows || r.nextBoolean()) csv.append(r.nextInt(4) == 0 ? "\r\n" : "\n");
+            }
+            assertLoadsLikeSequential(csv.toString());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** The due-date index and the sort orders read off it, checked against sorting the store. */
+class DueIndexTest {
+    private static final String[] FILTERS = {"All", "Pending", "Done", "High", "Medium", "Low"};
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(11);
+
+    // few distinct dues, so long runs of ties are ordered by slot
+    private long randomDue() { return random.nextInt(10) == 0 ? NO_DUE : DUE + random.nextInt(20) * 60_000L; }
+
+    private static List<Integer> byDue(TaskView v) {
+        List<Integer> out = scan(v, "", "All");
+        out.sort(Comparator.comparingLong((Integer s) -> v.due(s)).thenComparingInt(s -> s));
+        return out;
+    }
+
+    private static List<Integer> order(DueIndex index) {
+        List<Integer> out = new ArrayList<>();
+        for (int b = 0; b < index.blocks; b++) {
+            assertTrue(index.sizes[b] > 0, "block " + b + " is empty");
+            for (int i = 0; i < index.sizes[b]; i++) out.add(index.slots[b][i]);
+        }
+        return out;
+    }
+
+    private void assertOrdered(TaskStore store, DueIndex index) {
+        List<Integer> expected = byDue(store);
+        assertEquals(expected, order(index));
+        DueIndex fresh = new DueIndex(store);
+        fresh.rebuild();
+        assertEquals(expected, order(fresh));
+    }
+
+    @Test
+    void insertsSplitBlocksAndRemovesDropThemInDueOrder() {
+        TaskStore store = new TaskStore();
+        DueIndex index = new DueIndex(store);
+        for (int i = 0; i < 5000; i++) index.insert(store.add("t" + i, STATUS_PENDING, PRIORITY_MEDIUM, randomDue()));
+        assertTrue(index.blocks > 4, "inserts split blocks");
+        assertOrdered(store, index);
+
+        for (int round = 0; round < 4000; round++) {
+            int s = random.nextInt(store.slotCount());
+            if (!store.isLive(s)) {
+                index.insert(store.add("more", STATUS_PENDING, PRIORITY_MEDIUM, randomDue()));
+            } else if (random.nextBoolean()) {
+                index.remove(s); // before the key changes, as the filter engine does
+                store.update(s, store.text(s), store.priority(s), randomDue());
+                index.insert(s);
+            } else {
+                index.remove(s);
+                store.remove(s);
+            }
+            if (round % 500 == 0) assertOrdered(store, index);
+        }
+        assertOrdered(store, index);
+
+        for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) {
+            index.remove(s);
+            store.remove(s);
+        }
+        assertEquals(0, index.blocks);
+        index.insert(store.add("again", STATUS_PENDING, PRIORITY_MEDIUM, DUE));
+        assertOrdered(store, index);
+    }
+
+    @Test
+    void sortOrdersMatchSortingTheMatches() throws IOException {
+        TaskEngine e = engine(dir.resolve("todo.csv"), false);
+        String[] words = {"buy", "milk", "call", "mom"};
+        for (int i = 0; i < 3000; i++) {
+            e.add(words[random.nextInt(4)] + " " + words[random.nextInt(4)],
+                    (byte) random.nextInt(2), (byte) random.nextInt(3), randomDue());
+        }
+        for (int round = 0; round < 3; round++) {
+            for (String f : FILTERS) {
+                for (String q : new String[] {"", "mi", "buy m"}) {
+                    List<Integer> matches = scan(e.store, q, f);
+                    TaskView v = e.store;
+                    Comparator<Integer> due = Comparator.comparingLong(s -> v.due(s));
+                    assertSorted(e, q, f, FilterEngine.SORT_LIST, matches, Comparator.comparingInt(s -> s));
+                    assertSorted(e, q, f, FilterEngine.SORT_DUE, matches, due.thenComparingInt(s -> s));
+                    // high first, then medium, then low
+                    assertSorted(e, q, f, FilterEngine.SORT_PRIORITY, matches,
+                            Comparator.comparingInt((Integer s) -> v.priority(s)).thenComparing(due).thenComparingInt(s -> s));
+                    // pending first, so the overdue ones lead in due order
+                    assertSorted(e, q, f, FilterEngine.SORT_OVERDUE, matches,
+                            Comparator.comparingInt((Integer s) -> v.status(s)).thenComparing(due).thenComparingInt(s -> s));
+                }
+            }
+            for (int i = 0; i < 300; i++) {
+                int s = random.nextInt(e.store.slotCount());
+                if (!e.store.isLive(s)) continue;
+                switch (i % 3) {
+                    case 0: e.edit(s, e.store.text(s), (byte) random.nextInt(3), randomDue()); break;
+                    case 1: e.setStatus(s, (byte) random.nextInt(2)); break;
+                    default: e.delete(s); break;
+                }
+            }
+        }
+        e.close();
+    }
+
+    private static void assertSorted(TaskEngine e, String q, String f, int sort, List<Integer> matches,
+                                     Comparator<Integer> order) {
+        List<Integer> expected = new ArrayList<>(matches);
+        expected.sort(order);
+        String what = FilterEngine.SORT_LABELS[sort] + " " + q + "/" + f;
+        assertEquals(expected, list(e.query(q, f, sort).slots), what);
+        // the table finds rows by binary search with compare(), so it must agree
+        List<Integer> compared = new ArrayList<>(matches);
+        compared.sort((a, b) -> FilterEngine.compare(e.store, a, e.store, b, sort));
+        assertEquals(expected, compared, what);
+    }
+}
@@ -0,0 +1,123 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.*;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.regex.*;
+import java.util.zip.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** The XLSX and PDF writers: files a reader can open, holding the rows asked for. */
+class ExportTest {
+    @TempDir
+    Path dir;
+
+    private static TaskStore sample(int rows) {
+        TaskStore s = new TaskStore();
+        s.add("a <b> & \"c\" ünïcødé ✔ \u0001bell", STATUS_PENDING, PRIORITY_HIGH, DUE);
+        s.add("two\nlines", STATUS_DONE, PRIORITY_LOW, NO_DUE);
+        for (int i = 2; i < rows; i++) s.add("task " + i, STATUS_PENDING, PRIORITY_MEDIUM, DUE + i * 60_000L);
+        return s;
+    }
+
+    private static int[] all(int rows) {
+        int[] slots = new int[rows];
+        for (int i = 0; i < rows; i++) slots[i] = i;
+        return slots;
+    }
+
+    private static Map<String, byte[]> unzip(Path file) throws IOException {
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(file))) {
+            byte[] buf = new byte[8192];
+            for (ZipEntry e; (e = zip.getNextEntry()) != null; ) {
+                ByteArrayOutputStream part = new ByteArrayOutputStream();
+                for (int n; (n = zip.read(buf)) > 0; ) part.write(buf, 0, n);
+                parts.put(e.getName(), part.toByteArray());
+            }
+        }
+        return parts;
+    }
+
+    private static Document parse(byte[] xml) throws Exception {
+        DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+        f.setNamespaceAware(true);
+        return f.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+
+    @Test
+    void xlsxPartsAreWellFormedAndHoldEveryRow() throws Exception {
+        int rows = TaskExport.STEP + 10;
+        Path xlsx = dir.resolve("tasks.xlsx");
+        long size = TaskExport.write(sample(rows), all(rows), rows, xlsx, done -> { });
+        assertEquals(Files.size(xlsx), size);
+
+        Map<String, byte[]> parts = unzip(xlsx);
+        for (String name : Arrays.asList("[Content_Types].xml", "xl/workbook.xml", "xl/worksheets/sheet1.xml")) {
+            assertTrue(parts.containsKey(name), name);
+        }
+        for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+            if (part.getKey().endsWith(".xml") || part.getKey().endsWith(".rels")) parse(part.getValue());
+        }
+
+        Document sheet = parse(parts.get("xl/worksheets/sheet1.xml"));
+        NodeList rowNodes = sheet.getElementsByTagNameNS("*", "row");
+        assertEquals(rows + 1, rowNodes.getLength()); // plus the header
+        for (int i = 0; i < rowNodes.getLength(); i++) {
+            assertEquals(Integer.toString(i + 1), ((Element) rowNodes.item(i)).getAttribute("r"));
+        }
+        NodeList texts = sheet.getElementsByTagNameNS("*", "t");
+        assertEquals("a <b> & \"c\" ünïcødé ✔ bell", texts.item(0).getTextContent());
+        assertEquals("two\nlines", texts.item(1).getTextContent());
+        assertEquals("task " + (rows - 1), texts.item(rows - 1).getTextContent());
+    }
+
+    @Test
+    void pdfCrossReferencePointsAtEveryObject() throws Exception {
+        int rows = 3 * PdfExport.ROWS_PER_PAGE + 1;
+        Path pdf = dir.resolve("tasks.pdf");
+        TaskExport.write(sample(rows), all(rows), rows, pdf, done -> { });
+        byte[] bytes = Files.readAllBytes(pdf);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+
+        Matcher start = Pattern.compile("startxref\n(\\d+)\n%%EOF\n?$").matcher(text);
+        assertTrue(start.find(), "trailer");
+        int xref = Integer.parseInt(start.group(1));
+        assertTrue(text.startsWith("xref\n", xref), "startxref offset");
+
+        Matcher header = Pattern.compile("xref\n0 (\\d+)\n").matcher(text);
+        assertTrue(header.find(xref));
+        int objects = Integer.parseInt(header.group(1));
+        assertEquals(5 + 2 * 4, objects); // catalog, pages, two fonts, then content and page per page
+        String[] entries = text.substring(header.end()).split("\n", objects + 1);
+        assertEquals("0000000000 65535 f ", entries[0]);
+        for (int obj = 1; obj < objects; obj++) {
+            assertTrue(entries[obj].matches("\\d{10} 00000 n "), entries[obj]);
+            int offset = Integer.parseInt(entries[obj].substring(0, 10));
+            assertTrue(text.startsWith(obj + " 0 obj", offset), "object " + obj + " at " + offset);
+        }
+        assertTrue(text.contains("/Count 4"));
+    }
+
+    @Test
+    void cancellingLeavesNoFileBehind() throws IOException {
+        int rows = 3 * TaskExport.STEP;
+        for (String name : Arrays.asList("tasks.xlsx", "tasks.pdf")) {
+            Path target = dir.resolve(name);
+            assertThrows(CancellationException.class, () -> TaskExport.write(sample(rows), all(rows), rows, target,
+                    done -> { if (done > 0) throw new CancellationException(); }));
+            assertFalse(Files.exists(target), name);
+            assertFalse(Files.exists(dir.resolve(name + ".tmp")), name);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Search and filter through the indexes, checked against a plain scan of the store. */
+class FilterEngineTest {
+    private static final String[] WORDS = {"buy", "Milk", "call", "mom", "BUG", "fix", "build", "review", "bus", "ab"};
+    private static final String[] FILTERS = {"All", "Pending", "Done", "High", "Medium", "Low"};
+    private static final String[] QUERIES = {"", "b", "bu", "buy", "buy m", "bug", "mil", "ll", "fix bug", "zzz"};
+
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(7);
+    private TaskEngine e;
+
+    @BeforeEach
+    void open() throws IOException {
+        e = engine(dir.resolve("todo.csv"), false);
+        for (int i = 0; i < 600; i++) addRandom();
+    }
+
+    @AfterEach
+    void close() { e.close(); }
+
+    private String randomText() {
+        StringBuilder sb = new StringBuilder();
+        for (int w = 1 + random.nextInt(4); w > 0; w--) sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        return sb.append(random.nextInt(100)).toString();
+    }
+
+    private long randomDue() { return random.nextInt(8) == 0 ? NO_DUE : DUE + random.nextInt(50) * 60_000L; }
+
+    private void addRandom() {
+        e.add(randomText(), (byte) random.nextInt(2), (byte) random.nextInt(3), randomDue());
+    }
+
+    private int randomLive() {
+        int s;
+        do s = random.nextInt(e.store.slotCount()); while (!e.store.isLive(s));
+        return s;
+    }
+
+    // a round of the changes the table makes, singly and in bulk
+    private void mutate() {
+        for (int i = 0; i < 40; i++) {
+            switch (random.nextInt(5)) {
+                case 0: addRandom(); break;
+                case 1: e.edit(randomLive(), randomText(), (byte) random.nextInt(3), randomDue()); break;
+                case 2: e.setStatus(randomLive(), (byte) random.nextInt(2)); break;
+                case 3: e.delete(randomLive()); break;
+                default: e.setPriorityAll(new int[] {randomLive(), randomLive()}, (byte) random.nextInt(3)); break;
+            }
+        }
+        e.setStatusAll(new int[] {randomLive(), randomLive(), randomLive()}, STATUS_DONE);
+        e.deleteAll(new int[] {randomLive(), randomLive(), randomLive()});
+    }
+
+    private void assertQueriesMatchScan() {
+        for (String f : FILTERS) {
+            for (String q : QUERIES) {
+                List<Integer> expected = scan(e.store, q, f);
+                assertEquals(expected, list(e.query(q, f, FilterEngine.SORT_LIST).slots), q + "/" + f);
+                assertEquals(expected, list(e.find(q, f)), q + "/" + f);
+            }
+        }
+    }
+
+    // each bucket lists, once and in ascending order, exactly the live slots with a trigram there
+    private void assertTrigramsMatchText() {
+        Map<Integer, SortedSet<Integer>> expected = new HashMap<>();
+        for (int s = e.store.nextLive(0); s >= 0; s = e.store.nextLive(s + 1)) {
+            String t = e.store.text(s);
+            for (int i = 0; i + 3 <= t.length(); i++) {
+                expected.computeIfAbsent(FilterEngine.trigramBucket(t, i), b -> new TreeSet<>()).add(s);
+            }
+        }
+        for (int b = 0; b < FilterEngine.TRIGRAM_BUCKETS; b++) {
+            IntList l = e.filters.trigrams(b);
+            List<Integer> actual = l == null ? Collections.emptyList() : list(Arrays.copyOf(l.a, l.size));
+            SortedSet<Integer> want = expected.get(b);
+            assertEquals(want == null ? Collections.emptyList() : new ArrayList<>(want), actual, "bucket " + b);
+        }
+    }
+
+    @Test
+    void indexesFollowEditsStatusChangesAndDeletes() {
+        assertQueriesMatchScan();
+        assertTrigramsMatchText();
+        for (int round = 0; round < 5; round++) {
+            mutate();
+            assertQueriesMatchScan();
+            assertTrigramsMatchText();
+        }
+    }
+
+    @Test
+    void narrowingGivesWhatAFreshQueryGives() {
+        String[] typed = {"b", "bu", "bug", "bug f"};
+        for (int round = 0; round < 5; round++) {
+            for (String f : FILTERS) {
+                for (String q : typed) {
+                    // find() scans afresh and leaves the active query, which query() narrows, alone
+                    assertEquals(list(e.find(q, f)), list(e.query(q, f, FilterEngine.SORT_LIST).slots), q + "/" + f);
+                    assertEquals(scan(e.store, q, f), list(e.find(q, f)), q + "/" + f);
+                }
+            }
+            mutate(); // and between keystrokes
+            e.add("bug fix typed in", STATUS_PENDING, PRIORITY_HIGH, DUE);
+        }
+    }
+
+    @Test
+    void taskEditedBetweenKeystrokesJoinsOrLeavesTheNarrowedSet() {
+        int slot = e.add("nothing to see", STATUS_PENDING, PRIORITY_LOW, DUE);
+        e.query("mi", "All", FilterEngine.SORT_LIST);
+        e.edit(slot, "milk run", PRIORITY_LOW, DUE);
+        assertTrue(list(e.query("mil", "All", FilterEngine.SORT_LIST).slots).contains(slot));
+        e.edit(slot, "nothing again", PRIORITY_LOW, DUE);
+        assertFalse(list(e.query("milk", "All", FilterEngine.SORT_LIST).slots).contains(slot));
+        assertEquals(scan(e.store, "milk", "All"), list(e.query("milk", "All", FilterEngine.SORT_LIST).slots));
+    }
+}
@@ -0,0 +1,96 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** The API's JSON reader: strings, numbers, nesting, and what it refuses. */
+class JsonTest {
+    private static void refuses(String json) {
+        assertThrows(IllegalArgumentException.class, () -> Json.parse(json), json);
+    }
+
+    private static String nested(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append('[');
+        for (int i = 0; i < depth; i++) sb.append(']');
+        return sb.toString();
+    }
+
+    @Test
+    void readsEscapes() {
+        assertEquals("\"\\/\b\f\n\r\té", Json.parse("\"\\\"\\\\\\/\\b\\f\\n\\r\\t\\u00E9\""));
+    }
+
+    @Test
+    void readsSurrogatePairsEscapedOrRaw() {
+        assertEquals("a😀b", Json.parse("\"a\\ud83d\\ude00b\""));
+        assertEquals("a😀b", Json.parse("\"a😀b\""));
+    }
+
+    @Test
+    void quoteReadsBack() {
+        String text = "say \"hi\"\\\n\r\t\u0001 😀 ✔";
+        StringBuilder sb = new StringBuilder();
+        Json.quote(text, sb);
+        assertEquals(text, Json.parse(sb.toString()));
+    }
+
+    @Test
+    void refusesBadStrings() {
+        for (String json : new String[] {"\"\\u12g4\"", "\"\\u+123\"", "\"\\u-12\"", "\"\\u12\"", "\"\\x\"",
+                "\"open", "\"tab\there\""}) {
+            refuses(json);
+        }
+    }
+
+    @Test
+    void readsNumbersAtTheEdgesOfLong() {
+        assertEquals(Long.MAX_VALUE, Json.parse("9223372036854775807"));
+        assertEquals(Long.MIN_VALUE, Json.parse("-9223372036854775808"));
+        assertEquals(0L, Json.parse("-0"));
+        assertEquals(1500.0, Json.parse("1.5e3"));
+    }
+
+    @Test
+    void refusesNumbersOutOfRangeOrMalformed() {
+        for (String json : new String[] {"9223372036854775808", "-9223372036854775809", "1e999", "-1e999",
+                "01", "+1", "1.", ".5", "--1", "1e", "1-2", "0x10"}) {
+            refuses(json);
+        }
+    }
+
+    @Test
+    void nestingIsLimited() {
+        assertEquals(Collections.emptyList(), Json.parse("[]"));
+        assertNotNull(Json.parse(nested(Json.MAX_DEPTH)));
+        refuses(nested(Json.MAX_DEPTH + 1));
+        refuses(nested(100_000)); // refused, not a StackOverflowError
+        refuses(new String(new char[100_000]).replace("\0", "{\"a\":") + "1");
+    }
+
+    @Test
+    void refusesTrailingGarbage() {
+        for (String json : new String[] {"{} x", "[1]]", "1 2", "{\"a\":1}}", "true false", "nullx"}) {
+            refuses(json);
+        }
+    }
+
+    @Test
+    void refusesEmptyBodies() {
+        for (String json : new String[] {"", "   ", "\n"}) refuses(json);
+    }
+
+    @Test
+    void readsObjectsInOrder() {
+        Object v = Json.parse(" {\"task\" : \"a\", \"due\":null, \"n\":[1, 2.5, true]} ");
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("task", "a");
+        expected.put("due", null);
+        expected.put("n", Arrays.asList(1L, 2.5, true));
+        assertEquals(expected, v);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(((Map<?, ?>) v).keySet()));
+    }
+}
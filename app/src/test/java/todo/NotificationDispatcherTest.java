@@ -0,0 +1,102 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.TestTasks.*;
+
+/** Coalescing and the dialog rate limit, on a clock and timer the test steps by hand. */
+class NotificationDispatcherTest {
+    private long now = DUE;
+    // pending timer tasks in firing order: time, then order of scheduling
+    private final TreeMap<Long, List<Runnable>> timers = new TreeMap<>();
+    private final List<String> shown = new ArrayList<>(); // "at ms: title"
+    private final List<String> messages = new ArrayList<>();
+    private final NotificationDispatcher notify = new NotificationDispatcher(() -> now,
+            (task, delay) -> timers.computeIfAbsent(now + delay, t -> new ArrayList<>()).add(task),
+            notice -> {
+                shown.add((now - DUE) + ": " + notice[0]);
+                messages.add(notice[1]);
+            });
+
+    // runs every timer task due on the way, at its own time
+    private void advance(long millis) {
+        long until = now + millis;
+        while (!timers.isEmpty() && timers.firstKey() <= until) {
+            Map.Entry<Long, List<Runnable>> next = timers.pollFirstEntry();
+            now = next.getKey();
+            for (Runnable task : next.getValue()) task.run();
+        }
+        now = until;
+    }
+
+    @Test
+    void aBurstBecomesOneDialogAfterTheWindow() {
+        notify.post("Due soon", "buy milk");
+        assertEquals(Collections.emptyList(), shown);
+        advance(749);
+        assertEquals(Collections.emptyList(), shown);
+        advance(1);
+        assertEquals(Collections.singletonList("750: Due soon"), shown);
+        assertEquals("buy milk", messages.get(0));
+
+        for (int i = 0; i < 10; i++) {
+            notify.post("Due soon", "task " + i);
+            advance(50);
+        }
+        advance(1000);
+        assertEquals(Arrays.asList("750: Due soon", "1500: 10 reminders"), shown);
+        assertTrue(messages.get(1).startsWith("Due soon - task 0\nDue soon - task 1\n"), messages.get(1));
+        assertEquals(11, notify.emitted.get());
+    }
+
+    @Test
+    void longBatchesListFifteenAndCountTheRest() {
+        for (int i = 0; i < 20; i++) notify.post("Overdue", "task " + i);
+        advance(750);
+        assertEquals(Collections.singletonList("750: 20 reminders"), shown);
+        assertTrue(messages.get(0).endsWith("Overdue - task 14\n... and 5 more"), messages.get(0));
+        assertEquals(15, notify.emitted.get());
+        assertEquals(5, notify.suppressed.get());
+    }
+
+    @Test
+    void atMostSixDialogsAMinuteAndTheRestMergeIntoTheNext() {
+        for (int i = 0; i < 6; i++) {
+            notify.post("Overdue", "task " + i);
+            advance(1000);
+        }
+        assertEquals(6, shown.size());
+        assertEquals("5750: Overdue", shown.get(5));
+
+        // the seventh waits for the first dialog's minute to pass, collecting what comes meanwhile
+        for (int i = 6; i < 10; i++) {
+            notify.post("Overdue", "task " + i);
+            advance(10_000);
+        }
+        assertEquals(6, shown.size());
+        advance(60_750 - (now - DUE));
+        assertEquals("60750: 4 reminders", shown.get(6));
+
+        // and the one after that waits for the second dialog's minute
+        notify.post("Overdue", "task 10");
+        advance(750);
+        assertEquals(7, shown.size());
+        advance(61_750 - (now - DUE));
+        assertEquals("61750: Overdue", shown.get(7));
+        assertEquals(11, notify.posted.get());
+        assertEquals(11, notify.emitted.get());
+    }
+
+    @Test
+    void aFloodBeyondThePendingCapIsCountedAndDropped() {
+        for (int i = 0; i < 1005; i++) notify.post("Overdue", "task " + i);
+        advance(750);
+        assertEquals(Collections.singletonList("750: 1000 reminders"), shown);
+        assertEquals(1005, notify.posted.get());
+        assertEquals(15, notify.emitted.get());
+        assertEquals(5 + 985, notify.suppressed.get());
+    }
+}
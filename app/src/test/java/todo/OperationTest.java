@@ -0,0 +1,37 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Runs and errors counted per operation; the operations are shared, so only differences are checked. */
+class OperationTest {
+    private static final Operation OP = Operation.EXPORT;
+
+    @Test
+    void aFailureOutsideARunIsAnErrorOnly() {
+        Operation.Span span = OP.start();
+        span.end(7);
+        long count = OP.getCount(), errors = OP.getErrors();
+        double last = OP.getLastMillis(), mean = OP.getMeanMillis();
+
+        OP.failed(new IOException("disk full"));
+        assertEquals(count, OP.getCount());
+        assertEquals(errors + 1, OP.getErrors());
+        assertEquals("java.io.IOException: disk full", OP.getLastError());
+        assertEquals(7, OP.getLastRows());
+        assertEquals(last, OP.getLastMillis());
+        assertEquals(mean, OP.getMeanMillis());
+    }
+
+    @Test
+    void aFailedRunIsARunAndAnError() {
+        long count = OP.getCount(), errors = OP.getErrors();
+        OP.start().fail(new IllegalStateException("no"));
+        assertEquals(count + 1, OP.getCount());
+        assertEquals(errors + 1, OP.getErrors());
+        assertEquals("java.lang.IllegalStateException: no", OP.getLastError());
+    }
+}
@@ -0,0 +1,137 @@
+package todo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Which reminders fire when, stepped by hand on a clock the test sets, with no reminder thread. */
+class ReminderSchedulerTest {
+    private static final long MINUTE = 60_000L, LEAD = 10 * MINUTE;
+
+    private long now;
+    private final List<String> fired = new ArrayList<>();
+    private final ReminderScheduler reminders = new ReminderScheduler(
+            (slot, due, overdue) -> fired.add(slot + (overdue ? " overdue " : " upcoming ") + (due - DUE) / MINUTE),
+            () -> now);
+    private final TaskStore store = new TaskStore();
+
+    @BeforeEach
+    void start() { now = DUE - 60 * MINUTE; }
+
+    // moves the clock and returns what fired on the way
+    private List<String> at(long time) {
+        now = time;
+        fired.clear();
+        reminders.fireDue();
+        return new ArrayList<>(fired);
+    }
+
+    @Test
+    void upcomingThenOverdueOncePerDueDate() {
+        store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        store.add("done", STATUS_DONE, PRIORITY_LOW, DUE);
+        store.add("no date", STATUS_PENDING, PRIORITY_LOW, NO_DUE);
+        reminders.reset(store, LEAD);
+
+        assertEquals(Collections.emptyList(), at(DUE - LEAD - 1));
+        assertEquals(Collections.singletonList("0 upcoming 0"), at(DUE - LEAD));
+        assertEquals(Collections.emptyList(), at(DUE - 1));
+        assertEquals(Collections.singletonList("0 overdue 0"), at(DUE));
+        assertEquals(Collections.emptyList(), at(DUE + 60 * MINUTE));
+
+        reminders.reset(store, LEAD); // e.g. a reload: nothing fires twice
+        assertEquals(Collections.emptyList(), at(DUE + 61 * MINUTE));
+    }
+
+    @Test
+    void overdueSupersedesAnUpcomingReminderNotYetFired() {
+        store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        reminders.reset(store, LEAD);
+        assertEquals(Collections.singletonList("0 overdue 0"), at(DUE + MINUTE));
+    }
+
+    @Test
+    void editingATaskInvalidatesItsOldEntries() {
+        int a = store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        int b = store.add("b", STATUS_PENDING, PRIORITY_LOW, DUE);
+        int c = store.add("c", STATUS_PENDING, PRIORITY_LOW, DUE);
+        reminders.reset(store, LEAD);
+
+        store.update(a, "a", PRIORITY_LOW, DUE + 30 * MINUTE); // moved later
+        reminders.update(a, store);
+        store.setStatus(b, STATUS_DONE);
+        reminders.update(b, store);
+        store.remove(c);
+        reminders.update(c, store);
+
+        assertEquals(Collections.emptyList(), at(DUE));
+        assertEquals(Collections.singletonList("0 upcoming 30"), at(DUE + 20 * MINUTE));
+        assertEquals(Collections.singletonList("0 overdue 30"), at(DUE + 30 * MINUTE));
+    }
+
+    @Test
+    void aNewDueDateFiresAgainAndAnUnchangedOneDoesNot() {
+        int a = store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        reminders.reset(store, LEAD);
+        assertEquals(Collections.singletonList("0 overdue 0"), at(DUE));
+
+        store.update(a, "a renamed", PRIORITY_HIGH, DUE); // same due: already told
+        reminders.update(a, store);
+        assertEquals(Collections.emptyList(), at(DUE + MINUTE));
+
+        store.update(a, "a", PRIORITY_HIGH, DUE + 120 * MINUTE);
+        reminders.update(a, store);
+        assertEquals(Collections.singletonList("0 upcoming 120"), at(DUE + 110 * MINUTE));
+    }
+
+    @Test
+    void aNewLeadTimeRearmsOnlyTheUpcomingReminders() {
+        store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        reminders.reset(store, LEAD);
+        assertEquals(Collections.singletonList("0 upcoming 0"), at(DUE - LEAD));
+        reminders.reset(store, 5 * MINUTE);
+        assertEquals(Collections.singletonList("0 upcoming 0"), at(DUE - 5 * MINUTE));
+        assertEquals(Collections.singletonList("0 overdue 0"), at(DUE));
+    }
+
+    @Test
+    void reKeyedSlotsKeepWhatAlreadyFired() {
+        store.add("gone", STATUS_PENDING, PRIORITY_LOW, DUE + 60 * MINUTE);
+        int b = store.add("b", STATUS_PENDING, PRIORITY_LOW, DUE);
+        store.add("c", STATUS_PENDING, PRIORITY_LOW, DUE + 30 * MINUTE);
+        reminders.reset(store, LEAD);
+        assertEquals(Collections.singletonList("1 upcoming 0"), at(DUE - LEAD));
+
+        // a renumbering save, in TaskEngine's order: scheduler, store, then a reset
+        store.remove(0);
+        reminders.update(0, store);
+        int[] renumbering = store.renumbering(store.publish());
+        reminders.compact(renumbering);
+        store.compact(renumbering);
+        reminders.reset(store, LEAD);
+        assertEquals("b", store.text(renumbering[b]));
+
+        assertEquals(Collections.singletonList("0 overdue 0"), at(DUE));
+        assertEquals(Collections.singletonList("1 upcoming 30"), at(DUE + 20 * MINUTE));
+        assertEquals(Collections.singletonList("1 overdue 30"), at(DUE + 30 * MINUTE));
+        assertEquals(Collections.emptyList(), at(DUE + 90 * MINUTE));
+    }
+
+    @Test
+    void manyEditsToOneTaskLeaveOneLiveEntry() {
+        int a = store.add("a", STATUS_PENDING, PRIORITY_LOW, DUE);
+        reminders.reset(store, LEAD);
+        for (int i = 1; i <= 1000; i++) {
+            store.update(a, "a", PRIORITY_LOW, DUE + i * MINUTE);
+            reminders.update(a, store);
+        }
+        assertEquals(Collections.emptyList(), at(DUE + 989 * MINUTE));
+        assertEquals(Collections.singletonList("0 upcoming 1000"), at(DUE + 990 * MINUTE));
+        assertEquals(Collections.singletonList("0 overdue 1000"), at(DUE + 1000 * MINUTE));
+    }
+}
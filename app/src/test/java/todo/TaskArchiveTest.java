@@ -0,0 +1,151 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Moving old done tasks to the archive, and finishing a move that was cut short. */
+class TaskArchiveTest {
+    @TempDir
+    Path dir;
+
+    private Path file() { return dir.resolve("todo.csv"); }
+
+    private TaskEngine engine(boolean journal) throws IOException {
+        TaskEngine e = new TaskEngine(file(), journal);
+        e.setArchiveAge(TimeUnit.DAYS.toMillis(1));
+        e.load();
+        return e;
+    }
+
+    private static List<String> archivedTexts(TaskEngine e) throws IOException {
+        FilterEngine.Matches m = e.searchArchive("", FilterEngine.SORT_LIST, 100);
+        List<String> out = new ArrayList<>();
+        for (int s : m.slots) out.add(m.snapshot.text(s));
+        Collections.sort(out);
+        return out;
+    }
+
+    // three done tasks past the archive age, two of them identical, and one pending
+    private void writeTasks(boolean journal) throws IOException {
+        TaskEngine e = TestTasks.engine(file(), journal);
+        for (String t : new String[] {"old", "twin", "twin"}) e.add(t, STATUS_DONE, PRIORITY_LOW, DUE);
+        e.add("open", STATUS_PENDING, PRIORITY_LOW, DUE);
+        e.save();
+        e.close();
+    }
+
+    // puts the files back as they were before the move, as a crash before the deletes reached them would leave them
+    private Map<Path, byte[]> copy(Path... files) throws IOException {
+        Map<Path, byte[]> saved = new LinkedHashMap<>();
+        for (Path f : files) if (Files.exists(f)) saved.put(f, Files.readAllBytes(f));
+        return saved;
+    }
+
+    private static void restore(Map<Path, byte[]> saved) throws IOException {
+        for (Map.Entry<Path, byte[]> f : saved.entrySet()) Files.write(f.getKey(), f.getValue());
+    }
+
+    // takes back the index line saying the deletions held, as the crash came before it
+    private void unsettle() throws IOException {
+        Path index = dir.resolve("todo.csv.archive").resolve("index");
+        List<String> lines = Files.readAllLines(index, StandardCharsets.UTF_8);
+        assertTrue(lines.remove(lines.size() - 1).startsWith("settled,"), lines.toString());
+        Files.write(index, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void archivingIsOffByDefault() throws IOException {
+        writeTasks(true);
+        TaskEngine e = TestTasks.engine(file(), true);
+        e.save();
+        assertEquals(0, e.archived());
+        assertEquals(4, e.store.size());
+        e.close();
+    }
+
+    @Test
+    void loadWithAJournalMovesOldDoneTasks() throws IOException {
+        writeTasks(true);
+        TaskEngine e = engine(true);
+        assertEquals(Collections.singletonList("open"), texts(e.store.published()));
+        assertEquals(3, e.archived());
+        assertEquals(Arrays.asList("old", "twin", "twin"), archivedTexts(e));
+        e.close();
+    }
+
+    @Test
+    void aMoveWhoseDeletesWereLostIsNotArchivedTwice() throws IOException {
+        writeTasks(true);
+        Map<Path, byte[]> before = copy(file(), dir.resolve("todo.csv.journal"));
+        engine(true).close();
+        restore(before);
+        unsettle();
+
+        TaskEngine e = engine(true);
+        assertEquals(Collections.singletonList("open"), texts(e.store.published()));
+        assertEquals(3, e.archived());
+        assertEquals(Arrays.asList("old", "twin", "twin"), archivedTexts(e));
+        e.close();
+    }
+
+    @Test
+    void withoutAJournalASaveCutShortIsNotArchivedTwice() throws IOException {
+        writeTasks(false);
+        Map<Path, byte[]> before = copy(file());
+        TaskEngine e = engine(false);
+        assertEquals(0, e.archived(), "without a journal only saving archives");
+        e.save();
+        assertEquals(3, e.archived());
+        e.close();
+        restore(before); // the snapshot never went in
+        unsettle();
+
+        e = engine(false);
+        assertEquals(4, e.store.size());
+        e.save();
+        assertEquals(3, e.archived());
+        assertEquals(Arrays.asList("old", "twin", "twin"), archivedTexts(e));
+        e.close();
+        assertEquals(Collections.singletonList("open"), texts(engine(false).store.published()));
+    }
+
+    @Test
+    void aTaskIdenticalToAnArchivedOneIsArchivedOnceMoveIsSettled() throws IOException {
+        writeTasks(true);
+        TaskEngine e = engine(true);
+        e.add("twin", STATUS_DONE, PRIORITY_LOW, DUE); // same line as the archived twins
+        e.save();
+        assertEquals(4, e.archived());
+        assertEquals(Arrays.asList("old", "twin", "twin", "twin"), archivedTexts(e));
+        assertEquals(Collections.singletonList("open"), texts(e.store.published()));
+        e.close();
+    }
+
+    @Test
+    void onlyTheTasksOfTheMoveCutShortAreTakenForArchivedOnes() throws IOException {
+        writeTasks(true);
+        Map<Path, byte[]> before = copy(file(), dir.resolve("todo.csv.journal"));
+        engine(true).close();
+        restore(before);
+        unsettle();
+        TaskEngine e = TestTasks.engine(file(), true); // archiving off: the tasks stay in both places
+        e.add("twin", STATUS_DONE, PRIORITY_LOW, DUE);
+        e.close();
+
+        e = engine(true);
+        assertEquals(4, e.archived(), "the third twin is new");
+        assertEquals(Arrays.asList("old", "twin", "twin", "twin"), archivedTexts(e));
+        assertEquals(Collections.singletonList("open"), texts(e.store.published()));
+        e.close();
+    }
+}
@@ -0,0 +1,271 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.SnapshotFiles.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Replay, recovery and compaction of the change journal, and writers sharing it. */
+class TaskJournalTest {
+    @TempDir
+    Path dir;
+
+    private Path file() { return dir.resolve("todo.csv"); }
+    private Path journal() { return dir.resolve("todo.csv.journal"); }
+
+    private static List<String> reload(Path file) throws IOException {
+        TaskEngine e = engine(file, true);
+        try {
+            return texts(e.store.published());
+        } finally {
+            e.close();
+        }
+    }
+
+    private List<String> journalLines() throws IOException {
+        return Files.readAllLines(journal(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void replaysRecordsOnTopOfTheSnapshot() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "a", "b");
+        e.save();
+        add(e, "c");
+        e.edit(0, "a2", PRIORITY_HIGH, NO_DUE);
+        e.setStatus(1, STATUS_DONE);
+        e.delete(2);
+        e.close();
+
+        assertEquals(5, journalLines().size()); // header and four records
+        TaskEngine again = new TaskEngine(file(), true);
+        assertEquals(4, again.load());
+        TaskSnapshot v = again.store.published();
+        assertEquals(Arrays.asList("a2", "b"), texts(v));
+        assertEquals(PRIORITY_HIGH, v.priority(0));
+        assertEquals(NO_DUE, v.due(0));
+        assertEquals(STATUS_DONE, v.status(1));
+        again.close();
+    }
+
+    @Test
+    void tornTrailingRecordIsDroppedAndLaterAppendsReplay() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "kept 1", "kept 2", "torn");
+        e.close();
+        byte[] b = Files.readAllBytes(journal());
+        Files.write(journal(), Arrays.copyOf(b, b.length - 6)); // a crash mid-write
+
+        TaskEngine again = new TaskEngine(file(), true);
+        assertEquals(2, again.load());
+        assertEquals(Arrays.asList("kept 1", "kept 2"), texts(again.store.published()));
+        // the partial line is gone, so what follows it is not glued onto it
+        assertTrue(new String(Files.readAllBytes(journal()), StandardCharsets.UTF_8).endsWith("\n"));
+        add(again, "after");
+        again.close();
+        assertEquals(Arrays.asList("kept 1", "kept 2", "after"), reload(file()));
+    }
+
+    @Test
+    void garbledRecordEndsTheReplay() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "a", "b");
+        e.close();
+        List<String> lines = journalLines();
+        lines.add(2, "E,7,ghost,1,0"); // slot 7 does not exist
+        Files.write(journal(), lines, StandardCharsets.UTF_8);
+
+        assertEquals(Collections.singletonList("a"), reload(file()));
+    }
+
+    @Test
+    void journalForAnotherSnapshotIsDiscarded() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "saved");
+        e.save();
+        add(e, "journaled");
+        e.close();
+        // another program rewrites the snapshot, leaving the journal of the old one behind
+        Files.write(file(), "task,status,priority,due\nedited by hand,Pending,Low,\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Collections.singletonList("edited by hand"), reload(file()));
+        assertEquals(1, journalLines().size(), "journal started over: " + journalLines());
+    }
+
+    @Test
+    void journalWithAForeignHeaderIsDiscarded() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "saved");
+        e.save();
+        add(e, "journaled");
+        e.close();
+        List<String> lines = journalLines();
+        lines.set(0, "#todo-journal,99," + lines.get(0).substring(lines.get(0).lastIndexOf(',') + 1));
+        Files.write(journal(), lines, StandardCharsets.UTF_8);
+
+        assertEquals(Collections.singletonList("saved"), reload(file()));
+    }
+
+    @Test
+    void compactingSaveReplacesTheSnapshotAndEmptiesTheJournal() throws IOException {
+        TaskEngine e = engine(file(), true);
+        add(e, "a", "b", "c", "d");
+        e.save();
+        e.delete(1);
+        e.save(); // the tombstone goes, slots are renumbered
+        e.close();
+
+        String due = formatDue(DUE);
+        assertEquals(Arrays.asList("task,status,priority,due", "a,Pending,Medium," + due, "c,Pending,Medium," + due,
+                "d,Pending,Medium," + due), Files.readAllLines(file(), StandardCharsets.UTF_8));
+        assertEquals(1, journalLines().size());
+        try (DirectoryStream<Path> left = Files.newDirectoryStream(dir, "*.tmp")) {
+            assertFalse(left.iterator().hasNext(), "temporary files left behind");
+        }
+        assertEquals(Arrays.asList("a", "c", "d"), reload(file()));
+    }
+
+    // Three adds and a delete folded into a new snapshot while a status change comes
+    // in; returns the new snapshot's CRC. The files named stay reachable as they were
+    // before the rebase replaced them, as "<name>.before", through hard links.
+    private long rebaseWithOneRecordCarriedOver(String... keep) throws IOException {
+        Files.write(file(), "task,status,priority,due\n".getBytes(StandardCharsets.UTF_8));
+        TaskStore store = new TaskStore();
+        long crc = readSnapshotFile(file(), store);
+        TaskJournal j = new TaskJournal(file());
+        assertEquals(0, j.open(store, crc));
+        for (String t : new String[] {"a", "b", "c"}) {
+            j.append(TaskJournal.ADD, store.add(t, STATUS_PENDING, PRIORITY_LOW, DUE), store);
+        }
+        store.remove(0);
+        j.append(TaskJournal.DELETE, 0, store);
+        TaskSnapshot frozen = store.publish();
+        int mark = j.records();
+        FileStamp before = FileStamp.of(file());
+        // written while a fourth record comes in
+        Path tmp = dir.resolve("todo.csv.tmp");
+        long newCrc = writeSnapshotFile(frozen, tmp, file());
+        store.setStatus(2, STATUS_DONE);
+        j.append(TaskJournal.STATUS, 2, store);
+
+        int[] renumbering = store.renumbering(frozen);
+        for (String name : keep) Files.createLink(dir.resolve(name + ".before"), dir.resolve(name));
+        assertTrue(j.rebase(tmp, newCrc, mark, renumbering, before));
+        j.close();
+        return newCrc;
+    }
+
+    // Opens the journal over the snapshot on disk; returns the records replayed.
+    private int reopen(TaskStore into) throws IOException {
+        TaskJournal k = new TaskJournal(file());
+        try {
+            return k.open(into, readSnapshotFile(file(), into));
+        } finally {
+            k.close();
+        }
+    }
+
+    @Test
+    void rebaseCarriesRecordsPastTheMarkRenumbered() throws IOException {
+        long newCrc = rebaseWithOneRecordCarriedOver();
+
+        assertEquals(Arrays.asList("#todo-journal,1," + newCrc, "S,1,1"), journalLines());
+        TaskStore fresh = new TaskStore();
+        assertEquals(1, reopen(fresh));
+        assertEquals(Arrays.asList("b", "c"), texts(fresh));
+        assertEquals(STATUS_DONE, fresh.status(1));
+    }
+
+    @Test
+    void rebaseCutShortAfterTheSnapshotWentInLosesNothing() throws IOException {
+        long newCrc = rebaseWithOneRecordCarriedOver("todo.csv.journal");
+        // the old journal, handed over, is back as if the new one never went in
+        Files.move(dir.resolve("todo.csv.journal.before"), journal(), StandardCopyOption.REPLACE_EXISTING);
+
+        TaskStore fresh = new TaskStore();
+        assertEquals(1, reopen(fresh));
+        assertEquals(Arrays.asList("b", "c"), texts(fresh));
+        assertEquals(STATUS_DONE, fresh.status(1));
+        assertEquals(Arrays.asList("#todo-journal,1," + newCrc, "S,1,1"), journalLines(), "handover finished");
+    }
+
+    @Test
+    void rebaseCutShortBeforeTheSnapshotWentInLosesNothing() throws IOException {
+        rebaseWithOneRecordCarriedOver("todo.csv", "todo.csv.journal");
+        Files.move(dir.resolve("todo.csv.before"), file(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(dir.resolve("todo.csv.journal.before"), journal(), StandardCopyOption.REPLACE_EXISTING);
+
+        TaskStore fresh = new TaskStore();
+        assertEquals(5, reopen(fresh));
+        assertEquals(Arrays.asList("b", "c"), texts(fresh));
+        assertEquals(STATUS_DONE, fresh.status(2));
+        assertEquals(6, journalLines().size(), "the handover is dropped: " + journalLines());
+    }
+
+    @Test
+    void rebaseInstallsNothingOnceAnotherWriterReplacedTheSnapshot() throws IOException {
+        Files.write(file(), "task,status,priority,due\n".getBytes(StandardCharsets.UTF_8));
+        TaskStore store = new TaskStore();
+        long crc = readSnapshotFile(file(), store);
+        TaskJournal j = new TaskJournal(file());
+        j.open(store, crc);
+        j.append(TaskJournal.ADD, store.add("mine", STATUS_PENDING, PRIORITY_LOW, DUE), store);
+        FileStamp before = FileStamp.of(file());
+        Path tmp = dir.resolve("todo.csv.tmp");
+        long newCrc = writeSnapshotFile(store.publish(), tmp, file());
+        byte[] theirs = "task,status,priority,due\ntheirs,Pending,Low,\n".getBytes(StandardCharsets.UTF_8);
+        Path other = dir.resolve("other.tmp");
+        Files.write(other, theirs);
+        Files.move(other, file(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        assertFalse(j.rebase(tmp, newCrc, j.records(), null, before));
+        j.close();
+        assertArrayEquals(theirs, Files.readAllBytes(file()));
+    }
+
+    @Test
+    void twoEnginesAppendingAtOnceLoseNothing() throws Exception {
+        // a save lands between the other writer's appends only now and then; run it a few times
+        for (int round = 0; round < 20; round++) {
+            Path file = Files.createDirectories(dir.resolve("round" + round)).resolve("todo.csv");
+            TaskEngine a = engine(file, true), b = engine(file, true);
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<?>> runs = new ArrayList<>();
+                for (TaskEngine e : Arrays.asList(a, b)) {
+                    String tag = e == a ? "a" : "b";
+                    runs.add(pool.submit(() -> {
+                        for (int i = 0; i < 200; i++) {
+                            add(e, tag + i);
+                            if (i % 50 == 49) e.save();
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : runs) f.get(60, TimeUnit.SECONDS);
+            } finally {
+                pool.shutdown();
+                a.close();
+                b.close();
+            }
+
+            List<String> tasks = reload(file);
+            assertEquals(400, tasks.size(), "round " + round);
+            assertEquals(400, new HashSet<>(tasks).size(), "no task twice");
+            for (String tag : new String[] {"a", "b"}) {
+                List<String> own = new ArrayList<>();
+                for (String t : tasks) if (t.startsWith(tag)) own.add(t);
+                for (int i = 0; i < own.size(); i++) assertEquals(tag + i, own.get(i), "each writer's adds keep their order");
+            }
+        }
+    }
+}
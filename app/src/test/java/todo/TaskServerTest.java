@@ -0,0 +1,188 @@
+package todo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The HTTP API over a real socket, since HttpURLConnection will neither send PATCH
+ * nor let a test set Origin and Host: status codes, and the requests it refuses.
+ */
+class TaskServerTest {
+    private static final String TOKEN = "test-token";
+    private static final String JSON = "application/json";
+
+    @TempDir
+    Path dir;
+
+    private TaskEngine engine;
+    private TaskServer server;
+
+    private void serve(boolean journal) throws IOException {
+        engine = TestTasks.engine(dir.resolve("todo.csv"), journal);
+        server = new TaskServer(engine, TOKEN);
+        server.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        if (server != null) server.stop();
+        if (engine != null) engine.close();
+    }
+
+    private static final class Answer {
+        final int code;
+        final String body;
+        Answer(int code, String body) { this.code = code; this.body = body; }
+        @Override public String toString() { return code + " " + body; }
+    }
+
+    // headers come in name, value pairs; Host and Authorization are sent unless given
+    private Answer send(String method, String path, String contentType, String body, String... headers) throws IOException {
+        byte[] payload = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder req = new StringBuilder(method + " " + path + " HTTP/1.1\r\n");
+        boolean host = false, auth = false;
+        for (int i = 0; i < headers.length; i += 2) {
+            host |= headers[i].equals("Host");
+            auth |= headers[i].equals("Authorization");
+            if (headers[i + 1] != null) req.append(headers[i]).append(": ").append(headers[i + 1]).append("\r\n");
+        }
+        if (!host) req.append("Host: 127.0.0.1:").append(server.port()).append("\r\n");
+        if (!auth) req.append("Authorization: Bearer ").append(TOKEN).append("\r\n");
+        if (contentType != null) req.append("Content-Type: ").append(contentType).append("\r\n");
+        req.append("Content-Length: ").append(payload.length).append("\r\nConnection: close\r\n\r\n");
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            OutputStream out = s.getOutputStream();
+            out.write(req.toString().getBytes(StandardCharsets.UTF_8));
+            out.write(payload);
+            out.flush();
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            InputStream in = s.getInputStream();
+            byte[] b = new byte[8192];
+            for (int n; (n = in.read(b)) > 0; ) buf.write(b, 0, n);
+            String reply = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+            int code = Integer.parseInt(reply.substring(9, 12));
+            return new Answer(code, reply.substring(reply.indexOf("\r\n\r\n") + 4));
+        }
+    }
+
+    private Answer post(String path, String json) throws IOException { return send("POST", path, JSON, json); }
+
+    private void assertCode(int code, Answer a) {
+        assertEquals(code, a.code, a.toString());
+        if (code >= 400) assertTrue(a.body.startsWith("{\"error\":"), a.toString());
+    }
+
+    @Test
+    void addsReadsChangesAndDeletes() throws IOException {
+        serve(true);
+        Answer added = post("/tasks", "{\"task\":\"Pay rent\",\"priority\":\"High\",\"due\":\"2025-03-01 09:00\"}");
+        assertCode(201, added);
+        String id = added.body.replaceAll("\\D", "");
+        assertEquals("{\"id\":" + id + ",\"task\":\"Pay rent\",\"status\":\"Pending\",\"priority\":\"High\","
+                + "\"due\":\"2025-03-01 09:00\"}", send("GET", "/tasks/" + id, null, null).body);
+        assertCode(200, send("PATCH", "/tasks/" + id, JSON, "{\"status\":\"Done\"}"));
+        assertTrue(send("GET", "/tasks/" + id, null, null).body.contains("\"status\":\"Done\""));
+        assertCode(204, send("DELETE", "/tasks/" + id, null, null));
+        assertCode(404, send("GET", "/tasks/" + id, null, null));
+    }
+
+    @Test
+    void badRequestsAre400() throws IOException {
+        serve(true);
+        for (String body : new String[] {"", "{", "[]", "{\"task\":\"a\"} x", "{\"priority\":\"High\"}",
+                "{\"task\":\"  \"}", "{\"task\":\"a\",\"priority\":\"urgent\"}", "{\"task\":\"a\",\"priority\":300}",
+                "{\"task\":\"a\",\"status\":1}", "{\"task\":\"a\",\"due\":\"soon\"}",
+                "{\"task\":\"a\",\"due\":9223372036854775807}", "{\"task\":\"a\",\"due\":-9223372036854775808}",
+                "{\"task\":\"a\",\"due\":99999999999999999999}"}) {
+            assertCode(400, post("/tasks", body));
+        }
+        assertCode(400, send("GET", "/tasks?limit=lots", null, null));
+        assertCode(400, post("/tasks/bulk", "{\"op\":\"add\"}"));
+        assertEquals(0, engine.store.published().size(), "nothing was added");
+    }
+
+    @Test
+    void unknownTasksAndPathsAre404() throws IOException {
+        serve(true);
+        for (String path : new String[] {"/tasks/7", "/tasks/-1", "/tasks/abc", "/tasks/99999999999", "/tasksx"}) {
+            assertCode(404, send("GET", path, null, null));
+        }
+        assertCode(404, send("PATCH", "/tasks/7", JSON, "{\"status\":\"Done\"}"));
+        assertCode(404, send("DELETE", "/tasks/7", null, null));
+    }
+
+    @Test
+    void wrongMethodsAre405() throws IOException {
+        serve(true);
+        assertCode(405, send("DELETE", "/tasks", null, null));
+        assertCode(405, send("PUT", "/tasks", JSON, "{}"));
+        assertCode(405, send("GET", "/tasks/bulk", null, null));
+        assertCode(405, send("GET", "/save", null, null));
+    }
+
+    @Test
+    void savingOverAnotherProgramsChangeIs409ThenOverwrites() throws IOException {
+        Path file = dir.resolve("todo.csv");
+        Files.write(file, "task,status,priority,due\nold,Pending,Low,\n".getBytes(StandardCharsets.UTF_8));
+        serve(false);
+        assertCode(201, post("/tasks", "{\"task\":\"mine\"}"));
+        byte[] theirs = "task,status,priority,due\nold,Pending,Low,\ntheirs,Pending,Low,\n".getBytes(StandardCharsets.UTF_8);
+        Files.write(file, theirs);
+
+        assertCode(409, send("POST", "/save", null, null));
+        assertArrayEquals(theirs, Files.readAllBytes(file), "their change is kept");
+        assertCode(200, send("POST", "/save", null, null));
+        assertTrue(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("mine,Pending"));
+    }
+
+    @Test
+    void bodiesThatAreNotJsonAre415() throws IOException {
+        serve(true);
+        for (String type : new String[] {null, "text/plain", "application/x-www-form-urlencoded", "multipart/form-data"}) {
+            assertCode(415, send("POST", "/tasks", type, "{\"task\":\"a\"}"));
+        }
+        assertCode(201, send("POST", "/tasks", "Application/JSON; charset=utf-8", "{\"task\":\"a\"}"));
+    }
+
+    @Test
+    void requestsWithoutTheTokenAre401() throws IOException {
+        serve(true);
+        for (String auth : new String[] {null, "Bearer", "Bearer wrong", "Basic " + TOKEN, "Bearer " + TOKEN + "x"}) {
+            assertCode(401, send("GET", "/tasks", null, null, "Authorization", auth));
+        }
+        assertCode(401, send("POST", "/tasks", JSON, "{\"task\":\"a\"}", "Authorization", null));
+        assertCode(200, send("GET", "/tasks", null, null, "Authorization", "bearer " + TOKEN));
+        assertEquals(0, engine.store.published().size());
+    }
+
+    @Test
+    void requestsFromWebPagesOrForeignHostsAre403() throws IOException {
+        serve(true);
+        assertCode(403, send("POST", "/tasks", JSON, "{\"task\":\"a\"}", "Origin", "https://example.com"));
+        assertCode(403, send("GET", "/tasks", null, null, "Origin", "null"));
+        for (String host : new String[] {"example.com", "127.0.0.1.example.com", "localhost.example.com:80",
+                "127.0.0.1:80x", "[::1]x", "0.0.0.0"}) {
+            assertCode(403, send("GET", "/tasks", null, null, "Host", host));
+        }
+        for (String host : new String[] {"localhost", "LOCALHOST:8765", "127.0.0.1", "[::1]:1"}) {
+            assertCode(200, send("GET", "/tasks", null, null, "Host", host));
+        }
+        assertEquals(0, engine.store.published().size());
+    }
+
+    @Test
+    void theTokenFileHoldsTheToken() throws IOException {
+        serve(true);
+        assertEquals(dir.resolve("todo.csv.api-token"), server.tokenFile());
+        assertEquals(TOKEN, new String(Files.readAllBytes(server.tokenFile()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package todo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static todo.Tasks.*;
+
+/** What the tests share: a due date, a loaded engine, views read back as lists, and a plain scan to check queries by. */
+final class TestTasks {
+    static final long DUE = 1_735_732_800_000L; // 2025-01-01 12:00Z: a whole minute, long past
+
+    private TestTasks() {}
+
+    /** An engine over `file`, loaded; the caller closes it. */
+    static TaskEngine engine(Path file, boolean journaled) throws IOException {
+        TaskEngine e = new TaskEngine(file, journaled);
+        e.load();
+        return e;
+    }
+
+    /** Adds pending, medium-priority tasks due at DUE. */
+    static void add(TaskEngine e, String... texts) {
+        for (String t : texts) e.add(t, STATUS_PENDING, PRIORITY_MEDIUM, DUE);
+    }
+
+    /** The live tasks' text, in slot order. */
+    static List<String> texts(TaskView v) {
+        List<String> out = new ArrayList<>();
+        for (int s = v.nextLive(0); s >= 0; s = v.nextLive(s + 1)) out.add(v.text(s));
+        return out;
+    }
+
+    /** The live tasks in slot order, as text|status|priority|due. */
+    static List<String> rows(TaskView v) {
+        List<String> out = new ArrayList<>();
+        for (int s = v.nextLive(0); s >= 0; s = v.nextLive(s + 1)) {
+            out.add(v.text(s) + "|" + v.status(s) + "|" + v.priority(s) + "|" + v.due(s));
+        }
+        return out;
+    }
+
+    private static boolean passes(TaskView v, int s, String f) {
+        switch (f) {
+            case "Pending": return v.status(s) == STATUS_PENDING;
+            case "Done": return v.status(s) == STATUS_DONE;
+            case "High": return v.priority(s) == PRIORITY_HIGH;
+            case "Medium": return v.priority(s) == PRIORITY_MEDIUM;
+            case "Low": return v.priority(s) == PRIORITY_LOW;
+            default: return true;
+        }
+    }
+
+    /** Every live slot matching the query and filter, in slot order, by looking at each one. */
+    static List<Integer> scan(TaskView v, String q, String f) {
+        List<Integer> out = new ArrayList<>();
+        for (int s = 0; s < v.slotCount(); s++) {
+            if (v.isLive(s) && passes(v, s, f) && v.text(s).toLowerCase(Locale.ROOT).contains(q)) out.add(s);
+        }
+        return out;
+    }
+
+    static List<Integer> list(int[] slots) {
+        List<Integer> out = new ArrayList<>();
+        for (int s : slots) out.add(s);
+        return out;
+    }
+}
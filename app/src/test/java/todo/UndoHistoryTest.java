@@ -0,0 +1,153 @@
+package todo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static todo.TaskPage.*;
+import static todo.Tasks.*;
+import static todo.TestTasks.*;
+
+/** Undo and redo putting the tasks back exactly, across saves that renumber slots, within the memory cap. */
+class UndoHistoryTest {
+    @TempDir
+    Path dir;
+
+    private final Random random = new Random(5);
+
+    // the tasks irrespective of their slots, which re-adding a deleted task changes
+    private static List<String> tasks(TaskEngine e) {
+        List<String> out = rows(e.store.published());
+        Collections.sort(out);
+        return out;
+    }
+
+    private static int slotOf(TaskEngine e, String text) {
+        for (int s = e.store.nextLive(0); s >= 0; s = e.store.nextLive(s + 1)) if (e.store.text(s).equals(text)) return s;
+        throw new AssertionError(text);
+    }
+
+    @Test
+    void undoAndRedoWalkBackAndForthThroughEveryState() throws IOException {
+        TaskEngine e = engine(dir.resolve("todo.csv"), true);
+        List<List<String>> states = new ArrayList<>();
+        states.add(tasks(e));
+        for (int i = 0; i < 40; i++) {
+            int n = e.store.size();
+            switch (n < 5 ? 0 : random.nextInt(5)) {
+                case 0:
+                    e.undoable(s -> "add", () -> e.add("task " + random.nextInt(1000), STATUS_PENDING, PRIORITY_LOW, DUE));
+                    break;
+                case 1: {
+                    int slot = slotOf(e, e.store.text(e.store.nextLive(random.nextInt(e.store.slotCount() / 2))));
+                    e.undoable(s -> "edit", () -> e.edit(slot, "edited " + random.nextInt(1000), PRIORITY_HIGH,
+                            DUE + 60_000) ? 1 : 0);
+                    break;
+                }
+                case 2:
+                    e.undoable(s -> "done", () -> e.setStatusAll(e.find("", "Pending"), STATUS_DONE));
+                    break;
+                case 3:
+                    e.undoable(s -> "delete", () -> e.deleteAll(Arrays.copyOf(e.find("", "All"), 2)));
+                    break;
+                default:
+                    e.save(); // renumbers the slots when there were deletes
+                    continue;
+            }
+            // an action that changed nothing leaves no entry
+            if (!tasks(e).equals(states.get(states.size() - 1))) states.add(tasks(e));
+        }
+        for (int i = states.size() - 2; i >= 0; i--) {
+            assertNotNull(e.undo(), "undo to state " + i);
+            assertEquals(states.get(i), tasks(e), "undo to state " + i);
+            if (i % 7 == 0) e.save();
+        }
+        assertNull(e.undo());
+        for (int i = 1; i < states.size(); i++) {
+            assertNotNull(e.redo(), "redo to state " + i);
+            assertEquals(states.get(i), tasks(e), "redo to state " + i);
+            if (i % 5 == 0) e.save();
+        }
+        assertNull(e.redo());
+        e.close();
+    }
+
+    @Test
+    void entriesFollowTheirTasksThroughARenumberingSave() throws IOException {
+        TaskEngine e = engine(dir.resolve("todo.csv"), true);
+        add(e, "a", "b", "c", "d");
+        e.save();
+        List<String> four = tasks(e);
+        e.undoable(n -> "delete b", () -> e.delete(slotOf(e, "b")) ? 1 : 0);
+        List<String> three = tasks(e);
+        long epoch = e.store.epoch();
+        e.save();
+        assertNotEquals(epoch, e.store.epoch(), "the save renumbered");
+        assertEquals(2, slotOf(e, "d"));
+        e.undoable(n -> "edit d", () -> e.edit(slotOf(e, "d"), "d2", PRIORITY_HIGH, NO_DUE) ? 1 : 0);
+
+        assertEquals("edit d", e.undo());
+        assertEquals(three, tasks(e));
+        assertEquals("delete b", e.undo());
+        assertEquals(four, tasks(e));
+        e.save();
+        assertEquals("delete b", e.redo());
+        assertEquals(three, tasks(e));
+        assertEquals("edit d", e.redo());
+        assertEquals(Arrays.asList("a", "c", "d2"), texts(e.store.published()));
+        e.close();
+    }
+
+    // one page's worth of tasks per action, so each entry costs about PAGE_BYTES
+    private static TaskStore pages(int n) {
+        TaskStore store = new TaskStore();
+        for (int i = 0; i < n * PAGE_SIZE; i++) store.add("t" + i, STATUS_PENDING, PRIORITY_LOW, DUE);
+        return store;
+    }
+
+    private static void touchPage(UndoHistory history, TaskStore store, int page, String label) {
+        TaskSnapshot before = store.publish();
+        store.setStatus(page * PAGE_SIZE, STATUS_DONE);
+        history.record(label, before, store.publish());
+    }
+
+    private static List<String> undoLabels(UndoHistory history) {
+        List<String> out = new ArrayList<>();
+        for (UndoHistory.Entry e; (e = history.take(true)) != null; ) out.add(e.label);
+        return out;
+    }
+
+    @Test
+    void theCapDropsTheOldestEntries() {
+        TaskStore store = pages(5);
+        UndoHistory history = new UndoHistory(3 * PAGE_BYTES + 100);
+        for (int p = 0; p < 5; p++) touchPage(history, store, p, "page " + p);
+        assertEquals(Arrays.asList("page 4", "page 3", "page 2"), undoLabels(history));
+
+        store = pages(2);
+        UndoHistory tiny = new UndoHistory(1);
+        touchPage(tiny, store, 0, "first");
+        touchPage(tiny, store, 1, "second");
+        assertEquals(Collections.singletonList("second"), undoLabels(tiny), "the newest stays however big");
+    }
+
+    @Test
+    void entriesFromBeforeARenumberingAreChargedTheWholeOldStore() {
+        TaskStore store = pages(4);
+        UndoHistory history = new UndoHistory(3 * PAGE_BYTES + 100);
+        touchPage(history, store, 0, "before");
+        touchPage(history, store, 1, "same epoch");
+        assertEquals("same epoch", history.undoLabel());
+
+        store.remove(PAGE_SIZE + 1);
+        int[] renumbering = store.renumbering(store.publish());
+        store.compact(renumbering);
+        touchPage(history, store, 2, "after");
+        // the two old entries now keep four pages alive besides their own: over the cap
+        assertEquals(Collections.singletonList("after"), undoLabels(history));
+    }
+}
@@ -0,0 +1,34 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** parseCSVLine and escapeCSV per line, over a sample of synthetic rows. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CsvLineBenchmark {
+    private String[] lines;
+    private String[] descriptions;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        lines = Fixtures.csvLines(10_000).toArray(new String[0]);
+        descriptions = Fixtures.descriptions(10_000).toArray(new String[0]);
+    }
+
+    @Benchmark
+    public String[] parseCSVLine() {
+        return Tasks.parseCSVLine(lines[next++ % lines.length]);
+    }
+
+    @Benchmark
+    public String escapeCSV() {
+        return Tasks.escapeCSV(descriptions[next++ % descriptions.length]);
+    }
+}
@@ -0,0 +1,51 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporting the whole list to an Excel workbook and to a PDF, rows streamed
+ * straight from the store into the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class ExportBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private TaskStore store;
+    private int[] all;
+    private Path out;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        out = Files.createTempDirectory("todo-bench-export");
+        store = Fixtures.store(rows);
+        all = Fixtures.allSlots(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(out.resolve("tasks.xlsx"));
+        Files.deleteIfExists(out.resolve("tasks.pdf"));
+        Files.deleteIfExists(out);
+    }
+
+    @Benchmark
+    public long exportXlsx() throws IOException {
+        return TaskExport.write(store, all, rows, out.resolve("tasks.xlsx"), done -> { });
+    }
+
+    @Benchmark
+    public long exportPdf() throws IOException {
+        return TaskExport.write(store, all, rows, out.resolve("tasks.pdf"), done -> { });
+    }
+}
@@ -0,0 +1,48 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * applyFilters per keystroke. {@code typing} replays a user typing a word, so
+ * every call after the first narrows the previous result; {@code freshQuery}
+ * alternates unrelated queries, which always go through the trigram index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class FilterBenchmark {
+    private static final String[] TYPING = {"r", "re", "rev", "revi", "revie", "review", "review ", "review b"};
+    private static final String[] FRESH = {"milk", "deploy", "#4242", "passport"};
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private FilterEngine filters;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        filters = new FilterEngine(Fixtures.store(rows));
+        filters.rebuild();
+    }
+
+    @Benchmark
+    public int typing() {
+        return filters.query(TYPING[next++ % TYPING.length], "All").slots.length;
+    }
+
+    @Benchmark
+    public int freshQuery() {
+        return filters.query(FRESH[next++ % FRESH.length], "All").slots.length;
+    }
+
+    @Benchmark
+    public int statusFilterOnly() {
+        return filters.query("", (next++ & 1) == 0 ? "Pending" : "High").slots.length;
+    }
+}
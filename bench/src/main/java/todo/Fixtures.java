@@ -0,0 +1,95 @@
+package todo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static todo.SnapshotFiles.*;
+import static todo.Tasks.*;
+
+/**
+ * Synthetic data sets for the JMH benchmarks. The benchmarks sit in package todo
+ * next to the engine, so they set up and call its classes directly.
+ */
+final class Fixtures {
+    private static final String[] WORDS = {
+        "buy", "milk", "call", "mom", "write", "report", "fix", "bug", "deploy", "review",
+        "study", "cricket", "practice", "drink", "water", "groceries", "invoice", "meeting",
+        "email", "plan", "sprint", "clean", "kitchen", "book", "flight", "renew", "passport",
+    };
+    private static final long BASE_DUE = 1_735_689_600_000L; // 2025-01-01T00:00Z
+
+    private Fixtures() {}
+
+    /** A deterministic store of synthetic tasks: about a third done, due dates over a year. */
+    static TaskStore store(int rows) {
+        Random r = new Random(42);
+        TaskStore store = new TaskStore();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            sb.setLength(0);
+            int words = 2 + r.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) sb.append(r.nextInt(20) == 0 ? ", " : " ");
+                sb.append(WORDS[r.nextInt(WORDS.length)]);
+            }
+            sb.append(" #").append(i);
+            byte status = r.nextInt(3) == 0 ? STATUS_DONE : STATUS_PENDING;
+            byte priority = (byte) r.nextInt(3);
+            long due = BASE_DUE + r.nextInt(365 * 24 * 60) * 60_000L;
+            store.add(sb.toString(), status, priority, due);
+        }
+        return store;
+    }
+
+    /** Slots 0..rows-1, every task of a fresh {@link #store}. */
+    static int[] allSlots(int rows) {
+        int[] all = new int[rows];
+        for (int i = 0; i < rows; i++) all[i] = i;
+        return all;
+    }
+
+    /** A todo.csv holding {@code rows} synthetic tasks, generated once per size. */
+    static Path csvFile(int rows) {
+        return dataFile("todo-" + rows + ".csv", rows);
+    }
+
+    /** The same data set as {@link #csvFile} in the binary snapshot format. */
+    static Path binaryFile(int rows) {
+        return dataFile("todo-" + rows + ".bin", rows);
+    }
+
+    /** Raw CSV lines (without header) for the line-level benchmarks. */
+    static List<String> csvLines(int rows) {
+        try {
+            List<String> lines = Files.readAllLines(csvFile(rows));
+            return lines.subList(1, lines.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    static List<String> descriptions(int rows) {
+        TaskStore store = store(rows);
+        List<String> out = new ArrayList<>(rows);
+        for (int s = 0; s < store.slotCount(); s++) out.add(store.text(s));
+        return out;
+    }
+
+    private static Path dataFile(String name, int rows) {
+        try {
+            Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "todo-bench");
+            Files.createDirectories(dir);
+            Path file = dir.resolve(name);
+            if (!Files.exists(file)) {
+                Path tmp = dir.resolve(name + ".tmp");
+                writeSnapshotFile(store(rows), tmp, file);
+                moveAtomically(tmp, file);
+            }
+            return file;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
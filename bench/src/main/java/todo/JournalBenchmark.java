@@ -0,0 +1,42 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/** Cost of persisting one mark-done in journal mode; should not depend on list size. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class JournalBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private TaskStore store;
+    private TaskJournal journal;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path dir = Files.createTempDirectory("todo-bench-journal");
+        dir.toFile().deleteOnExit();
+        store = Fixtures.store(rows);
+        journal = new TaskJournal(dir.resolve("todo.csv"));
+        journal.open(new TaskStore(), 0);
+    }
+
+    @Benchmark
+    public int markDone() throws IOException {
+        int slot = next++ % rows;
+        if (next % 100_000 == 0) journal.open(new TaskStore(), 0); // keep the file small
+        store.setStatus(slot, (byte) (1 - store.status(slot)));
+        journal.append(TaskJournal.STATUS, slot, store);
+        return slot;
+    }
+}
@@ -0,0 +1,48 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reminder path that replaced the periodic checkForNotifications scan: a full
+ * reschedule (load, lead-time change) and the per-edit re-key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class NotifyBenchmark {
+    private static final long LEAD = 10 * 60_000L;
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private TaskStore store;
+    private ReminderScheduler reminders;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Fixtures.store(rows);
+        reminders = new ReminderScheduler((slot, due, overdue) -> { });
+        reminders.reset(store, LEAD);
+    }
+
+    @Benchmark
+    public int rescheduleAll() {
+        reminders.reset(store, LEAD);
+        return store.size();
+    }
+
+    @Benchmark
+    public int rekeyOneTask() {
+        int slot = next++;
+        if (next == rows) next = 0;
+        store.update(slot, store.text(slot), store.priority(slot), store.due(slot) + 60_000L);
+        reminders.update(slot, store);
+        return slot;
+    }
+}
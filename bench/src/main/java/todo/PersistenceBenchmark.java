@@ -0,0 +1,71 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-list load and save (what loadTasks and a compaction/Save cost) in both
+ * snapshot formats, plus the single-change journal append.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class PersistenceBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path csv, binary, out;
+    private TaskStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        out = Files.createTempDirectory("todo-bench-save");
+        csv = Fixtures.csvFile(rows);
+        binary = Fixtures.binaryFile(rows);
+        store = Fixtures.store(rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(out.resolve("todo.csv"));
+        Files.deleteIfExists(out.resolve("todo.bin"));
+        Files.deleteIfExists(out);
+    }
+
+    // loads a snapshot into a fresh store and indexes it, as TaskEngine.load() does
+    private static int load(Path snapshot) throws IOException {
+        TaskStore loaded = new TaskStore();
+        SnapshotFiles.readSnapshotFile(snapshot, loaded);
+        new FilterEngine(loaded).rebuild();
+        return loaded.size();
+    }
+
+    @Benchmark
+    public int loadTasksCsv() throws IOException {
+        return load(csv);
+    }
+
+    @Benchmark
+    public int loadTasksBinary() throws IOException {
+        return load(binary);
+    }
+
+    @Benchmark
+    public long saveTasksCsv() throws IOException {
+        Path target = out.resolve("todo.csv");
+        return SnapshotFiles.writeSnapshotFile(store, target, target);
+    }
+
+    @Benchmark
+    public long saveTasksBinary() throws IOException {
+        Path target = out.resolve("todo.bin");
+        return SnapshotFiles.writeSnapshotFile(store, target, target);
+    }
+}
@@ -0,0 +1,39 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.JTable;
+import java.awt.Component;
+import java.util.concurrent.TimeUnit;
+
+/** TaskCellRenderer cost per cell, walking the table like a scroll does. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RenderBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private JTable table;
+    private TaskCellRenderer renderer;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TaskTableModel model = new TaskTableModel();
+        model.setRows(Fixtures.store(rows).publish(), Fixtures.allSlots(rows), rows, FilterEngine.SORT_LIST);
+        renderer = new TaskCellRenderer(model, new RowStyles());
+        table = new JTable(model);
+    }
+
+    @Benchmark
+    public int renderCell() {
+        int row = next++;
+        if (next == rows) next = 0;
+        Component c = table.prepareRenderer(renderer, row, row & 3);
+        return c.getBackground().getRGB() ^ c.getForeground().getRGB();
+    }
+}
@@ -0,0 +1,56 @@
+package todo;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The due-date index behind the sort modes: listing every task in each order, as
+ * a header click does, and the per-edit re-index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class SortBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private TaskStore store;
+    private FilterEngine filters;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Fixtures.store(rows);
+        filters = new FilterEngine(store);
+        filters.rebuild();
+    }
+
+    @Benchmark
+    public int byPriority() {
+        return filters.query("", "All", FilterEngine.SORT_PRIORITY).slots.length;
+    }
+
+    @Benchmark
+    public int byDue() {
+        return filters.query("", "All", FilterEngine.SORT_DUE).slots.length;
+    }
+
+    @Benchmark
+    public int overdueFirst() {
+        return filters.query("", "All", FilterEngine.SORT_OVERDUE).slots.length;
+    }
+
+    @Benchmark
+    public int reindexOneTask() {
+        int slot = next++;
+        if (next == rows) next = 0;
+        filters.unindex(slot);
+        store.update(slot, store.text(slot), store.priority(slot), store.due(slot) + 60_000L);
+        filters.index(slot);
+        return slot;
+    }
+}
@@ -0,0 +1,73 @@
+package todo;
+
+import java.util.*;
+
+/**
+ * How the live tasks of one view line up with those of another, in order: equal
+ * texts pair up, and so do rows found where an edited row would be; the rest were
+ * deleted from the first or added in the second.
+ */
+final class Alignment {
+    private static final int LOOKAHEAD = 64; // rows searched past a mismatch for the text to turn up again
+
+    final int[] to;  // slot in the first view -> slot in the second, or -1
+    final int[] ids; // slot in the second -> id carried over from the first, or -1 for a new one
+    int added, updated, deleted;
+
+    private Alignment(int fromSlots, int toSlots) {
+        to = new int[fromSlots];
+        ids = new int[toSlots];
+        Arrays.fill(to, -1);
+        Arrays.fill(ids, -1);
+    }
+
+    static Alignment of(TaskView from, TaskView into) {
+        Alignment a = new Alignment(from.slotCount(), into.slotCount());
+        int i = from.nextLive(0), j = into.nextLive(0);
+        while (i >= 0 && j >= 0) {
+            if (!from.text(i).equals(into.text(j))) {
+                int inserted = ahead(into, j, from.text(i)), removed = ahead(from, i, into.text(j));
+                if (inserted > 0 && (removed < 0 || inserted <= removed)) {
+                    a.added += inserted;
+                    while (inserted-- > 0) j = into.nextLive(j + 1);
+                    continue;
+                }
+                if (removed > 0) {
+                    a.deleted += removed;
+                    while (removed-- > 0) i = from.nextLive(i + 1);
+                    continue;
+                }
+            }
+            a.pair(from, i, into, j);
+            i = from.nextLive(i + 1);
+            j = into.nextLive(j + 1);
+        }
+        for (; i >= 0; i = from.nextLive(i + 1)) a.deleted++;
+        for (; j >= 0; j = into.nextLive(j + 1)) a.added++;
+        a.carryIds(from);
+        return a;
+    }
+
+    private void pair(TaskView from, int i, TaskView into, int j) {
+        to[i] = j;
+        if (!from.text(i).equals(into.text(j)) || from.status(i) != into.status(j)
+                || from.priority(i) != into.priority(j) || from.due(i) != into.due(j)) {
+            updated++;
+        }
+    }
+
+    // Every paired slot keeps its id; the rest get new ones from the store. The
+    // new ids sort after the kept ones, which TaskView.byId allows for.
+    private void carryIds(TaskView from) {
+        for (int s = 0; s < to.length; s++) if (to[s] >= 0) ids[to[s]] = from.id(s);
+    }
+
+    // Live rows from `slot` before `text` turns up, within LOOKAHEAD rows; -1 if it does not.
+    private static int ahead(TaskView v, int slot, String text) {
+        int n = 0;
+        for (int s = v.nextLive(slot + 1); s >= 0 && ++n <= LOOKAHEAD; s = v.nextLive(s + 1)) {
+            if (v.text(s).equals(text)) return n;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,189 @@
+package todo;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static todo.Tasks.*;
+import static todo.SnapshotFiles.*;
+
+// Compact alternative to the CSV snapshot. Layout (big-endian):
+//   "TODB", version u8, 3 reserved bytes, row count i32, string count i32,
+//   due i64[rows], status u8[rows], priority u8[rows],
+//   text ids varint[rows], strings (varint byte length + UTF-8)[strings]
+// The fixed-width columns come first, so they are bulk-copied straight out of
+// the mapped file; repeated descriptions share one string table entry.
+public final class BinarySnapshot {
+    private static final int MAGIC = 0x544F4442; // "TODB"
+    private static final byte VERSION = 1;
+    private static final int HEADER = 16;
+
+    /** Writes the store's live tasks, synced to disk; returns the CRC32 of the bytes. */
+    static long write(TaskView store, Path file) throws IOException {
+        int rows = store.size();
+        // dedupe through a direct-mapped table: repeats are caught cheaply, and a
+        // rare miss only stores a string twice
+        int[] ids = new int[rows];
+        String[] recent = new String[1 << 16];
+        int[] recentId = new int[recent.length];
+        List<String> strings = new ArrayList<>();
+        int n = 0;
+        for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) {
+            String t = store.text(s);
+            int h = t.hashCode();
+            int i = (h ^ (h >>> 16)) & (recent.length - 1);
+            if (!t.equals(recent[i])) {
+                recent[i] = t;
+                recentId[i] = strings.size();
+                strings.add(t);
+            }
+            ids[n++] = recentId[i];
+        }
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer b = ByteBuffer.allocate(1 << 20);
+            b.putInt(MAGIC).put(VERSION).put(new byte[3]).putInt(rows).putInt(strings.size());
+            for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) {
+                if (b.remaining() < 8) drain(b, ch, crc);
+                b.putLong(store.due(s));
+            }
+            for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) {
+                if (!b.hasRemaining()) drain(b, ch, crc);
+                b.put(store.status(s));
+            }
+            for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) {
+                if (!b.hasRemaining()) drain(b, ch, crc);
+                b.put(store.priority(s));
+            }
+            for (int i = 0; i < rows; i++) {
+                if (b.remaining() < 5) drain(b, ch, crc);
+                putVarint(b, ids[i]);
+            }
+            for (String t : strings) {
+                byte[] bytes = t.getBytes(StandardCharsets.UTF_8);
+                if (b.remaining() < 5 + bytes.length) {
+                    drain(b, ch, crc);
+                    if (b.capacity() < 5 + bytes.length) b = ByteBuffer.allocate(5 + bytes.length);
+                }
+                putVarint(b, bytes.length);
+                b.put(bytes);
+            }
+            drain(b, ch, crc);
+            ch.force(true);
+        }
+        return crc.getValue();
+    }
+
+    private static void drain(ByteBuffer b, FileChannel ch, CRC32 crc) throws IOException {
+        b.flip();
+        crc.update(b.array(), 0, b.limit());
+        while (b.hasRemaining()) ch.write(b);
+        b.clear();
+    }
+
+    /** Appends the snapshot's rows to the store; returns the CRC32 of the file. */
+    static long read(Path file, TaskStore store) throws IOException {
+        return read(file, rows -> rows.addTo(store));
+    }
+
+    /** As above, handing all the rows to `sink` at once. */
+    static long read(Path file, Consumer<CsvLoader.Rows> sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Binary snapshot larger than 2 GB");
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            CRC32 crc = new CRC32();
+            crc.update(b.duplicate());
+            try {
+                if (b.capacity() < HEADER || b.getInt(0) != MAGIC) throw new IOException("Not a todo binary snapshot: " + file);
+                if (b.get(4) != VERSION) throw new IOException("Unsupported snapshot version " + b.get(4));
+                int rows = b.getInt(8), count = b.getInt(12);
+                if (rows < 0 || count < 0 || count > rows || HEADER + rows * 11L > b.capacity()) {
+                    throw new IOException("Corrupt snapshot header");
+                }
+                long[] due = new long[rows];
+                byte[] status = new byte[rows], priority = new byte[rows];
+                b.position(HEADER);
+                b.asLongBuffer().get(due);
+                b.position(HEADER + rows * 8);
+                b.get(status).get(priority);
+                for (int i = 0; i < rows; i++) {
+                    if (status[i] > STATUS_DONE || priority[i] > PRIORITY_LOW || status[i] < 0 || priority[i] < 0) {
+                        throw new IOException("Corrupt snapshot row " + i);
+                    }
+                }
+                int[] ids = new int[rows];
+                for (int i = 0; i < rows; i++) {
+                    ids[i] = readVarint(b);
+                    if (ids[i] < 0 || ids[i] >= count) throw new IOException("Corrupt snapshot row " + i);
+                }
+                String[] strings = new String[count];
+                byte[] scratch = new byte[256];
+                for (int i = 0; i < count; i++) {
+                    int len = readVarint(b);
+                    if (len < 0 || len > b.remaining()) throw new IOException("Corrupt snapshot string " + i);
+                    if (scratch.length < len) scratch = new byte[len];
+                    b.get(scratch, 0, len);
+                    strings[i] = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                }
+                String[] text = new String[rows];
+                for (int i = 0; i < rows; i++) text[i] = strings[ids[i]];
+                sink.accept(new CsvLoader.Rows(text, status, priority, due, rows));
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                throw new IOException("Truncated binary snapshot: " + file, ex);
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static void putVarint(ByteBuffer b, int v) {
+        while ((v & ~0x7F) != 0) {
+            b.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        b.put((byte) v);
+    }
+
+    private static int readVarint(ByteBuffer b) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte x = b.get();
+            v |= (x & 0x7F) << shift;
+            if (x >= 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /** Converts a CSV snapshot to the binary format; returns the number of tasks. */
+    public static int fromCsv(Path csv, Path bin) throws IOException {
+        TaskStore store = new TaskStore();
+        int[] unread = {0};
+        String[] firstUnread = {null};
+        CsvLoader.load(csv, rows -> {
+            if (unread[0] == 0) firstUnread[0] = rows.firstUnread;
+            unread[0] += rows.unread;
+            rows.addTo(store);
+        });
+        if (unread[0] > 0) {
+            System.err.printf("Warning: %d rows or cells of %s did not parse and were left out or defaulted, first %s%n",
+                    unread[0], csv, firstUnread[0]);
+        }
+        write(store, bin);
+        return store.size();
+    }
+
+    /** Converts a binary snapshot back to the task,status,priority,due CSV. */
+    public static int toCsv(Path bin, Path csv) throws IOException {
+        TaskStore store = new TaskStore();
+        read(bin, store);
+        writeCsvFile(store, csv);
+        return store.size();
+    }
+}
@@ -0,0 +1,254 @@
+package todo;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static todo.Tasks.*;
+
+// Loads a snapshot by memory-mapping it and cutting it into chunks that end on
+// record boundaries. Boundaries are quote-aware: a pass in parallel counts quotes
+// per raw chunk, and the quote parity at each cut tells whether a newline ends a
+// record or sits inside a quoted field. Chunks are parsed in parallel on the
+// fork/join pool straight from the bytes into column arrays, which are handed
+// on in file order, each as soon as it and those before it are parsed.
+final class CsvLoader {
+    private static final int CHUNK = 8 << 20;
+    private static final byte[] DONE_BYTES = STATUS_LABELS[STATUS_DONE].getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PENDING_BYTES = STATUS_LABELS[STATUS_PENDING].getBytes(StandardCharsets.UTF_8);
+
+    /** Parsed rows of one chunk, column by column. */
+    static final class Rows {
+        String[] text;
+        byte[] status;
+        byte[] priority;
+        long[] due;
+        int size;
+        int unread;          // rows or cells that did not parse, and were dropped or defaulted
+        String firstUnread;  // the first of them, for the warning
+
+        Rows() {
+            this(new String[256], new byte[256], new byte[256], new long[256], 0);
+        }
+
+        Rows(String[] text, byte[] status, byte[] priority, long[] due, int size) {
+            this.text = text;
+            this.status = status;
+            this.priority = priority;
+            this.due = due;
+            this.size = size;
+        }
+
+        void addTo(TaskStore store) { store.addAll(text, status, priority, due, size); }
+
+        // `what` is the column, or "row" for a skipped one; b[from, from + n) its text
+        void unread(String what, byte[] b, int from, int n) {
+            if (unread++ == 0) firstUnread = what + " \"" + new String(b, from, n, StandardCharsets.UTF_8) + "\"";
+        }
+
+        void add(String t, byte st, byte pr, long d) {
+            if (size == text.length) {
+                int cap = size * 2;
+                text = Arrays.copyOf(text, cap);
+                status = Arrays.copyOf(status, cap);
+                priority = Arrays.copyOf(priority, cap);
+                due = Arrays.copyOf(due, cap);
+            }
+            text[size] = t;
+            status[size] = st;
+            priority[size] = pr;
+            due[size] = d;
+            size++;
+        }
+    }
+
+    /** Appends every row of the file (after the header) to the store; returns the file's CRC32. */
+    static long load(Path file, TaskStore store) throws IOException {
+        return load(file, rows -> rows.addTo(store));
+    }
+
+    /** As above, handing the rows to `sink` a chunk at a time, in file order. */
+    static long load(Path file, Consumer<Rows> sink) throws IOException {
+        return load(file, sink, CHUNK);
+    }
+
+    /** As above, cutting the file about every `chunk` bytes. */
+    static long load(Path file, Consumer<Rows> sink, int chunk) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long[] cuts = cuts(ch, size, chunk);
+            List<ForkJoinTask<Rows>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < cuts.length; i++) {
+                if (cuts[i + 1] <= cuts[i]) continue;
+                long from = cuts[i], to = cuts[i + 1];
+                tasks.add(ForkJoinTask.adapt(() -> parse(ch, from, to)).fork());
+            }
+            // queued behind the chunks, so on few cores the first ones reach the sink sooner
+            ForkJoinTask<Long> crc = ForkJoinPool.commonPool().submit(() -> crc(ch, size));
+            for (ForkJoinTask<Rows> t : tasks) sink.accept(join(t));
+            return join(crc);
+        }
+    }
+
+    // Record boundaries: cuts[0] is the end of the header, the last cut is the file size.
+    private static long[] cuts(FileChannel ch, long size, int chunk) throws IOException {
+        int raw = (int) Math.max(1, (size + chunk - 1) / chunk);
+        List<ForkJoinTask<Integer>> counts = new ArrayList<>();
+        for (int i = 0; i < raw; i++) {
+            long from = (long) i * chunk, to = Math.min(size, from + chunk);
+            counts.add(ForkJoinTask.adapt(() -> countQuotes(ch, from, to)));
+        }
+        ForkJoinTask.invokeAll(counts);
+        long[] cuts = new long[raw + 1];
+        int quotes = 0;
+        for (int i = 0; i < raw; i++) {
+            cuts[i] = recordEnd(ch, (long) i * chunk, size, (quotes & 1) == 1);
+            quotes += join(counts.get(i));
+        }
+        cuts[raw] = size;
+        // a record longer than a chunk swallows the following cut points
+        for (int i = 1; i <= raw; i++) cuts[i] = Math.max(cuts[i], cuts[i - 1]);
+        return cuts;
+    }
+
+    private static int countQuotes(FileChannel ch, long from, long to) throws IOException {
+        MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int n = 0;
+        while (b.hasRemaining()) if (b.get() == '"') n++;
+        return n;
+    }
+
+    // Position just past the first record-ending newline at or after `from`.
+    private static long recordEnd(FileChannel ch, long from, long size, boolean inQuotes) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            long len = Math.min(size - pos, 1 << 20);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                byte c = b.get(i);
+                if (c == '"') inQuotes = !inQuotes;
+                else if (c == '\n' && !inQuotes) return pos + i + 1;
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    private static Rows parse(FileChannel ch, long from, long to) throws IOException {
+        byte[] b = new byte[(int) (to - from)];
+        ch.map(FileChannel.MapMode.READ_ONLY, from, b.length).get(b);
+        Rows rows = new Rows();
+        byte[] field = new byte[256];
+        DueParser dues = new DueParser();
+        int pos = 0;
+        while (pos < b.length) {
+            // find the record end, honouring quoted newlines
+            int end = pos;
+            boolean q = false;
+            while (end < b.length && (b[end] != '\n' || q)) {
+                if (b[end] == '"') q = !q;
+                end++;
+            }
+            int next = end + 1;
+            if (end > pos && b[end - 1] == '\r') end--;
+            if (field.length < end - pos) field = new byte[end - pos];
+            parseRecord(b, pos, end, field, rows, dues);
+            pos = next;
+        }
+        return rows;
+    }
+
+    // Same field rules as parseCSVLine; rows with fewer than four fields are skipped.
+    // Skipped rows and cells that are not a status, priority or due date the app
+    // writes are counted in rows.unread, as saving would not write them back.
+    static void parseRecord(byte[] b, int pos, int end, byte[] f, Rows rows, DueParser dues) {
+        int start = pos, unread = rows.unread;
+        String firstUnread = rows.firstUnread;
+        String text = null;
+        byte st = STATUS_PENDING, pr = PRIORITY_MEDIUM;
+        long due = NO_DUE;
+        int field = 0;
+        while (field < 4) {
+            int n = 0;
+            boolean inQuotes = false;
+            for (; pos < end; pos++) {
+                byte c = b[pos];
+                if (inQuotes) {
+                    if (c == '"') {
+                        if (pos + 1 < end && b[pos + 1] == '"') { f[n++] = '"'; pos++; }
+                        else inQuotes = false;
+                    } else f[n++] = c;
+                } else if (c == '"') inQuotes = true;
+                else if (c == ',') break;
+                else f[n++] = c;
+            }
+            switch (field) {
+                case 0: text = new String(f, 0, n, StandardCharsets.UTF_8); break;
+                case 1:
+                    st = equalsBytes(f, n, DONE_BYTES) ? STATUS_DONE : STATUS_PENDING;
+                    if (st == STATUS_PENDING && !equalsBytes(f, n, PENDING_BYTES)) rows.unread("status", f, 0, n);
+                    break;
+                case 2:
+                    pr = priorityOf(f, n);
+                    if (pr == PRIORITY_MEDIUM && !isMedium(f, n)) rows.unread("priority", f, 0, n);
+                    break;
+                default:
+                    due = dues.parse(f, n);
+                    if (due == NO_DUE && n > 0) rows.unread("due date", f, 0, n);
+                    break;
+            }
+            field++;
+            if (pos >= end) break;
+            pos++; // comma
+        }
+        if (field == 4) rows.add(text, st, pr, due);
+        else if (end > start) {
+            rows.unread = unread; // the row counts once, not cell by cell
+            rows.firstUnread = firstUnread;
+            rows.unread("row", b, start, end - start);
+        }
+    }
+
+    private static boolean equalsBytes(byte[] f, int n, byte[] expected) {
+        if (n != expected.length) return false;
+        for (int i = 0; i < n; i++) if (f[i] != expected[i]) return false;
+        return true;
+    }
+
+    private static byte priorityOf(byte[] f, int n) {
+        if (n == 4 && (f[0] | 0x20) == 'h' && (f[1] | 0x20) == 'i' && (f[2] | 0x20) == 'g' && (f[3] | 0x20) == 'h') {
+            return PRIORITY_HIGH;
+        }
+        if (n == 3 && (f[0] | 0x20) == 'l' && (f[1] | 0x20) == 'o' && (f[2] | 0x20) == 'w') return PRIORITY_LOW;
+        return PRIORITY_MEDIUM;
+    }
+
+    private static boolean isMedium(byte[] f, int n) {
+        if (n != 6) return false;
+        for (int i = 0; i < 6; i++) if ((f[i] | 0x20) != "medium".charAt(i)) return false;
+        return true;
+    }
+
+    private static long crc(FileChannel ch, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+            crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(size - pos, Integer.MAX_VALUE)));
+        }
+        return crc.getValue();
+    }
+
+    private static <T> T join(ForkJoinTask<T> t) throws IOException {
+        try {
+            return t.join();
+        } catch (RuntimeException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package todo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// Row-offset index of a CSV snapshot, in <file>.idx: a header naming the source's
+// size and modification time, then the offset of every record and of the end of
+// the file. A missing or stale index is rebuilt by one quote-aware scan on a
+// background thread, and rows become readable as the scan passes them. The
+// header is written last, so an interrupted build is simply redone.
+final class CsvRowIndex implements Closeable {
+    private static final int MAGIC = 0x544F4458; // "TODX"
+    private static final int HEADER = 24;        // magic, version, source size, source mtime
+    private static final int VERSION = 1;
+    private static final int FLUSH_ROWS = 8192;
+
+    private final FileChannel ch;
+    private volatile int rows;       // rows whose extent is known so far
+    private volatile boolean complete;
+    private volatile IOException failure;
+
+    private CsvRowIndex(FileChannel ch) { this.ch = ch; }
+
+    static Path indexFile(Path csv) { return csv.resolveSibling(csv.getFileName() + ".idx"); }
+
+    /** Opens the index of a CSV file, starting a rebuild if it does not match the file. */
+    static CsvRowIndex open(Path csv) throws IOException {
+        Path file = indexFile(csv);
+        long size = Files.size(csv), mtime = Files.getLastModifiedTime(csv).toMillis();
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        CsvRowIndex index = new CsvRowIndex(ch);
+        try {
+            long len = ch.size();
+            ByteBuffer h = ByteBuffer.allocate(HEADER);
+            while (h.hasRemaining() && ch.read(h, h.position()) > 0) { }
+            if (len >= HEADER + 8 && (len - HEADER) % 8 == 0 && !h.hasRemaining()
+                    && h.getInt(0) == MAGIC && h.getInt(4) == VERSION && h.getLong(8) == size && h.getLong(16) == mtime) {
+                index.rows = (int) ((len - HEADER) / 8 - 1);
+                index.complete = true;
+                return index;
+            }
+        } catch (IOException ex) {
+            ch.close();
+            throw ex;
+        }
+        Thread t = new Thread(() -> index.build(csv, size, mtime), "todo-index");
+        t.setDaemon(true);
+        t.start();
+        return index;
+    }
+
+    int rows() { return rows; }
+    boolean complete() { return complete; }
+    /** Why the build stopped, if it failed. */
+    IOException failure() { return failure; }
+
+    /** Offsets of rows from..from+n-1 plus the end of the last one. */
+    long[] offsets(int from, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate((n + 1) * 8);
+        long pos = HEADER + from * 8L;
+        while (b.hasRemaining()) {
+            if (ch.read(b, pos + b.position()) < 0) throw new EOFException("Row index ends early");
+        }
+        long[] out = new long[n + 1];
+        b.flip();
+        b.asLongBuffer().get(out);
+        return out;
+    }
+
+    public void close() throws IOException { ch.close(); }
+
+    // Records are counted like CsvLoader reads them: the header line and blank
+    // lines are skipped, and newlines inside quotes do not end a record.
+    private void build(Path csv, long size, long mtime) {
+        try (FileChannel src = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ch.truncate(0);
+            ByteBuffer out = ByteBuffer.allocate(FLUSH_ROWS * 8);
+            long written = HEADER; // offsets go after the header, which is written last
+            ByteBuffer in = ByteBuffer.allocate(1 << 20);
+            long start = 0, pos = 0;
+            boolean inQuotes = false, blank = true, header = true;
+            int emitted = 0;
+            while (true) {
+                in.clear();
+                int n = src.read(in, pos);
+                if (n <= 0) break;
+                for (int i = 0; i < n; i++) {
+                    byte c = in.get(i);
+                    if (c == '"') inQuotes = !inQuotes;
+                    if (c == '\n' && !inQuotes) {
+                        if (!header && !blank) {
+                            out.putLong(start);
+                            emitted++;
+                            if (!out.hasRemaining()) {
+                                written = flush(out, written);
+                                rows = emitted - 1; // the last row ends where the next one starts
+                            }
+                        }
+                        header = false;
+                        blank = true;
+                        start = pos + i + 1;
+                    } else if (c != '\r') {
+                        blank = false;
+                    }
+                }
+                pos += n;
+            }
+            if (!header && !blank) {
+                out.putLong(start);
+                emitted++;
+            }
+            if (!out.hasRemaining()) written = flush(out, written);
+            out.putLong(size);
+            flush(out, written);
+            ch.force(false);
+            ByteBuffer h = ByteBuffer.allocate(HEADER);
+            h.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(mtime).flip();
+            while (h.hasRemaining()) ch.write(h, h.position());
+            ch.force(false);
+            rows = emitted;
+            complete = true;
+        } catch (IOException ex) {
+            failure = ex;
+        }
+    }
+
+    private long flush(ByteBuffer out, long at) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) at += ch.write(out, at);
+        out.clear();
+        return at;
+    }
+}
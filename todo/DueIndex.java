@@ -0,0 +1,126 @@
+package todo;
+
+import java.util.*;
+
+// Live slots ordered by (due, slot) in sorted blocks of at most BLOCK_MAX slots.
+// An insert or delete binary-searches the block ends and then one block, and
+// shifts at most one block; a full block splits in two. Reading the order is a
+// sequential pass over the blocks. Keys are read from the store, so a slot must
+// be removed before its due date changes.
+final class DueIndex {
+    private static final int BLOCK = 512, BLOCK_MAX = 2 * BLOCK;
+
+    private final TaskView tasks;
+    int[][] slots = new int[8][];
+    int[] sizes = new int[8];
+    int blocks;
+
+    DueIndex(TaskView tasks) { this.tasks = tasks; }
+
+    /** Re-reads every live slot; sorts once instead of inserting one by one. */
+    void rebuild() {
+        int n = tasks.size();
+        long[] keys = new long[n], keysOut = new long[n];
+        int[] order = new int[n], orderOut = new int[n];
+        int k = 0;
+        for (int s = tasks.nextLive(0); s >= 0; s = tasks.nextLive(s + 1), k++) {
+            keys[k] = tasks.due(s) ^ Long.MIN_VALUE; // signed order as unsigned bytes
+            order[k] = s;
+        }
+        // LSD radix sort a byte at a time; it is stable, so equal dues stay in slot order
+        int[] count = new int[257];
+        for (int shift = 0; shift < 64 && n > 0; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) count[(int) (keys[i] >>> shift & 0xFF) + 1]++;
+            if (count[(int) (keys[0] >>> shift & 0xFF) + 1] == n) continue; // same byte everywhere
+            for (int i = 0; i < 256; i++) count[i + 1] += count[i];
+            for (int i = 0; i < n; i++) {
+                int at = count[(int) (keys[i] >>> shift & 0xFF)]++;
+                keysOut[at] = keys[i];
+                orderOut[at] = order[i];
+            }
+            long[] kt = keys; keys = keysOut; keysOut = kt;
+            int[] ot = order; order = orderOut; orderOut = ot;
+        }
+        blocks = (n + BLOCK - 1) / BLOCK;
+        slots = new int[Math.max(8, blocks * 2)][];
+        sizes = new int[slots.length];
+        for (int b = 0; b < blocks; b++) {
+            int from = b * BLOCK, len = Math.min(BLOCK, n - from);
+            slots[b] = new int[BLOCK_MAX];
+            System.arraycopy(order, from, slots[b], 0, len);
+            sizes[b] = len;
+        }
+    }
+
+    void insert(int slot) {
+        if (blocks == 0) {
+            slots[0] = new int[BLOCK_MAX];
+            slots[0][0] = slot;
+            sizes[0] = blocks = 1;
+            return;
+        }
+        int b = Math.min(blockOf(slot), blocks - 1);
+        int[] block = slots[b];
+        int at = -search(block, sizes[b], slot) - 1;
+        if (at < 0) return; // already indexed
+        System.arraycopy(block, at, block, at + 1, sizes[b] - at);
+        block[at] = slot;
+        if (++sizes[b] == BLOCK_MAX) split(b);
+    }
+
+    void remove(int slot) {
+        int b = blockOf(slot);
+        if (b == blocks) return;
+        int[] block = slots[b];
+        int at = search(block, sizes[b], slot);
+        if (at < 0) return;
+        System.arraycopy(block, at + 1, block, at, sizes[b] - at - 1);
+        if (--sizes[b] == 0) {
+            System.arraycopy(slots, b + 1, slots, b, blocks - b - 1);
+            System.arraycopy(sizes, b + 1, sizes, b, blocks - b - 1);
+            slots[--blocks] = null;
+        }
+    }
+
+    private void split(int b) {
+        if (blocks == slots.length) {
+            slots = Arrays.copyOf(slots, blocks * 2);
+            sizes = Arrays.copyOf(sizes, blocks * 2);
+        }
+        System.arraycopy(slots, b + 1, slots, b + 2, blocks - b - 1);
+        System.arraycopy(sizes, b + 1, sizes, b + 2, blocks - b - 1);
+        int[] upper = new int[BLOCK_MAX];
+        System.arraycopy(slots[b], BLOCK, upper, 0, BLOCK);
+        slots[b + 1] = upper;
+        sizes[b] = sizes[b + 1] = BLOCK;
+        blocks++;
+    }
+
+    // first block whose last slot sorts at or after `slot`; blocks if none
+    private int blockOf(int slot) {
+        int lo = 0, hi = blocks - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(slots[mid][sizes[mid] - 1], slot) < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private int search(int[] block, int n, int slot) {
+        int lo = 0, hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, c = compare(block[mid], slot);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private int compare(int a, int b) {
+        int c = Long.compare(tasks.due(a), tasks.due(b));
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+}
@@ -0,0 +1,45 @@
+package todo;
+
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+
+import static todo.Tasks.*;
+
+// Parses "yyyy-MM-dd HH:mm" from bytes. Zone conversion is cached per local hour,
+// since neighbouring rows tend to share dates; anything unusual goes through parseDue.
+final class DueParser {
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final int[] hourKeys = new int[1024];
+    private final long[] hourMillis = new long[1024];
+
+    long parse(byte[] f, int n) {
+        if (n == 16 && f[4] == '-' && f[7] == '-' && f[10] == ' ' && f[13] == ':') {
+            int y = digits(f, 0, 4), mo = digits(f, 5, 2), d = digits(f, 8, 2);
+            int h = digits(f, 11, 2), mi = digits(f, 14, 2);
+            if (y >= 0 && mo >= 1 && mo <= 12 && d >= 1 && d <= 31 && h >= 0 && h < 24 && mi >= 0 && mi < 60) {
+                int key = ((y * 13 + mo) * 32 + d) * 24 + h;
+                int i = (key ^ (key >>> 10)) & (hourKeys.length - 1);
+                if (hourKeys[i] != key) {
+                    try {
+                        hourMillis[i] = LocalDateTime.of(y, mo, d, h, 0).atZone(zone).toInstant().toEpochMilli();
+                    } catch (DateTimeException ex) {
+                        return NO_DUE;
+                    }
+                    hourKeys[i] = key;
+                }
+                return hourMillis[i] + mi * 60_000L;
+            }
+        }
+        return parseDue(new String(f, 0, n, StandardCharsets.UTF_8));
+    }
+
+    private static int digits(byte[] f, int from, int len) {
+        int v = 0;
+        for (int i = from; i < from + len; i++) {
+            int c = f[i] - '0';
+            if (c < 0 || c > 9) return -1;
+            v = v * 10 + c;
+        }
+        return v;
+    }
+}
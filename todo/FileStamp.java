@@ -0,0 +1,56 @@
+package todo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// Other programs, other copies of this one included, may change the task files
+// while the app has them open. The engine remembers what the files looked like
+// when it last read or wrote them: the snapshot's identity, size and modification
+// time, and how far into the journal it has read. Those stamps tell a watcher
+// thread what changed. Records another writer appended to the journal are read on
+// their own and applied, as both writers number slots alike. A replaced snapshot
+// is read whole and lined up with the tasks in memory, so that tasks found in both
+// keep their ids, and the table its selection. Writes check the same stamps under
+// a file lock, and catch up first if another writer got there before them.
+final class FileStamp {
+    final Object identity;
+    final long size, modified;
+
+    private FileStamp(Object identity, long size, long modified) {
+        this.identity = identity;
+        this.size = size;
+        this.modified = modified;
+    }
+
+    /** The file as it is now, or null if there is none. */
+    static FileStamp of(Path p) throws IOException {
+        try {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            return new FileStamp(identity(a), a.size(), a.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    /** What tells this file from another put in its place (inode, or creation time); null if there is none. */
+    static Object identity(Path p) throws IOException {
+        try {
+            return identity(Files.readAttributes(p, BasicFileAttributes.class));
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    private static Object identity(BasicFileAttributes a) {
+        return a.fileKey() != null ? a.fileKey() : a.creationTime();
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof FileStamp)) return false;
+        FileStamp s = (FileStamp) o;
+        return identity.equals(s.identity) && size == s.size && modified == s.modified;
+    }
+
+    public int hashCode() { return identity.hashCode() * 31 + Long.hashCode(size ^ modified); }
+}
@@ -0,0 +1,316 @@
+package todo;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static todo.Tasks.*;
+
+// Persistent indexes for search and filter: one bitmap per status and per
+// priority, plus a hashed trigram index over task text. Mutations patch the
+// indexes for a single slot. A query that extends the previous search string
+// only re-checks the previous matches, so typing narrows the set incrementally.
+// Results come in one of the SORT_ orders. All of them are read off a single
+// index of live slots ordered by due date: the leading key of the others has two
+// or three values, so the due order is split by the status or priority bitmaps.
+// Queries may run on a background thread; all methods synchronize on the engine
+// and a running query gives up as soon as its thread is interrupted. Queries read
+// the live store, so TaskEngine only changes the store while holding this lock.
+public final class FilterEngine {
+    static final int TRIGRAM_BUCKETS = 1 << 18;
+
+    // list order is slot order; the others break ties by due date, then slot
+    public static final int SORT_LIST = 0, SORT_PRIORITY = 1, SORT_DUE = 2, SORT_OVERDUE = 3;
+    public static final String[] SORT_LABELS = {"List order", "Priority, due", "Due date", "Overdue first"};
+
+    private final TaskStore store;
+    private final BitSet all = new BitSet();
+    private final BitSet[] byStatus = {new BitSet(), new BitSet()};
+    private final BitSet[] byPriority = {new BitSet(), new BitSet(), new BitSet()};
+    // bucket -> ascending slots whose text has a trigram hashing there;
+    // collisions only add candidates, every hit is verified against the text
+    private final IntList[] trigrams = new IntList[TRIGRAM_BUCKETS];
+    private final DueIndex byDue;
+
+    // active query and its text matches (null = no text constraint)
+    private String query = "";
+    private BitSet textMatches;
+
+    /**
+     * Query result in `sort` order, with the snapshot it was read from when the
+     * caller held the store lock, and the store epoch its slot numbers belong to.
+     */
+    public static final class Matches {
+        public final int[] slots;
+        public final int sort;
+        public final TaskSnapshot snapshot;
+        public final long epoch;
+
+        Matches(int[] slots, int sort, TaskSnapshot snapshot, long epoch) {
+            this.slots = slots;
+            this.sort = sort;
+            this.snapshot = snapshot;
+            this.epoch = epoch;
+        }
+    }
+
+    FilterEngine(TaskStore store) {
+        this.store = store;
+        this.byDue = new DueIndex(store);
+    }
+
+    /** Indexes every live slot of the store from scratch. */
+    synchronized void rebuild() {
+        all.clear();
+        for (BitSet b : byStatus) b.clear();
+        for (BitSet b : byPriority) b.clear();
+        Arrays.fill(trigrams, null);
+        textMatches = null;
+        query = "";
+        for (int s = store.nextLive(0); s >= 0; s = store.nextLive(s + 1)) index(s, false);
+        byDue.rebuild();
+    }
+
+    /** Indexes the live slots from `from` on, appended since the last call, in one go. */
+    synchronized void indexFrom(int from) {
+        for (int s = store.nextLive(from); s >= 0; s = store.nextLive(s + 1)) index(s, false);
+        byDue.rebuild();
+    }
+
+    /** Adds a live slot to every index. */
+    synchronized void index(int slot) { index(slot, true); }
+
+    private void index(int slot, boolean sorted) {
+        all.set(slot);
+        if (sorted) byDue.insert(slot);
+        byStatus[store.status(slot)].set(slot);
+        byPriority[store.priority(slot)].set(slot);
+        String t = store.text(slot);
+        for (int i = 0; i + 3 <= t.length(); i++) {
+            int b = trigramBucket(t, i);
+            IntList l = trigrams[b];
+            if (l == null) trigrams[b] = l = new IntList();
+            l.addSorted(slot);
+        }
+        if (textMatches != null && containsIgnoreCase(t, query)) textMatches.set(slot);
+    }
+
+    /** Drops a slot from every index; call before the store changes or removes it. */
+    synchronized void unindex(int slot) {
+        all.clear(slot);
+        byDue.remove(slot);
+        byStatus[store.status(slot)].clear(slot);
+        byPriority[store.priority(slot)].clear(slot);
+        String t = store.text(slot);
+        for (int i = 0; i + 3 <= t.length(); i++) {
+            IntList l = trigrams[trigramBucket(t, i)];
+            if (l != null) l.removeSorted(slot);
+        }
+        if (textMatches != null) textMatches.clear(slot);
+    }
+
+    /**
+     * unindex() for many slots at once: every trigram list they appear in is
+     * compacted once, rather than shifted once per slot.
+     */
+    synchronized void unindexAll(int[] slots, int n) {
+        BitSet gone = new BitSet(), buckets = new BitSet();
+        for (int k = 0; k < n; k++) {
+            int slot = slots[k];
+            all.clear(slot);
+            byDue.remove(slot);
+            byStatus[store.status(slot)].clear(slot);
+            byPriority[store.priority(slot)].clear(slot);
+            if (textMatches != null) textMatches.clear(slot);
+            String t = store.text(slot);
+            for (int i = 0; i + 3 <= t.length(); i++) buckets.set(trigramBucket(t, i));
+            gone.set(slot);
+        }
+        for (int b = buckets.nextSetBit(0); b >= 0; b = buckets.nextSetBit(b + 1)) {
+            if (trigrams[b] != null) trigrams[b].removeAll(gone);
+        }
+    }
+
+    /** Moves a live slot between the status bitmaps; its text and due indexes stay as they are. */
+    synchronized void statusChanged(int slot, byte from) {
+        byStatus[from].clear(slot);
+        byStatus[store.status(slot)].set(slot);
+    }
+
+    /** Moves a live slot between the priority bitmaps; its text and due indexes stay as they are. */
+    synchronized void priorityChanged(int slot, byte from) {
+        byPriority[from].clear(slot);
+        byPriority[store.priority(slot)].set(slot);
+    }
+
+    synchronized Matches query(String q, String f) { return query(q, f, SORT_LIST); }
+
+    /**
+     * Evaluates a search string (already lower-cased and trimmed) together with
+     * the status/priority filter and returns the matching slots in `sort` order.
+     * The returned array holds exactly the matches.
+     */
+    synchronized Matches query(String q, String f, int sort) {
+        Operation.Span span = Operation.SEARCH.start();
+        BitSet text;
+        if (q.isEmpty()) {
+            text = null;
+        } else if (textMatches != null && q.contains(query)) {
+            // narrowing: matches of q are a subset of matches of the previous query
+            text = new BitSet();
+            int n = 0;
+            for (int s = textMatches.nextSetBit(0); s >= 0; s = textMatches.nextSetBit(s + 1)) {
+                checkCancelled(n++);
+                if (containsIgnoreCase(store.text(s), q)) text.set(s);
+            }
+        } else {
+            text = scan(q);
+        }
+        // commit only once the scan finished, so a cancelled query leaves no trace
+        textMatches = text;
+        query = q;
+
+        BitSet result = (BitSet) filterSet(f).clone();
+        if (textMatches != null) result.and(textMatches);
+        int[] slots = sorted(result, sort);
+        span.end(slots.length); // cancelled queries throw before this and are not counted
+        return new Matches(slots, sort, store.published(), store.epoch());
+    }
+
+    /** One-off evaluation that leaves the active query alone. */
+    synchronized int[] find(String q, String f) {
+        Operation.Span span = Operation.SEARCH.start();
+        BitSet result = (BitSet) filterSet(f).clone();
+        if (!q.isEmpty()) result.and(scan(q));
+        int[] slots = toSlots(result);
+        span.end(slots.length);
+        return slots;
+    }
+
+    private static int[] toSlots(BitSet set) {
+        int[] out = new int[set.cardinality()];
+        int n = 0;
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) out[n++] = s;
+        return out;
+    }
+
+    // One pass over the due index, dealing each match into the run of its leading key.
+    private int[] sorted(BitSet set, int sort) {
+        if (sort == SORT_LIST) return toSlots(set);
+        BitSet[] groups = sort == SORT_PRIORITY ? byPriority : sort == SORT_OVERDUE ? byStatus : null;
+        int[] next = new int[groups == null ? 1 : groups.length];
+        for (int g = 0, at = 0; g < next.length; g++) {
+            next[g] = at;
+            if (groups != null) {
+                BitSet run = (BitSet) groups[g].clone();
+                run.and(set);
+                at += run.cardinality();
+            }
+        }
+        int[] out = new int[set.cardinality()];
+        for (int b = 0; b < byDue.blocks; b++) {
+            if ((b & 7) == 0 && Thread.currentThread().isInterrupted()) throw new CancellationException();
+            int[] block = byDue.slots[b];
+            for (int i = 0, end = byDue.sizes[b]; i < end; i++) {
+                int s = block[i];
+                if (!set.get(s)) continue;
+                int g = groups == null ? 0 : sort == SORT_PRIORITY ? store.priority(s) : store.status(s);
+                out[next[g]++] = s;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Orders two slots, each read from its own view, as `sort` lists them. Pending
+     * tasks come first in SORT_OVERDUE, so its overdue rows lead in due order.
+     */
+    static int compare(TaskView va, int a, TaskView vb, int b, int sort) {
+        if (sort == SORT_LIST) return Integer.compare(a, b);
+        int c = 0;
+        if (sort == SORT_PRIORITY) c = Byte.compare(va.priority(a), vb.priority(b));
+        else if (sort == SORT_OVERDUE) c = Byte.compare(va.status(a), vb.status(b));
+        if (c == 0) c = Long.compare(va.due(a), vb.due(b));
+        return c != 0 ? c : Integer.compare(a, b);
+    }
+
+    /** Checks one slot of a view against a query without the indexes or the lock. */
+    public static boolean matches(TaskView tasks, int slot, String q, String f) {
+        if (!tasks.isLive(slot)) return false;
+        switch (f == null ? "All" : f) {
+            case "Pending": if (tasks.status(slot) != STATUS_PENDING) return false; break;
+            case "Done": if (tasks.status(slot) != STATUS_DONE) return false; break;
+            case "High": if (tasks.priority(slot) != PRIORITY_HIGH) return false; break;
+            case "Medium": if (tasks.priority(slot) != PRIORITY_MEDIUM) return false; break;
+            case "Low": if (tasks.priority(slot) != PRIORITY_LOW) return false; break;
+            default: break;
+        }
+        return containsIgnoreCase(tasks.text(slot), q);
+    }
+
+    private BitSet scan(String q) {
+        BitSet out = new BitSet();
+        if (q.length() >= 3) {
+            // the rarest trigram bucket bounds the candidate set
+            IntList best = null;
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                IntList l = trigrams[trigramBucket(q, i)];
+                if (l == null) return out;
+                if (best == null || l.size < best.size) best = l;
+            }
+            for (int i = 0; i < best.size; i++) {
+                checkCancelled(i);
+                int s = best.a[i];
+                if (containsIgnoreCase(store.text(s), q)) out.set(s);
+            }
+        } else {
+            int n = 0;
+            for (int s = all.nextSetBit(0); s >= 0; s = all.nextSetBit(s + 1)) {
+                checkCancelled(n++);
+                if (containsIgnoreCase(store.text(s), q)) out.set(s);
+            }
+        }
+        return out;
+    }
+
+    static void checkCancelled(int i) {
+        if ((i & 4095) == 0 && Thread.currentThread().isInterrupted()) throw new CancellationException();
+    }
+
+    private BitSet filterSet(String f) {
+        if (f == null) return all;
+        switch (f) {
+            case "Pending": return byStatus[STATUS_PENDING];
+            case "Done": return byStatus[STATUS_DONE];
+            case "High": return byPriority[PRIORITY_HIGH];
+            case "Medium": return byPriority[PRIORITY_MEDIUM];
+            case "Low": return byPriority[PRIORITY_LOW];
+            default: return all;
+        }
+    }
+
+    /** The ascending slots listed under one trigram bucket, or null if none are. */
+    synchronized IntList trigrams(int bucket) { return trigrams[bucket]; }
+
+    static int trigramBucket(String s, int i) {
+        int h = Character.toLowerCase(s.charAt(i));
+        h = h * 31 + Character.toLowerCase(s.charAt(i + 1));
+        h = h * 31 + Character.toLowerCase(s.charAt(i + 2));
+        h ^= h >>> 15;
+        h *= 0x2c1b3c6d;
+        h ^= h >>> 12;
+        return h & (TRIGRAM_BUCKETS - 1);
+    }
+
+    static boolean containsIgnoreCase(String text, String q) {
+        int n = q.length();
+        if (n == 0) return true;
+        // cheap first-character probe before the case-folding compare
+        char lo = Character.toLowerCase(q.charAt(0)), up = Character.toUpperCase(lo);
+        int max = text.length() - n;
+        for (int i = 0; i <= max; i++) {
+            char c = text.charAt(i);
+            if ((c == lo || c == up) && text.regionMatches(true, i + 1, q, 1, n - 1)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package todo;
+
+import java.util.*;
+
+// Growable int array kept in ascending order.
+public final class IntList {
+    public int[] a = new int[4];
+    public int size;
+
+    public void add(int v) { insertAt(size, v); }
+
+    void addSorted(int v) {
+        if (size > 0 && a[size - 1] >= v) {
+            int i = Arrays.binarySearch(a, 0, size, v);
+            if (i >= 0) return;
+            insertAt(-i - 1, v);
+        } else {
+            insertAt(size, v);
+        }
+    }
+
+    void removeSorted(int v) {
+        int i = Arrays.binarySearch(a, 0, size, v);
+        if (i < 0) return;
+        System.arraycopy(a, i + 1, a, i, size - i - 1);
+        size--;
+    }
+
+    /** Drops every value set in `gone`, in one pass. */
+    void removeAll(BitSet gone) {
+        int n = 0;
+        for (int i = 0; i < size; i++) if (!gone.get(a[i])) a[n++] = a[i];
+        size = n;
+    }
+
+    private void insertAt(int i, int v) {
+        if (size == a.length) a = Arrays.copyOf(a, size * 2);
+        System.arraycopy(a, i, a, i + 1, size - i);
+        a[i] = v;
+        size++;
+    }
+}
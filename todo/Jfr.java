@@ -0,0 +1,80 @@
+package todo;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+
+// jdk.jfr reached by reflection; every method is a no-op once anything is missing.
+final class Jfr {
+    private static Constructor<?> annotation, field;
+    private static Method create, newEvent, begin, set, commit;
+    private static Class<?> nameType, labelType, descriptionType, categoryType, thresholdType;
+    private static final boolean AVAILABLE = init();
+
+    private static boolean init() {
+        try {
+            Class<?> element = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            annotation = element.getConstructor(Class.class, Object.class);
+            field = descriptor.getConstructor(Class.class, String.class, List.class);
+            create = factory.getMethod("create", List.class, List.class);
+            newEvent = factory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+            nameType = Class.forName("jdk.jfr.Name");
+            labelType = Class.forName("jdk.jfr.Label");
+            descriptionType = Class.forName("jdk.jfr.Description");
+            categoryType = Class.forName("jdk.jfr.Category");
+            thresholdType = Class.forName("jdk.jfr.Threshold");
+            return true;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return false;
+        }
+    }
+
+    /** Registers the event type todo.<name> with fields rows and error; null without JFR. */
+    static Object eventType(String name, String description, String threshold) {
+        if (!AVAILABLE) return null;
+        try {
+            List<Object> type = new ArrayList<>(Arrays.asList(
+                    annotation.newInstance(nameType, "todo." + name),
+                    annotation.newInstance(labelType, name),
+                    annotation.newInstance(descriptionType, description),
+                    annotation.newInstance(categoryType, new String[]{"Todo"})));
+            if (threshold != null) type.add(annotation.newInstance(thresholdType, threshold));
+            List<Object> fields = Arrays.asList(
+                    field.newInstance(long.class, "rows",
+                            Collections.singletonList(annotation.newInstance(labelType, "Rows"))),
+                    field.newInstance(String.class, "error",
+                            Collections.singletonList(annotation.newInstance(labelType, "Error"))));
+            return create.invoke(null, type, fields);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    static Object begin(Object eventType) {
+        if (eventType == null) return null;
+        try {
+            Object event = newEvent.invoke(eventType);
+            begin.invoke(event);
+            return event;
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    static void commit(Object event, long rows, String error) {
+        if (event == null) return;
+        try {
+            set.invoke(event, 0, rows);
+            set.invoke(event, 1, error);
+            commit.invoke(event);
+        } catch (ReflectiveOperationException ex) {
+            // the recording was torn down meanwhile
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package todo;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Minimal JSON reader for API request bodies: objects become LinkedHashMaps,
+// arrays ArrayLists, integers Longs and other numbers Doubles. Malformed input
+// throws IllegalArgumentException.
+final class Json {
+    // deeper nesting is refused rather than left to overflow the stack
+    static final int MAX_DEPTH = 64;
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    private final String s;
+    private int i, depth;
+
+    private Json(String s) { this.s = s; }
+
+    static Object parse(String s) {
+        Json p = new Json(s);
+        Object v = p.value();
+        p.skipSpace();
+        if (p.i != s.length()) throw p.error("trailing characters");
+        return v;
+    }
+
+    static void quote(String v, StringBuilder sb) {
+        sb.append('"');
+        for (int k = 0; k < v.length(); k++) {
+            char c = v.charAt(k);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private Object value() {
+        skipSpace();
+        if (i == s.length()) throw error("unexpected end");
+        switch (s.charAt(i)) {
+            case '{': return nested(true);
+            case '[': return nested(false);
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return number();
+        }
+    }
+
+    private Object nested(boolean object) {
+        if (++depth > MAX_DEPTH) throw error("nested deeper than " + MAX_DEPTH);
+        Object v = object ? object() : array();
+        depth--;
+        return v;
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        i++;
+        skipSpace();
+        if (peek() == '}') { i++; return m; }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') throw error("expected a key");
+            String k = string();
+            skipSpace();
+            expect(':');
+            m.put(k, value());
+            skipSpace();
+            if (peek() == ',') { i++; continue; }
+            expect('}');
+            return m;
+        }
+    }
+
+    private List<Object> array() {
+        List<Object> l = new ArrayList<>();
+        i++;
+        skipSpace();
+        if (peek() == ']') { i++; return l; }
+        while (true) {
+            l.add(value());
+            skipSpace();
+            if (peek() == ',') { i++; continue; }
+            expect(']');
+            return l;
+        }
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        i++;
+        while (i < s.length()) {
+            char c = s.charAt(i++);
+            if (c == '"') return sb.toString();
+            if (c < 0x20) throw error("control character in string");
+            if (c != '\\') { sb.append(c); continue; }
+            if (i == s.length()) break;
+            char e = s.charAt(i++);
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    int code = 0;
+                    for (int end = i + 4; i < end; i++) {
+                        int d = i < s.length() ? Character.digit(s.charAt(i), 16) : -1;
+                        if (d < 0) throw error("bad \\u escape");
+                        code = code << 4 | d;
+                    }
+                    sb.append((char) code); // surrogate pairs arrive as two escapes
+                    break;
+                default: throw error("bad escape \\" + e);
+            }
+        }
+        throw error("unterminated string");
+    }
+
+    private Object number() {
+        int start = i;
+        boolean integral = true;
+        while (i < s.length() && "+-0123456789.eE".indexOf(s.charAt(i)) >= 0) {
+            char c = s.charAt(i++);
+            if (c == '.' || c == 'e' || c == 'E') integral = false;
+        }
+        if (start == i) throw error("unexpected character '" + s.charAt(i) + "'");
+        String t = s.substring(start, i);
+        if (!NUMBER.matcher(t).matches()) throw error("bad number " + t);
+        try {
+            if (integral) return Long.valueOf(t);
+        } catch (NumberFormatException e) {
+            throw error("number out of range " + t);
+        }
+        double d = Double.parseDouble(t);
+        if (Double.isInfinite(d)) throw error("number out of range " + t);
+        return d;
+    }
+
+    private Object literal(String word, Object v) {
+        if (!s.startsWith(word, i)) throw error("unexpected character '" + s.charAt(i) + "'");
+        i += word.length();
+        return v;
+    }
+
+    private char peek() { return i < s.length() ? s.charAt(i) : '\0'; }
+
+    private void expect(char c) {
+        if (peek() != c) throw error("expected '" + c + "'");
+        i++;
+    }
+
+    private void skipSpace() {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+    }
+
+    private IllegalArgumentException error(String what) {
+        return new IllegalArgumentException("Bad JSON at offset " + i + ": " + what);
+    }
+}
@@ -0,0 +1,154 @@
+package todo;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Reminders are queued and flushed after a short coalescing window, so a burst
+// becomes one summary dialog. Dialogs come from a small reusable pool, at most
+// DIALOGS_PER_MINUTE are opened (the rest wait and merge into the next one), and
+// the flush and dismissal timers share one scheduler thread.
+public final class NotificationDispatcher {
+    // runs a task after a delay: the timer thread, or a test's hand-stepped clock
+    interface Scheduler { void schedule(Runnable task, long delayMillis); }
+
+    private static final long COALESCE_MS = 750, DISMISS_MS = 6000;
+    private static final int POOL_SIZE = 2, MAX_LINES = 15, MAX_PENDING = 1000, DIALOGS_PER_MINUTE = 6;
+
+    private final Component owner;
+    private final java.util.function.Consumer<String> status;
+    private final LongSupplier clock;
+    private final Scheduler timer;
+    private final java.util.function.Consumer<String[]> display; // title and message of one dialog
+
+    // guarded by this
+    private final ArrayDeque<String[]> pending = new ArrayDeque<>();
+    private boolean flushScheduled;
+    private final long[] openedAt = new long[DIALOGS_PER_MINUTE]; // ring of recent dialog times
+    private int openedNext;
+
+    // EDT only
+    private final JOptionPane[] panes = new JOptionPane[POOL_SIZE];
+    private final JDialog[] dialogs = new JDialog[POOL_SIZE];
+    private final long[] shownAt = new long[POOL_SIZE];
+    private final int[] showing = new int[POOL_SIZE];
+
+    final AtomicLong posted = new AtomicLong();     // reminders received
+    final AtomicLong emitted = new AtomicLong();    // reminders listed in a dialog
+    final AtomicLong suppressed = new AtomicLong(); // reminders dropped or folded into "and N more"
+    final AtomicLong dialogsShown = new AtomicLong();
+
+    public NotificationDispatcher(Component owner, java.util.function.Consumer<String> status) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "todo-notify");
+            t.setDaemon(true);
+            return t;
+        });
+        this.owner = owner;
+        this.status = status;
+        this.clock = System::currentTimeMillis;
+        this.timer = (task, delay) -> executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        this.display = notice -> SwingUtilities.invokeLater(() -> show(notice[0], notice[1]));
+    }
+
+    /** A dispatcher that hands each dialog's title and message to `display` instead of opening it. */
+    NotificationDispatcher(LongSupplier clock, Scheduler timer, java.util.function.Consumer<String[]> display) {
+        this.owner = null;
+        this.status = text -> { };
+        this.clock = clock;
+        this.timer = timer;
+        this.display = display;
+    }
+
+    /** Queues a reminder; safe to call from any thread. */
+    public void post(String title, String message) {
+        posted.incrementAndGet();
+        synchronized (this) {
+            if (pending.size() >= MAX_PENDING) { suppressed.incrementAndGet(); return; }
+            pending.add(new String[]{title, message});
+            if (!flushScheduled) {
+                flushScheduled = true;
+                timer.schedule(this::flush, COALESCE_MS);
+            }
+        }
+    }
+
+    private void flush() {
+        List<String[]> batch;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            long oldest = openedAt[openedNext];
+            if (oldest != 0 && now - oldest < 60_000) {
+                // over the rate limit: keep collecting until a slot frees up
+                timer.schedule(this::flush, 60_000 - (now - oldest));
+                return;
+            }
+            openedAt[openedNext] = now;
+            openedNext = (openedNext + 1) % openedAt.length;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            flushScheduled = false;
+        }
+        display.accept(summary(batch));
+    }
+
+    // one dialog's title and message for a batch, counting what it lists and what it folds away
+    private String[] summary(List<String[]> batch) {
+        String title, message;
+        if (batch.size() == 1) {
+            title = batch.get(0)[0];
+            message = batch.get(0)[1];
+            emitted.incrementAndGet();
+        } else {
+            title = batch.size() + " reminders";
+            StringBuilder sb = new StringBuilder();
+            int lines = Math.min(batch.size(), MAX_LINES);
+            for (int i = 0; i < lines; i++) {
+                sb.append(batch.get(i)[0]).append(" - ").append(batch.get(i)[1]).append('\n');
+            }
+            if (batch.size() > lines) sb.append("... and ").append(batch.size() - lines).append(" more");
+            message = sb.toString();
+            emitted.addAndGet(lines);
+            suppressed.addAndGet(batch.size() - lines);
+        }
+        return new String[]{title, message};
+    }
+
+    private void show(String title, String message) {
+        int i = acquire();
+        if (dialogs[i] == null) {
+            panes[i] = new JOptionPane(message, JOptionPane.INFORMATION_MESSAGE);
+            dialogs[i] = panes[i].createDialog(owner, title);
+            dialogs[i].setModal(false);
+            dialogs[i].setAlwaysOnTop(true);
+        } else {
+            panes[i].setMessage(message);
+            panes[i].setValue(JOptionPane.UNINITIALIZED_VALUE);
+            dialogs[i].setTitle(title);
+            dialogs[i].pack();
+        }
+        dialogs[i].setVisible(true);
+        shownAt[i] = clock.getAsLong();
+        int token = ++showing[i];
+        dialogsShown.incrementAndGet();
+        status.accept(String.format("Reminders: %d received, %d shown, %d suppressed, %d dialogs",
+                posted.get(), emitted.get(), suppressed.get(), dialogsShown.get()));
+        timer.schedule(() -> SwingUtilities.invokeLater(() -> {
+            if (showing[i] == token) dialogs[i].setVisible(false); // not reused since
+        }), DISMISS_MS);
+    }
+
+    // a free pooled dialog, or else the one that has been up longest
+    private int acquire() {
+        int oldest = 0;
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (dialogs[i] == null || !dialogs[i].isVisible()) return i;
+            if (shownAt[i] < shownAt[oldest]) oldest = i;
+        }
+        return oldest;
+    }
+}
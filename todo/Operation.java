@@ -0,0 +1,120 @@
+package todo;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.*;
+
+// Every slow path is timed as an Operation: loads, snapshot writes, journal flushes,
+// searches, reminder rescheduling, table paints, the EDT queue lag and startup.
+// Each keeps a count, an error count and a latency histogram, readable over JMX as
+// todo:type=Operation,name=<name>, and emits a JFR event todo.<name> carrying the
+// rows handled and any error. The app compiles against the Java 8 API, which has
+// no jdk.jfr, so the event types are made at runtime through jdk.jfr.EventFactory;
+// on a runtime without JFR only the counters are kept.
+public final class Operation implements OperationMXBean {
+    static final Operation LOAD = new Operation("Load", "Snapshot and journal read into the store", null);
+    public static final Operation SAVE = new Operation("Save", "Snapshot file written", null);
+    static final Operation JOURNAL = new Operation("Journal", "Journal flushed at the end of a write", null);
+    public static final Operation SEARCH = new Operation("Search", "Search and filter evaluated", null);
+    static final Operation REMINDERS = new Operation("Reminders", "Reminders rescheduled for all tasks", null);
+    public static final Operation EXPORT = new Operation("Export", "Tasks exported to XLSX or PDF", null);
+    public static final Operation API = new Operation("Api", "HTTP API request answered", null);
+    public static final Operation BROWSE = new Operation("Browse", "Page of rows read in browse mode", null);
+    // these two happen several times a second, so JFR only records the slow ones
+    public static final Operation PAINT = new Operation("Paint", "Task table painted", "10 ms");
+    public static final Operation EDT_LAG = new Operation("EdtLag", "Time a posted event waited on the EDT", "10 ms");
+    // once per run, timed from JVM start; no JFR event, as they begin before any recording
+    public static final Operation FIRST_PAINT = new Operation("FirstPaint", "JVM start to the window's first paint", null);
+    public static final Operation INTERACTIVE = new Operation("Interactive", "JVM start to the tasks loaded and indexed", null);
+
+    private static final int BUCKETS = 40; // bucket b: durations below 2^b microseconds
+
+    private final String name;
+    private final Object eventFactory; // jdk.jfr.EventFactory, or null
+    private final long[] histogram = new long[BUCKETS];
+    private long count, errors, totalNanos, maxNanos, lastNanos, lastRows;
+    private String lastError;
+
+    private Operation(String name, String description, String jfrThreshold) {
+        this.name = name;
+        eventFactory = Jfr.eventType(name, description, jfrThreshold);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("todo:type=Operation,name=" + name));
+        } catch (JMException | RuntimeException ex) {
+            // no platform server, or already registered from another class loader
+        }
+    }
+
+    /** Starts timing one run; finish it with end() or fail(). */
+    public Span start() { return new Span(this, Jfr.begin(eventFactory)); }
+
+    /** Counts an error outside any timed run; counts and latencies are left alone. */
+    public void failed(Throwable error) {
+        synchronized (this) {
+            errors++;
+            lastError = String.valueOf(error);
+        }
+    }
+
+    /** Records a run that began when the JVM started. */
+    public void sinceLaunch(long rows) {
+        long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        record(TimeUnit.MILLISECONDS.toNanos(millis), rows, null, null);
+    }
+
+    private void record(long nanos, long rows, Throwable error, Object event) {
+        synchronized (this) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+            lastRows = rows;
+            histogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000))]++;
+            if (error != null) {
+                errors++;
+                lastError = String.valueOf(error);
+            }
+        }
+        Jfr.commit(event, rows, error == null ? null : String.valueOf(error));
+    }
+
+    String name() { return name; }
+
+    public synchronized long getCount() { return count; }
+    public synchronized long getErrors() { return errors; }
+    public synchronized String getLastError() { return lastError; }
+    public synchronized long getLastRows() { return lastRows; }
+    public synchronized double getLastMillis() { return lastNanos / 1e6; }
+    public synchronized double getMeanMillis() { return count == 0 ? 0 : totalNanos / 1e6 / count; }
+    public synchronized double getMaxMillis() { return maxNanos / 1e6; }
+    public double getP50Millis() { return percentile(0.50); }
+    public double getP90Millis() { return percentile(0.90); }
+    public double getP99Millis() { return percentile(0.99); }
+
+    // Upper bound of the bucket holding the p-quantile, capped at the slowest run seen.
+    private synchronized double percentile(double p) {
+        long rank = (long) Math.ceil(p * count), seen = 0;
+        for (int b = 0; b < BUCKETS && rank > 0; b++) {
+            seen += histogram[b];
+            if (seen >= rank) return Math.min((1L << b) / 1e3, maxNanos / 1e6);
+        }
+        return 0;
+    }
+
+    public static final class Span {
+        private final Operation op;
+        private final Object event;
+        private final long start = System.nanoTime();
+
+        private Span(Operation op, Object event) {
+            this.op = op;
+            this.event = event;
+        }
+
+        public void end(long rows) { op.record(System.nanoTime() - start, rows, null, event); }
+
+        public void fail(Throwable error) { op.record(System.nanoTime() - start, 0, error, event); }
+    }
+}
@@ -0,0 +1,15 @@
+package todo;
+
+// The JMX view of one Operation's counters and latencies.
+public interface OperationMXBean {
+    long getCount();
+    long getErrors();
+    String getLastError();
+    long getLastRows();
+    double getLastMillis();
+    double getMeanMillis();
+    double getMaxMillis();
+    double getP50Millis();
+    double getP90Millis();
+    double getP99Millis();
+}
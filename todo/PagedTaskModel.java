@@ -0,0 +1,174 @@
+package todo;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static todo.Tasks.*;
+
+// Table model over a CsvRowIndex. Pages of PAGE_ROWS rows are read and parsed on
+// a background thread and kept in an access-ordered cache of CACHE_PAGES pages;
+// a cell whose page is not in yet reads blank until the page arrives. Besides
+// the pages a paint asks for, the next pages in the scroll direction are
+// fetched ahead. Used on the EDT only.
+final class PagedTaskModel extends AbstractTableModel {
+    static final int PAGE_ROWS = 256, CACHE_PAGES = 64, PREFETCH_PAGES = 2;
+    private static final String[] COLUMNS = {"Task","Status","Priority","Due"};
+
+    private final CsvRowIndex index;
+    private final FileChannel csv;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "todo-pages");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<Integer, CsvLoader.Rows> cache = new LinkedHashMap<Integer, CsvLoader.Rows>(16, 0.75f, true) {
+        protected boolean removeEldestEntry(Map.Entry<Integer, CsvLoader.Rows> e) { return size() > CACHE_PAGES; }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount, lastFirstRow;
+    private long pagesRead;
+    private IOException readFailure; // the last page that could not be read
+
+    PagedTaskModel(Path file) throws IOException {
+        csv = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            index = CsvRowIndex.open(file);
+        } catch (IOException ex) {
+            csv.close();
+            throw ex;
+        }
+        rowCount = index.rows();
+    }
+
+    CsvRowIndex index() { return index; }
+    long pagesRead() { return pagesRead; }
+    IOException readFailure() { return readFailure; }
+    int cachedPages() { return cache.size(); }
+
+    /** Takes in rows the index build has reached since the last call. */
+    void grow() {
+        int n = index.rows();
+        if (n <= rowCount) return;
+        int old = rowCount;
+        rowCount = n;
+        if (old % PAGE_ROWS != 0) cache.remove(old / PAGE_ROWS); // was short, has more rows now
+        fireTableRowsInserted(old, n - 1);
+    }
+
+    /** The viewport now shows rows first..last; fetches ahead in the direction it moved. */
+    void viewportMoved(int first, int last) {
+        int step = first >= lastFirstRow ? 1 : -1;
+        lastFirstRow = first;
+        int edge = (step > 0 ? last : first) / PAGE_ROWS;
+        for (int k = 1; k <= PREFETCH_PAGES; k++) {
+            int p = edge + k * step;
+            if (p >= 0 && p * PAGE_ROWS < rowCount) page(p);
+        }
+    }
+
+    /** Row style bits as in RowStyles, or -1 while the row's page is loading. */
+    int style(int row) {
+        CsvLoader.Rows p = page(row / PAGE_ROWS);
+        int i = row % PAGE_ROWS;
+        if (p == null || i >= p.size) return -1;
+        boolean done = p.status[i] == STATUS_DONE;
+        int st = done ? 3 : p.priority[i];
+        if (!done && p.due[i] < System.currentTimeMillis()) st |= RowStyles.OVERDUE;
+        return st;
+    }
+
+    void close() {
+        loader.shutdownNow();
+        try {
+            csv.close();
+            index.close();
+        } catch (IOException ignored) {}
+    }
+
+    public int getRowCount() { return rowCount; }
+    public int getColumnCount() { return COLUMNS.length; }
+    public String getColumnName(int c) { return COLUMNS[c]; }
+    public Class<?> getColumnClass(int c) { return String.class; }
+    public boolean isCellEditable(int r, int c) { return false; }
+
+    public Object getValueAt(int r, int c) {
+        CsvLoader.Rows p = page(r / PAGE_ROWS);
+        int i = r % PAGE_ROWS;
+        if (p == null || i >= p.size) return "";
+        switch (c) {
+            case 0: return p.text[i];
+            case 1: return STATUS_LABELS[p.status[i]];
+            case 2: return PRIORITY_LABELS[p.priority[i]];
+            default: return formatDue(p.due[i]);
+        }
+    }
+
+    // the cached page, or null after queueing its read
+    private CsvLoader.Rows page(int p) {
+        CsvLoader.Rows rows = cache.get(p);
+        if (rows == null && loading.add(p)) {
+            int from = p * PAGE_ROWS, n = Math.min(PAGE_ROWS, rowCount - from);
+            loader.execute(() -> {
+                Operation.Span span = Operation.BROWSE.start();
+                CsvLoader.Rows read;
+                IOException failure = null;
+                try {
+                    read = read(from, n);
+                    span.end(read.size);
+                } catch (IOException ex) {
+                    span.fail(ex);
+                    failure = ex;
+                    read = new CsvLoader.Rows(); // shown blank rather than retried on every paint
+                }
+                CsvLoader.Rows done = read;
+                IOException failed = failure;
+                SwingUtilities.invokeLater(() -> {
+                    loading.remove(p);
+                    if (failed != null) readFailure = failed;
+                    // a short last page read during the index build is stale once rows grew
+                    if (n == Math.min(PAGE_ROWS, rowCount - from)) cache.put(p, done);
+                    pagesRead++;
+                    if (n > 0) fireTableRowsUpdated(from, from + n - 1);
+                });
+            });
+        }
+        return rows;
+    }
+
+    private CsvLoader.Rows read(int from, int n) throws IOException {
+        CsvLoader.Rows rows = new CsvLoader.Rows();
+        if (n <= 0) return rows;
+        long[] off = index.offsets(from, n);
+        byte[] b = new byte[(int) (off[n] - off[0])];
+        ByteBuffer buf = ByteBuffer.wrap(b);
+        while (buf.hasRemaining()) {
+            if (csv.read(buf, off[0] + buf.position()) < 0) throw new EOFException("Snapshot changed while browsing");
+        }
+        byte[] field = new byte[256];
+        DueParser dues = new DueParser();
+        for (int i = 0; i < n; i++) {
+            int pos = (int) (off[i] - off[0]), end = pos;
+            boolean q = false;
+            while (end < b.length && (b[end] != '\n' || q)) {
+                if (b[end] == '"') q = !q;
+                end++;
+            }
+            if (end > pos && b[end - 1] == '\r') end--;
+            if (field.length < end - pos) field = new byte[end - pos];
+            int before = rows.size;
+            CsvLoader.parseRecord(b, pos, end, field, rows, dues);
+            // a short record stays visible as raw text, keeping rows aligned with the index
+            if (rows.size == before) {
+                rows.add(new String(b, pos, end - pos, StandardCharsets.UTF_8), STATUS_PENDING, PRIORITY_MEDIUM, NO_DUE);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,185 @@
+package todo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+
+import static todo.Tasks.*;
+
+// PDF 1.4 in A4 pages of ROWS_PER_PAGE tasks, set in the standard Helvetica fonts.
+// The page count is known from the row count, so every object number is fixed up
+// front; each page's content is built and deflated on its own, and the page tree
+// and cross-reference table, which need only numbers and offsets, come last.
+final class PdfExport {
+    private static final int WIDTH = 595, HEIGHT = 842, MARGIN = 40, LINE = 14, FONT_SIZE = 9;
+    static final int ROWS_PER_PAGE = (HEIGHT - 2 * MARGIN - 2 * LINE) / LINE;
+    private static final int[] COLUMN_X = {MARGIN, 360, 420, 475};
+    private static final int[] COLUMN_WIDTH = {312, 56, 50, 80};
+    private static final String[] COLUMNS = {"Task", "Status", "Priority", "Due"};
+    private static final int CATALOG = 1, PAGES = 2, FONT = 3, BOLD = 4, FIRST_PAGE = 5;
+    // Helvetica advance widths of ' '..'~' in 1/1000 em; other characters count as 556
+    private static final short[] HELVETICA = {
+        278, 278, 355, 556, 556, 889, 667, 191, 333, 333, 389, 584, 278, 333, 278, 278,
+        556, 556, 556, 556, 556, 556, 556, 556, 556, 556, 278, 278, 584, 584, 584, 556,
+        1015, 667, 667, 722, 722, 667, 611, 778, 722, 278, 500, 667, 556, 833, 722, 778,
+        667, 778, 722, 667, 611, 722, 667, 944, 667, 667, 611, 278, 278, 278, 469, 556,
+        333, 556, 556, 500, 556, 556, 278, 556, 556, 222, 222, 500, 222, 833, 556, 556,
+        556, 556, 333, 500, 278, 556, 500, 722, 500, 500, 500, 334, 260, 334, 584};
+    // WinAnsiEncoding 0x80..0x9F; the rest of its upper half is Latin-1
+    private static final String WIN_ANSI_80 = "€\0‚ƒ„…†‡ˆ‰Š‹Œ\0Ž\0\0‘’“”•–—˜™š›œ\0žŸ";
+    private static final byte ELLIPSIS = (byte) 0x85;
+
+    private final OutputStream out;
+    private final long[] offsets;
+    private long pos;
+    // the page being built, then deflated
+    private byte[] page = new byte[1 << 16], packed = new byte[1 << 15];
+    private int pageSize;
+
+    private PdfExport(OutputStream out, int objects) {
+        this.out = out;
+        this.offsets = new long[objects];
+    }
+
+    static void write(TaskView tasks, int[] slots, int n, OutputStream out, IntConsumer progress)
+            throws IOException {
+        int pages = Math.max(1, (n + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE);
+        PdfExport pdf = new PdfExport(out, FIRST_PAGE + 2 * pages);
+        pdf.put("%PDF-1.4\n%âãÏÓ\n");
+        pdf.object(CATALOG, "<</Type/Catalog/Pages " + PAGES + " 0 R>>");
+        pdf.object(FONT, "<</Type/Font/Subtype/Type1/BaseFont/Helvetica/Encoding/WinAnsiEncoding>>");
+        pdf.object(BOLD, "<</Type/Font/Subtype/Type1/BaseFont/Helvetica-Bold/Encoding/WinAnsiEncoding>>");
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        long now = System.currentTimeMillis();
+        try {
+            for (int page = 0, i = 0; page < pages; page++) {
+                pdf.pageSize = 0;
+                int y = HEIGHT - MARGIN - LINE;
+                pdf.ascii("BT /F2 ").number(FONT_SIZE).ascii(" Tf\n");
+                for (int c = 0; c < COLUMNS.length; c++) pdf.cell(c, y, COLUMNS[c]);
+                pdf.ascii("/F1 ").number(FONT_SIZE).ascii(" Tf\n");
+                for (int end = Math.min(n, i + ROWS_PER_PAGE); i < end; i++) {
+                    if (i % TaskExport.STEP == 0) progress.accept(i);
+                    int s = slots[i];
+                    y -= LINE;
+                    long due = tasks.due(s);
+                    boolean done = tasks.status(s) == STATUS_DONE;
+                    // the table's colours: done rows grey, overdue ones red
+                    pdf.ascii(done ? "0.45 g\n" : due < now ? "0.8 0 0 rg\n" : "0 g\n");
+                    pdf.cell(0, y, tasks.text(s));
+                    pdf.cell(1, y, done ? "Done" : "Pending");
+                    pdf.cell(2, y, PRIORITY_LABELS[tasks.priority(s)]);
+                    pdf.cell(3, y, formatDue(due));
+                }
+                pdf.ascii("0 g /F1 8 Tf 1 0 0 1 ").number(MARGIN).ascii(" ").number(MARGIN - LINE)
+                        .ascii(" Tm (Page ").number(page + 1).ascii(" of ").number(pages).ascii(") Tj ET");
+                int obj = FIRST_PAGE + 2 * page;
+                pdf.object(obj, "<</Type/Page/Parent " + PAGES + " 0 R/MediaBox[0 0 " + WIDTH + " " + HEIGHT
+                        + "]/Resources<</Font<</F1 " + FONT + " 0 R/F2 " + BOLD + " 0 R>>>>/Contents "
+                        + (obj + 1) + " 0 R>>");
+                pdf.writeContent(obj + 1, deflater);
+            }
+        } finally {
+            deflater.end();
+        }
+        progress.accept(n);
+
+        pdf.offsets[PAGES] = pdf.pos;
+        pdf.put(PAGES + " 0 obj\n<</Type/Pages/Count " + pages + "/Kids[");
+        for (int page = 0; page < pages; page++) pdf.put((FIRST_PAGE + 2 * page) + " 0 R ");
+        pdf.put("]>>\nendobj\n");
+        long xref = pdf.pos;
+        pdf.put("xref\n0 " + pdf.offsets.length + "\n0000000000 65535 f \n");
+        for (int obj = 1; obj < pdf.offsets.length; obj++) pdf.put(String.format("%010d 00000 n \n", pdf.offsets[obj]));
+        pdf.put("trailer\n<</Size " + pdf.offsets.length + "/Root " + CATALOG + " 0 R>>\nstartxref\n" + xref
+                + "\n%%EOF\n");
+    }
+
+    private void object(int obj, String body) throws IOException {
+        offsets[obj] = pos;
+        put(obj + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    // The page built so far, deflated into one content stream object.
+    private void writeContent(int obj, Deflater deflater) throws IOException {
+        deflater.reset();
+        deflater.setInput(page, 0, pageSize);
+        deflater.finish();
+        int size = 0;
+        while (!deflater.finished()) {
+            if (size == packed.length) packed = Arrays.copyOf(packed, 2 * size);
+            size += deflater.deflate(packed, size, packed.length - size);
+        }
+        offsets[obj] = pos;
+        put(obj + " 0 obj\n<</Length " + size + "/Filter/FlateDecode>>\nstream\n");
+        out.write(packed, 0, size);
+        pos += size;
+        put("\nendstream\nendobj\n");
+    }
+
+    private void put(String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.ISO_8859_1);
+        out.write(b);
+        pos += b.length;
+    }
+
+    private PdfExport raw(int b) {
+        if (pageSize == page.length) page = Arrays.copyOf(page, 2 * pageSize);
+        page[pageSize++] = (byte) b;
+        return this;
+    }
+
+    private PdfExport ascii(String s) {
+        for (int i = 0; i < s.length(); i++) raw(s.charAt(i));
+        return this;
+    }
+
+    private PdfExport number(int v) {
+        if (v < 0) {
+            raw('-');
+            v = -v;
+        }
+        if (v >= 10) number(v / 10);
+        return raw('0' + v % 10);
+    }
+
+    // One cell: positioned absolutely, clipped to its column with an ellipsis.
+    private void cell(int column, int y, String s) {
+        ascii("1 0 0 1 ").number(COLUMN_X[column]).raw(' ').number(y).ascii(" Tm (");
+        int room = COLUMN_WIDTH[column] * 1000 / FONT_SIZE, used = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            int w = c >= ' ' && c <= '~' ? HELVETICA[c - ' '] : 556;
+            if (used + w > room - 1000) {
+                // keep room for the ellipsis unless the rest fits exactly
+                if (!fits(s, i, room - used)) {
+                    raw(ELLIPSIS);
+                    break;
+                }
+            }
+            used += w;
+            if (c == '(' || c == ')' || c == '\\') raw('\\');
+            raw(winAnsi(c));
+        }
+        ascii(") Tj\n");
+    }
+
+    // Byte for a character in WinAnsiEncoding; '?' where the standard fonts have no glyph.
+    private static int winAnsi(char c) {
+        if (c < ' ') return ' ';
+        if (c < 0x7F || c >= 0xA0 && c <= 0xFF) return c;
+        int i = WIN_ANSI_80.indexOf(c);
+        return i < 0 ? '?' : 0x80 + i;
+    }
+
+    private static boolean fits(String s, int from, int room) {
+        for (int i = from; i < s.length() && room >= 0; i++) {
+            char c = s.charAt(i);
+            room -= c >= ' ' && c <= '~' ? HELVETICA[c - ' '] : 556;
+        }
+        return room >= 0;
+    }
+}
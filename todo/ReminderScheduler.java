@@ -0,0 +1,219 @@
+package todo;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+import static todo.Tasks.*;
+
+// A binary min-heap of (fire time, slot) entries served by one daemon thread
+// that sleeps until the earliest entry is due. Every pending task has an
+// "upcoming" entry at due - lead and an "overdue" entry at due. Changing a task
+// bumps its stamp, which invalidates its old entries in place, and pushes new
+// ones. Each reminder fires once per due date.
+final class ReminderScheduler {
+    interface Listener { void remind(int slot, long due, boolean overdue); }
+
+    private static final byte UPCOMING = 1, OVERDUE = 2;
+
+    private final Listener listener;
+    private final LongSupplier clock;
+    private long lead;
+    // heap entries: fire time, slot << 1 | overdue bit, stamp when pushed
+    private long[] at = new long[64];
+    private int[] event = new int[64];
+    private int[] eventStamp = new int[64];
+    private int size;
+    // per slot: current stamp, due the entries were made for, reminders already fired
+    private int[] stamp = new int[64];
+    private long[] dueOf = new long[64];
+    private byte[] fired = new byte[64];
+    private int slots;
+    // what fireDue() found, told to the listener once the lock is let go; one caller at a time
+    private final IntList ready = new IntList();
+    private long[] readyDue = new long[16];
+
+    ReminderScheduler(Listener listener) { this(listener, System::currentTimeMillis); }
+
+    ReminderScheduler(Listener listener, LongSupplier clock) {
+        this.listener = listener;
+        this.clock = clock;
+    }
+
+    void start() {
+        Thread t = new Thread(this::run, "todo-reminders");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /** Reschedules every task of the store, e.g. after a load or a new lead time. */
+    synchronized void reset(TaskStore store, long leadMillis) {
+        Operation.Span span = Operation.REMINDERS.start();
+        boolean sameLead = leadMillis == lead;
+        lead = leadMillis;
+        size = 0;
+        ensureSlots(store.slotCount());
+        if (!sameLead) {
+            // a different lead time moves the "upcoming" reminders
+            for (int s = 0; s < slots; s++) fired[s] &= ~UPCOMING;
+        }
+        for (int s = 0; s < store.slotCount(); s++) {
+            stamp[s]++;
+            if (store.isLive(s)) push(s, store, false);
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+        notifyAll();
+        span.end(store.size());
+    }
+
+    /** Re-keys one slot after it was added, edited, finished or deleted. */
+    synchronized void update(int slot, TaskStore store) {
+        ensureSlots(store.slotCount());
+        stamp[slot]++;
+        if (store.isLive(slot)) push(slot, store, true);
+        if (size > 4 * slots + 64) purge();
+        notifyAll();
+    }
+
+    /** Follows TaskStore.compact(): slots move down to their new numbers, keeping their history. */
+    synchronized void compact(int[] renumbering) {
+        ensureSlots(renumbering.length);
+        int n = 0;
+        for (int s = 0; s < renumbering.length; s++) {
+            if (renumbering[s] < 0) continue;
+            dueOf[n] = dueOf[s];
+            fired[n] = fired[s];
+            n++;
+        }
+        Arrays.fill(fired, n, slots, (byte) 0);
+        Arrays.fill(dueOf, n, slots, 0);
+        slots = n;
+        size = 0; // the caller compacts the store and then calls reset()
+        notifyAll();
+    }
+
+    private void push(int slot, TaskStore store, boolean sift) {
+        long due = store.due(slot);
+        if (dueOf[slot] != due) {
+            dueOf[slot] = due;
+            fired[slot] = 0;
+        }
+        if (store.status(slot) == STATUS_DONE || due == NO_DUE) return;
+        if ((fired[slot] & UPCOMING) == 0 && lead > 0) offer(due - lead, slot << 1, sift);
+        if ((fired[slot] & OVERDUE) == 0) offer(due, slot << 1 | 1, sift);
+    }
+
+    private void run() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    long now = clock.getAsLong();
+                    while (size == 0 || at[0] > now) {
+                        wait(size == 0 ? 0 : at[0] - now);
+                        now = clock.getAsLong();
+                    }
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+            fireDue();
+        }
+    }
+
+    /**
+     * Fires every reminder due by the clock's time. The reminder thread calls it
+     * when the earliest entry comes due; without start(), a caller steps it by hand.
+     */
+    void fireDue() {
+        synchronized (this) {
+            ready.size = 0;
+            long now = clock.getAsLong();
+            while (size > 0 && at[0] <= now) {
+                int e = event[0], st = eventStamp[0];
+                poll();
+                int slot = e >>> 1;
+                if (st != stamp[slot]) continue; // task changed since this entry was pushed
+                boolean overdue = (e & 1) == 1;
+                if (!overdue && dueOf[slot] <= now) continue; // overdue entry supersedes it
+                fired[slot] |= overdue ? (byte) (OVERDUE | UPCOMING) : UPCOMING;
+                if (ready.size == readyDue.length) readyDue = Arrays.copyOf(readyDue, ready.size * 2);
+                readyDue[ready.size] = dueOf[slot];
+                ready.add(e);
+            }
+        }
+        for (int i = 0; i < ready.size; i++) {
+            int e = ready.a[i];
+            listener.remind(e >>> 1, readyDue[i], (e & 1) == 1);
+        }
+    }
+
+    private void ensureSlots(int n) {
+        if (n > stamp.length) {
+            int cap = Math.max(n, stamp.length * 2);
+            stamp = Arrays.copyOf(stamp, cap);
+            dueOf = Arrays.copyOf(dueOf, cap);
+            fired = Arrays.copyOf(fired, cap);
+        }
+        slots = Math.max(slots, n);
+    }
+
+    // drops entries invalidated by later updates and re-heapifies
+    private void purge() {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (eventStamp[i] == stamp[event[i] >>> 1]) {
+                at[n] = at[i];
+                event[n] = event[i];
+                eventStamp[n] = eventStamp[i];
+                n++;
+            }
+        }
+        size = n;
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+    }
+
+    private void offer(long time, int e, boolean sift) {
+        if (size == at.length) {
+            int cap = size * 2;
+            at = Arrays.copyOf(at, cap);
+            event = Arrays.copyOf(event, cap);
+            eventStamp = Arrays.copyOf(eventStamp, cap);
+        }
+        int i = size++;
+        at[i] = time;
+        event[i] = e;
+        eventStamp[i] = stamp[e >>> 1];
+        while (sift && i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (at[parent] <= at[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void poll() {
+        size--;
+        if (size > 0) {
+            at[0] = at[size];
+            event[0] = event[size];
+            eventStamp[0] = eventStamp[size];
+            siftDown(0);
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, min = i;
+            if (l < size && at[l] < at[min]) min = l;
+            if (r < size && at[r] < at[min]) min = r;
+            if (min == i) return;
+            swap(i, min);
+            i = min;
+        }
+    }
+
+    private void swap(int i, int j) {
+        long t = at[i]; at[i] = at[j]; at[j] = t;
+        int e = event[i]; event[i] = event[j]; event[j] = e;
+        int s = eventStamp[i]; eventStamp[i] = eventStamp[j]; eventStamp[j] = s;
+    }
+}
@@ -0,0 +1,40 @@
+package todo;
+
+import java.awt.*;
+import java.util.*;
+
+import static todo.Tasks.*;
+
+// Per-slot style cache for the renderer: the low bits pick the row background
+// (by priority, or done), OVERDUE marks red text, 0 means not computed yet.
+// Entries are dropped when a task changes and when its overdue reminder fires.
+public final class RowStyles {
+    public static final Color[] BACKGROUNDS = {
+        new Color(255, 230, 230), // high
+        new Color(245, 245, 235), // medium
+        new Color(230, 255, 240), // low
+        new Color(225, 240, 255), // done
+    };
+    public static final Color SELECTED = new Color(180, 210, 255);
+    public static final Color OVERDUE_TEXT = Color.RED.darker();
+    public static final int BACKGROUND_MASK = 0x03, OVERDUE = 0x04, VALID = 0x08;
+
+    private byte[] style = new byte[64];
+
+    int get(int slot, TaskView tasks) {
+        if (!tasks.isLive(slot)) return VALID | PRIORITY_MEDIUM; // placeholder row, not cached
+        if (slot >= style.length) style = Arrays.copyOf(style, Math.max(slot + 1, style.length * 2));
+        int st = style[slot];
+        if (st == 0) {
+            boolean done = tasks.status(slot) == STATUS_DONE;
+            st = VALID | (done ? 3 : tasks.priority(slot));
+            if (!done && tasks.due(slot) < System.currentTimeMillis()) st |= OVERDUE;
+            style[slot] = (byte) st;
+        }
+        return st;
+    }
+
+    public void invalidate(int slot) { if (slot < style.length) style[slot] = 0; }
+
+    public void clear() { Arrays.fill(style, (byte) 0); }
+}
@@ -0,0 +1,79 @@
+package todo;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static todo.Tasks.*;
+
+/** Reading and writing whole snapshot files, CSV or binary by their name, and replacing them atomically. */
+public final class SnapshotFiles {
+    private SnapshotFiles() {}
+
+    public static boolean isBinarySnapshot(Path p) { return p.getFileName().toString().endsWith(".bin"); }
+
+    /** Loads a snapshot in the format its name implies; returns the CRC32 of the file. */
+    public static long readSnapshotFile(Path file, TaskStore store) throws IOException {
+        return readSnapshotFile(file, rows -> rows.addTo(store));
+    }
+
+    /** As above, handing the rows to `sink` in file order, a chunk at a time where the format allows. */
+    public static long readSnapshotFile(Path file, Consumer<CsvLoader.Rows> sink) throws IOException {
+        return isBinarySnapshot(file) ? BinarySnapshot.read(file, sink) : CsvLoader.load(file, sink);
+    }
+
+    /** Writes the live tasks to `file` in the format `target` implies; returns the CRC32. */
+    public static long writeSnapshotFile(TaskView store, Path file, Path target) throws IOException {
+        Operation.Span span = Operation.SAVE.start();
+        try {
+            long crc = isBinarySnapshot(target) ? BinarySnapshot.write(store, file) : writeCsvFile(store, file);
+            span.end(store.size());
+            return crc;
+        } catch (IOException | RuntimeException ex) {
+            span.fail(ex);
+            throw ex;
+        }
+    }
+
+    /** Writes the live tasks as CSV to a file, synced to disk; returns the CRC32 of the bytes. */
+    public static long writeCsvFile(TaskView store, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer w = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(Channels.newOutputStream(ch), crc), StandardCharsets.UTF_8));
+            w.write("task,status,priority,due\n");
+            for (int slot = store.nextLive(0); slot >= 0; slot = store.nextLive(slot + 1)) {
+                String task = escapeCSV(store.text(slot));
+                String statusVal = escapeCSV(STATUS_LABELS[store.status(slot)]);
+                String pr = escapeCSV(PRIORITY_LABELS[store.priority(slot)]);
+                String due = escapeCSV(formatDue(store.due(slot)));
+                w.write(String.join(",", task, statusVal, pr, due));
+                w.write("\n");
+            }
+            w.flush();
+            ch.force(true);
+        }
+        return crc.getValue();
+    }
+
+    // A name next to `target` for a file to be moved onto it, of this writer's own, as
+    // other writers may be writing theirs at the same time.
+    public static Path tempSibling(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 4) + ".tmp");
+    }
+
+    public static void moveAtomically(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package todo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static todo.Tasks.*;
+import static todo.SnapshotFiles.*;
+
+// Done tasks due longer ago than the engine's archive age leave the store for
+// compressed, append-only segments next to the snapshot: todo.csv.archive/
+// 000001.csv.gz and on, each a gzipped CSV in the snapshot's format, written once
+// and never changed. todo.csv.archive/index lists them, one line per segment with
+// its row count, due range and a signature of the trigram buckets of its texts,
+// so a search only opens segments that can hold a match. Archived tasks are
+// read-only and have no ids; the table's "Archive" filter searches them on demand.
+// A segment is in place before the tasks leave the journal, so a crash between
+// the two leaves tasks in both places, never in neither; so does quitting without
+// saving when there is no journal. Once the deletions are in the journal, or in
+// the snapshot, the index gets a line "settled,<segments>"; segments after the
+// last such line may still have their tasks in the store, and the next move reads
+// only those, matches tasks to their lines, and only deletes the ones it finds.
+public final class TaskArchive {
+    /** Epoch of search results; no store has it, so their slots never pass for live ones. */
+    public static final long EPOCH = -2;
+    static final int SEGMENT_ROWS = 1 << 16;
+    private static final int SIGNATURE_BITS = 4096;
+    // FileLock only keeps other processes out; archives in this one take turns here
+    private static final Object LOCAL_LOCK = new Object();
+
+    /** Work done while holding the archive; see exclusive(). */
+    interface Work {
+        int run() throws IOException;
+    }
+
+    static final class Segment {
+        final String name;
+        final int rows;
+        final long minDue, maxDue;
+        final long[] signature; // bit per trigram bucket, folded to SIGNATURE_BITS
+
+        Segment(String name, int rows, long minDue, long maxDue, long[] signature) {
+            this.name = name;
+            this.rows = rows;
+            this.minDue = minDue;
+            this.maxDue = maxDue;
+            this.signature = signature;
+        }
+
+        boolean mayContain(long[] trigrams) {
+            for (int i = 0; i < trigrams.length; i++) if ((trigrams[i] & ~signature[i]) != 0) return false;
+            return true;
+        }
+    }
+
+    private final Path dir, index;
+    // guarded by this
+    private final List<Segment> segments = new ArrayList<>();
+    private long indexRead; // bytes of the index read so far; others only append
+    private int rows;
+    private int settled; // leading segments whose tasks are known to be gone from the store
+    private FileChannel locked; // the index, while exclusive() runs
+    private String cachedQuery;
+    private int cachedSegments;
+    private TaskSnapshot cached;
+
+    TaskArchive(Path snapshot) {
+        dir = snapshot.resolveSibling(snapshot.getFileName() + ".archive");
+        index = dir.resolve("index");
+    }
+
+    /** Archived tasks as of the last look at the index. */
+    synchronized int rows() { return rows; }
+
+    /**
+     * Runs `work` with every other writer of this archive, in this process or
+     * another, kept out; append() may only be called from it.
+     */
+    int exclusive(Work work) throws IOException {
+        synchronized (LOCAL_LOCK) {
+            Files.createDirectories(dir);
+            try (FileChannel ch = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                FileLock lock = ch.lock();
+                try {
+                    synchronized (this) {
+                        locked = ch;
+                        refresh();
+                    }
+                    return work.run();
+                } finally {
+                    synchronized (this) {
+                        locked = null;
+                    }
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    /** Writes the tasks in `slots` out as a new segment and lists it in the index. */
+    synchronized void append(TaskView tasks, int[] slots, int n) throws IOException {
+        if (locked == null) throw new IllegalStateException("append() outside exclusive()");
+        String name = String.format("%06d.csv.gz", segments.size() + 1);
+        Path tmp = dir.resolve(name + ".tmp");
+        long[] signature = new long[SIGNATURE_BITS / 64];
+        long minDue = Long.MAX_VALUE, maxDue = Long.MIN_VALUE;
+        try {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                GZIPOutputStream gz = new GZIPOutputStream(Channels.newOutputStream(ch), 1 << 16);
+                Writer w = new BufferedWriter(new OutputStreamWriter(gz, StandardCharsets.UTF_8));
+                w.write("task,status,priority,due\n");
+                for (int k = 0; k < n; k++) {
+                    int slot = slots[k];
+                    String text = tasks.text(slot);
+                    w.write(line(tasks, slot));
+                    w.write('\n');
+                    sign(text, signature);
+                    minDue = Math.min(minDue, tasks.due(slot));
+                    maxDue = Math.max(maxDue, tasks.due(slot));
+                }
+                w.flush();
+                gz.finish();
+                ch.force(true);
+            }
+            moveAtomically(tmp, dir.resolve(name));
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        Segment s = new Segment(name, n, minDue, maxDue, signature);
+        write(format(s));
+        segments.add(s);
+        rows += n;
+    }
+
+    // Appends one line to the index and forces it out.
+    private void write(String text) throws IOException {
+        ByteBuffer line = StandardCharsets.UTF_8.encode(text);
+        locked.truncate(indexRead); // a line cut short by a crash
+        long at = indexRead;
+        while (line.hasRemaining()) at += locked.write(line, at);
+        locked.force(true);
+        indexRead = at;
+    }
+
+    /**
+     * The lines of the segments not yet settled, each with how many times it
+     * occurs: tasks a move cut short may have left in the store as well. Usually
+     * none. May only be called from exclusive().
+     */
+    synchronized Map<String, Integer> unsettled() throws IOException {
+        if (locked == null) throw new IllegalStateException("unsettled() outside exclusive()");
+        Map<String, Integer> lines = new HashMap<>();
+        for (Segment s : segments.subList(settled, segments.size())) {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(dir.resolve(s.name)), 1 << 16), StandardCharsets.UTF_8))) {
+                r.readLine(); // header
+                for (String line; (line = r.readLine()) != null; ) lines.merge(line, 1, Integer::sum);
+            }
+        }
+        return lines;
+    }
+
+    /** Takes one `line` out of what unsettled() returned; false if none is left. */
+    static boolean take(Map<String, Integer> lines, String line) {
+        Integer left = lines.get(line);
+        if (left == null) return false;
+        if (left == 1) lines.remove(line);
+        else lines.put(line, left - 1);
+        return true;
+    }
+
+    /**
+     * Notes in the index that the tasks of every segment so far are gone from the
+     * store for good. May only be called from exclusive().
+     */
+    synchronized void settle() throws IOException {
+        if (locked == null) throw new IllegalStateException("settle() outside exclusive()");
+        if (settled == segments.size()) return;
+        write("settled," + segments.size() + '\n');
+        settled = segments.size();
+    }
+
+    /** A task as its segment line, without the newline. */
+    static String line(TaskView tasks, int slot) {
+        return String.join(",", escapeCSV(tasks.text(slot)), escapeCSV(STATUS_LABELS[tasks.status(slot)]),
+                escapeCSV(PRIORITY_LABELS[tasks.priority(slot)]), escapeCSV(formatDue(tasks.due(slot))));
+    }
+
+    /**
+     * Archived tasks whose text contains `q` (lower case), oldest segment first and
+     * at most `limit` of them, as a snapshot of epoch EPOCH. The last answer is
+     * kept, as the table asks again after every change to the live tasks.
+     */
+    synchronized TaskSnapshot search(String q, int limit) throws IOException {
+        refresh();
+        String key = q + '\0' + limit;
+        if (key.equals(cachedQuery) && cachedSegments == segments.size()) return cached;
+        long[] trigrams = new long[SIGNATURE_BITS / 64];
+        sign(q, trigrams);
+        TaskStore found = new TaskStore();
+        int read = 0;
+        search:
+        for (Segment s : segments) {
+            if (!s.mayContain(trigrams)) continue;
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(dir.resolve(s.name)), 1 << 16), StandardCharsets.UTF_8))) {
+                r.readLine(); // header
+                for (String line; (line = r.readLine()) != null; ) {
+                    FilterEngine.checkCancelled(read++);
+                    String[] f = parseCSVLine(line);
+                    if (f.length < 4 || !FilterEngine.containsIgnoreCase(f[0], q)) continue;
+                    found.add(f[0], parseStatus(f[1]), parsePriority(f[2]), parseDue(f[3]));
+                    if (found.size() == limit) break search;
+                }
+            }
+        }
+        TaskSnapshot s = found.publish();
+        cachedQuery = key;
+        cachedSegments = segments.size();
+        return cached = new TaskSnapshot(s.pages, s.slots, s.liveCount, EPOCH, s.version);
+    }
+
+    // Reads the index lines other writers appended since the last look.
+    private void refresh() throws IOException {
+        if (!Files.exists(index)) return;
+        long size = Files.size(index);
+        if (size == indexRead) return;
+        if (size < indexRead) { // replaced by hand: start over
+            segments.clear();
+            rows = 0;
+            settled = 0;
+            indexRead = 0;
+        }
+        try (FileChannel ch = FileChannel.open(index, StandardOpenOption.READ)) {
+            indexRead = TaskJournal.lines(ch, indexRead, size, line -> {
+                if (line.startsWith("settled,")) {
+                    try {
+                        settled = Math.min(segments.size(), Integer.parseInt(line.substring(8)));
+                        return true;
+                    } catch (NumberFormatException ex) {
+                        return false;
+                    }
+                }
+                Segment s = parse(line);
+                if (s == null) return false;
+                segments.add(s);
+                rows += s.rows;
+                return true;
+            });
+        }
+    }
+
+    // name,rows,minDue,maxDue,signature in Base64; the other lines are "settled,<segments>"
+    private static String format(Segment s) {
+        ByteBuffer b = ByteBuffer.allocate(SIGNATURE_BITS / 8);
+        b.asLongBuffer().put(s.signature);
+        return s.name + ',' + s.rows + ',' + s.minDue + ',' + s.maxDue + ','
+                + Base64.getEncoder().encodeToString(b.array()) + '\n';
+    }
+
+    private static Segment parse(String line) {
+        try {
+            String[] f = line.split(",");
+            long[] signature = new long[SIGNATURE_BITS / 64];
+            ByteBuffer.wrap(Base64.getDecoder().decode(f[4])).asLongBuffer().get(signature);
+            return new Segment(f[0], Integer.parseInt(f[1]), Long.parseLong(f[2]), Long.parseLong(f[3]), signature);
+        } catch (RuntimeException ex) { // a line cut short by a crash
+            return null;
+        }
+    }
+
+    // Sets the bit of each trigram bucket of the text, as FilterEngine hashes them.
+    private static void sign(String text, long[] signature) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            int bit = FilterEngine.trigramBucket(text, i) & (SIGNATURE_BITS - 1);
+            signature[bit >>> 6] |= 1L << bit;
+        }
+    }
+}
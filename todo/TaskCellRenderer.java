@@ -0,0 +1,28 @@
+package todo;
+
+import javax.swing.*;
+import javax.swing.table.*;
+import java.awt.*;
+
+// Colours come from a per-row style byte that is computed once and reused until
+// the task changes or its due time passes, so painting a cell allocates nothing.
+public final class TaskCellRenderer extends DefaultTableCellRenderer {
+    private final TaskTableModel model;
+    private final RowStyles rowStyles;
+
+    public TaskCellRenderer(TaskTableModel model, RowStyles rowStyles) {
+        this.model = model;
+        this.rowStyles = rowStyles;
+    }
+
+    public Component getTableCellRendererComponent(JTable table, Object value,
+                                                   boolean isSelected, boolean hasFocus,
+                                                   int row, int column) {
+        Component comp = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        int style = rowStyles.get(model.slotAt(table.convertRowIndexToModel(row)), model.snapshot());
+        comp.setBackground(isSelected ? RowStyles.SELECTED : RowStyles.BACKGROUNDS[style & RowStyles.BACKGROUND_MASK]);
+        // overdue highlight: red text if overdue and not done
+        comp.setForeground((style & RowStyles.OVERDUE) != 0 ? RowStyles.OVERDUE_TEXT : Color.BLACK);
+        return comp;
+    }
+}
@@ -0,0 +1,1008 @@
+package todo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+
+import static todo.Tasks.*;
+import static todo.SnapshotFiles.*;
+
+// The task list without any UI: store, indexes, journal, snapshot file and
+// reminders, and every operation that changes them. The Swing window and the
+// HTTP API are both clients. Writers serialize on the store's monitor; the store
+// itself is only touched while also holding the filter engine's lock, which is
+// what lets background queries read it. At the end of each write (or batch of
+// writes) the store publishes a snapshot and listeners get it together with the
+// slots that changed, so readers such as the table never need a lock.
+public final class TaskEngine {
+    public interface Listener {
+        /**
+         * A new snapshot was published. `changed` lists the slots added, edited or
+         * deleted since the last one, or is null when too many changed or the slots
+         * were renumbered (compare epochs). Called with the store locked; queue only.
+         */
+        default void published(TaskSnapshot snapshot, int[] changed) {}
+        /** A reminder came due for a task that still has that due date; called without the lock. */
+        default void reminder(int slot, String text, long due, boolean overdue) {}
+        default void journalFailed(IOException ex) {}
+        /**
+         * Slots of epoch `fromEpoch` moved: the task in slot s is now in to[s], or
+         * gone if that is -1 or s is past the end. Called with the store locked,
+         * before the first snapshot of the new epoch is published; queue only.
+         */
+        default void renumbered(long fromEpoch, int[] to) {}
+        /** Another program changed the task files and the tasks now match; called with the store locked. */
+        default void fileChanged(String summary) {}
+        /**
+         * `count` rows or cells of the snapshot did not parse, `first` describing the
+         * first; they were dropped or defaulted, and the file as read was copied to
+         * `backup` (null if that failed). Called with the store locked; queue only.
+         */
+        default void unreadable(int count, String first, Path backup) {}
+    }
+
+    public static final int DEFAULT_REMIND_MINUTES = 10;
+    private static final int MAX_CHANGED_SLOTS = 4096; // beyond this a batch reports "everything"
+    private static final long WATCH_SETTLE_MS = 100;   // lets a burst of writes to the files land before reading them
+
+    public final TaskStore store = new TaskStore();
+    public final FilterEngine filters = new FilterEngine(store);
+    private final ReminderScheduler reminders = new ReminderScheduler(this::remind);
+    private final Path saveFile;
+    private final TaskJournal journal;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long reminderLead = DEFAULT_REMIND_MINUTES * 60_000L;
+    private int batchDepth;
+    // slots changed since the last publish
+    private final IntList changed = new IntList();
+    private boolean changedAll;
+    // the journal outgrew the snapshot; a background save is started when the
+    // outermost write ends, and clears both flags once it has frozen the tasks
+    private boolean compactDue, compactQueued;
+    // Saves write a frozen snapshot without the store lock, one at a time; load
+    // and close wait for a running save. Lock order: saveLock, then store.
+    private final Object saveLock = new Object();
+    private final ExecutorService saver = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "todo-save");
+        t.setDaemon(true);
+        return t;
+    });
+    // actions run through undoable(); guarded by the store lock.
+    // -Dtodo.undo.mb caps the heap the history may keep alive
+    private final UndoHistory history = new UndoHistory(Long.getLong("todo.undo.mb", 64) << 20);
+    // What the files held when this engine last read or wrote them (see Live reload);
+    // guarded by the store lock. `warned` is a change left unread over unsaved tasks,
+    // reported once, after which Save overwrites it.
+    private FileStamp snapshotStamp, warned;
+    private TaskSnapshot synced;  // the tasks as of the last journal write
+    private boolean unsaved;      // changed since the last load or save, without a journal
+    private WatchService watcher; // guarded by saveLock
+    private volatile boolean watching;
+    private final TaskArchive archive;
+    private volatile long archiveAge = -1;
+
+    TaskEngine(Path saveFile, boolean journaled) {
+        this.saveFile = saveFile;
+        this.journal = journaled ? new TaskJournal(saveFile) : null;
+        this.archive = new TaskArchive(saveFile);
+    }
+
+    // -Dtodo.format=binary keeps the snapshot in the compact binary format (todo.bin);
+    // mutations are journaled as they happen, -Dtodo.journal=false restores save-on-demand;
+    // -Dtodo.archive.days turns archiving on, at that age; it is off by default
+    public static TaskEngine fromSystemProperties() {
+        Path file = Paths.get("binary".equals(System.getProperty("todo.format")) ? "todo.bin" : "todo.csv");
+        TaskEngine engine = new TaskEngine(file, Boolean.parseBoolean(System.getProperty("todo.journal", "true")));
+        long days = Long.getLong("todo.archive.days", -1);
+        engine.setArchiveAge(days < 0 ? -1 : TimeUnit.DAYS.toMillis(days));
+        return engine;
+    }
+
+    // Virtual-thread-per-task executor where the runtime has one (JDK 21+),
+    // otherwise a cached pool of daemon threads.
+    public static ExecutorService newBackgroundExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /** Done tasks due longer ago than this move to the archive on load and save; -1: never. */
+    void setArchiveAge(long millis) { archiveAge = millis; }
+
+    public Path saveFile() { return saveFile; }
+    public void addListener(Listener l) { listeners.add(l); }
+    public void startReminders() { reminders.start(); }
+
+    public void setReminderLead(long millis) {
+        synchronized (store) {
+            reminderLead = millis;
+            reminders.reset(store, millis);
+        }
+    }
+
+    /**
+     * Replaces the tasks with the snapshot plus its journal; returns the records
+     * replayed. Into an empty store, as at startup, rows are published as they are
+     * read; writers wait until the load is done. With the journal on, tasks due
+     * for the archive then move there.
+     */
+    public int load() throws IOException {
+        synchronized (saveLock) {
+            int replayed = loadFiles();
+            if (journal != null) archiveDue();
+            return replayed;
+        }
+    }
+
+    // load() up to the archiving; the caller holds saveLock.
+    private int loadFiles() throws IOException {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                Operation.Span span = Operation.LOAD.start();
+                int[] replayed = {0};
+                try {
+                    FileStamp[] stamp = {null};
+                    if (store.slotCount() > 0 || !stream(stamp, replayed)) {
+                        TaskStore fresh = readFiles(stamp, replayed);
+                        history.clear();
+                        TaskSnapshot before = store.publish();
+                        renumbered(before.epoch, adopt(fresh, stamp[0], before).to);
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    span.fail(ex);
+                    throw ex;
+                }
+                span.end(store.size());
+                return replayed[0];
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Writes the tasks as they are now to the snapshot file. The file is written
+     * from a frozen snapshot without the store lock, so changes go on meanwhile.
+     * With the journal on, the journal then restarts against the new file holding
+     * only the records appended during the write, and slots are renumbered to
+     * match the file's rows. Changes other writers made first are brought in; if
+     * one of them saved meanwhile, its file stands and this one is dropped. Tasks
+     * due for the archive move there first.
+     */
+    void save() throws IOException {
+        synchronized (saveLock) {
+            archiveDue();
+            TaskSnapshot frozen;
+            int mark = 0;
+            synchronized (store) {
+                batchDepth++;
+                try {
+                    if (journal == null && unsaved) checkOverwrite();
+                    else fileChanged(catchUp());
+                    compactDue = compactQueued = false;
+                    if (journal != null) mark = journal.records();
+                } finally {
+                    endWrite();
+                }
+                frozen = store.publish();
+                unsaved = false;
+            }
+            Path tmp = tempSibling(saveFile);
+            long crc;
+            FileStamp written;
+            try {
+                crc = writeSnapshotFile(frozen, tmp, saveFile);
+                written = FileStamp.of(tmp);
+            } catch (IOException | RuntimeException ex) {
+                Files.deleteIfExists(tmp);
+                synchronized (store) { unsaved = true; }
+                throw ex;
+            }
+            synchronized (store) {
+                batchDepth++;
+                try {
+                    if (journal == null) {
+                        try {
+                            checkOverwrite();
+                        } catch (IOException ex) {
+                            Files.deleteIfExists(tmp);
+                            unsaved = true;
+                            throw ex;
+                        }
+                        moveAtomically(tmp, saveFile);
+                        snapshotStamp = written;
+                    } else {
+                        install(frozen, tmp, crc, mark, written);
+                        return;
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    // writeSnapshotFile() timed the write; this is the snapshot failing to go in
+                    if (!(ex instanceof OverwriteException)) Operation.SAVE.failed(ex);
+                    throw ex;
+                } finally {
+                    endWrite();
+                }
+            }
+            // the tasks archiveDue() moved are out of the snapshot now
+            if (archiveAge >= 0) archive.exclusive(() -> {
+                archive.settle();
+                return 0;
+            });
+        }
+    }
+
+    // save() with the journal on: installs the snapshot written from `frozen`, once
+    // caught up with other writers, unless one of them saved meanwhile. The caller
+    // holds the store.
+    private void install(TaskSnapshot frozen, Path tmp, long crc, int mark, FileStamp written) throws IOException {
+        while (true) {
+            fileChanged(catchUp());
+            if (store.epoch() != frozen.epoch) {
+                Files.deleteIfExists(tmp); // another writer's snapshot replaced the one this was to replace
+                return;
+            }
+            // the file has no gaps: slots that were tombstones when frozen go
+            int[] renumbering = frozen.slotCount() == frozen.size() ? null : store.renumbering(frozen);
+            if (!journal.rebase(tmp, crc, mark, renumbering, snapshotStamp)) continue;
+            snapshotStamp = written;
+            if (renumbering != null) {
+                synchronized (filters) {
+                    reminders.compact(renumbering);
+                    store.compact(renumbering);
+                    filters.rebuild();
+                }
+                reminders.reset(store, reminderLead);
+                changedAll = true;
+                renumbered(frozen.epoch, renumbering);
+            }
+            return;
+        }
+    }
+
+    // Moves done tasks due before the archive age from the store to the archive, a
+    // segment at a time, without undo; returns how many moved. The archive is held
+    // from catching up with other writers until the deletions are journaled, so
+    // no two writers archive the same task.
+    private int archiveDue() throws IOException {
+        if (archiveAge < 0) return 0;
+        long before = System.currentTimeMillis() - archiveAge;
+        int total = 0;
+        while (true) {
+            int moved = archive.exclusive(() -> {
+                // read before the store is held; empty unless a move was cut short
+                Map<String, Integer> unsettled = archive.unsettled();
+                int deleted = 0;
+                synchronized (store) {
+                    batchDepth++;
+                    try {
+                        if (journal == null && unsaved) checkOverwrite();
+                        else fileChanged(catchUp());
+                        int[] due = new int[TaskArchive.SEGMENT_ROWS];
+                        int n = 0;
+                        for (int slot : filters.find("", "Done")) {
+                            if (store.due(slot) >= before) continue;
+                            due[n++] = slot;
+                            if (n == due.length) break;
+                        }
+                        if (n > 0) {
+                            Arrays.sort(due, 0, n);
+                            // tasks a move cut short left in both places are only deleted
+                            int[] fresh = new int[n];
+                            int m = 0;
+                            for (int i = 0; i < n; i++) {
+                                if (unsettled.isEmpty() || !TaskArchive.take(unsettled, TaskArchive.line(store, due[i]))) {
+                                    fresh[m++] = due[i];
+                                }
+                            }
+                            if (m > 0) archive.append(store, fresh, m);
+                            for (int i = 0; i < n; i++) history.archived(store.id(due[i]));
+                            deleted = deleteAll(Arrays.copyOf(due, n));
+                        }
+                    } finally {
+                        endWrite();
+                    }
+                }
+                // without a journal the deletions hold once save() has installed the snapshot
+                if (journal != null && journal.flushed()) archive.settle();
+                return deleted;
+            });
+            total += moved;
+            if (moved < TaskArchive.SEGMENT_ROWS) return total;
+        }
+    }
+
+    /** Tasks in the archive. */
+    public int archived() { return archive.rows(); }
+
+    /**
+     * Archived tasks matching a search string, at most `limit`, in `sort` order; a
+     * read-only result of epoch TaskArchive.EPOCH.
+     */
+    public FilterEngine.Matches searchArchive(String query, int sort, int limit) throws IOException {
+        Operation.Span span = Operation.SEARCH.start();
+        TaskSnapshot found;
+        try {
+            found = archive.search(query.trim().toLowerCase(), limit);
+        } catch (IOException | RuntimeException ex) {
+            span.fail(ex);
+            throw ex;
+        }
+        Integer[] order = new Integer[found.slotCount()];
+        for (int s = 0; s < order.length; s++) order[s] = s;
+        if (sort != FilterEngine.SORT_LIST) Arrays.sort(order, (a, b) -> FilterEngine.compare(found, a, found, b, sort));
+        int[] slots = new int[order.length];
+        for (int i = 0; i < slots.length; i++) slots[i] = order[i];
+        span.end(slots.length);
+        return new FilterEngine.Matches(slots, sort, found, TaskArchive.EPOCH);
+    }
+
+    /** save() on the engine's save thread; the future completes when it is done. */
+    public CompletableFuture<Void> saveInBackground() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        saver.execute(() -> {
+            try {
+                save();
+                done.complete(null);
+            } catch (IOException | RuntimeException ex) {
+                done.completeExceptionally(ex);
+            }
+        });
+        return done;
+    }
+
+    /** Waits for a running save, then stops watching the files and closes the journal. */
+    public void close() {
+        synchronized (saveLock) {
+            watching = false;
+            synchronized (store) {
+                try {
+                    if (watcher != null) watcher.close();
+                    if (journal != null) journal.close();
+                } catch (IOException ex) {
+                    for (Listener l : listeners) l.journalFailed(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns live reload on or off. While on, a watcher thread brings in what other
+     * programs change in the task files; turning it on catches up at once.
+     */
+    public void watch(boolean on) throws IOException {
+        synchronized (saveLock) {
+            watching = on;
+            if (!on) return;
+            if (watcher == null) {
+                Path dir = saveFile.toAbsolutePath().getParent();
+                try {
+                    watcher = dir.getFileSystem().newWatchService();
+                    dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                } catch (IOException ex) {
+                    if (watcher != null) watcher.close();
+                    watcher = null;
+                    throw ex;
+                }
+                WatchService ws = watcher;
+                Thread t = new Thread(() -> watchFiles(ws), "todo-watch");
+                t.setDaemon(true);
+                t.start();
+            }
+            reconcile();
+        }
+    }
+
+    /** Brings in what other writers changed in the files, if live reload is on. */
+    void reconcile() throws IOException {
+        synchronized (saveLock) {
+            if (!watching) return;
+            synchronized (store) {
+                batchDepth++;
+                try {
+                    fileChanged(catchUp());
+                } finally {
+                    endWrite();
+                }
+            }
+        }
+    }
+
+    private void watchFiles(WatchService ws) {
+        Set<Path> names = new HashSet<>(Arrays.asList(saveFile.getFileName(),
+                journal != null ? journal.path().getFileName() : saveFile.getFileName()));
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean ours = false;
+                for (WatchEvent<?> e : key.pollEvents()) {
+                    ours |= e.kind() == StandardWatchEventKinds.OVERFLOW || names.contains(e.context());
+                }
+                key.reset();
+                if (!ours || !watching) continue;
+                Thread.sleep(WATCH_SETTLE_MS);
+                for (WatchKey k; (k = ws.poll()) != null; ) {
+                    k.pollEvents();
+                    k.reset();
+                }
+                try {
+                    reconcile();
+                } catch (IOException | RuntimeException ex) {
+                    IOException io = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+                    for (Listener l : listeners) l.journalFailed(io);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // closed
+        }
+    }
+
+    // Brings in what other writers changed in the files since this engine last read
+    // or wrote them; the caller holds both locks, inside a batch. Appended journal
+    // records are applied as they are; anything else means reading the files again.
+    // Returns a summary, or null if no task changed.
+    private String catchUp() throws IOException {
+        FileStamp now = FileStamp.of(saveFile);
+        boolean replaced = now != null && !now.equals(snapshotStamp);
+        if (journal == null) {
+            if (!replaced) return null;
+            if (!unsaved) return reread(Collections.emptyList(), store.publish());
+            if (now.equals(warned)) return null;
+            warned = now;
+            return saveFile.getFileName() + " changed on disk; kept the unsaved tasks here"
+                    + " (Load takes the file's, Save overwrites it)";
+        }
+        if (!replaced) {
+            List<String[]> records = journal.appended();
+            if (records != null) return records.isEmpty() ? null : ingest(records);
+        }
+        return reread(Collections.emptyList(), store.publish());
+    }
+
+    // Applies records another writer appended to the journal, numbered as here.
+    private String ingest(List<String[]> records) throws IOException {
+        int[] counts = new int[3];
+        for (String[] f : records) {
+            boolean fits;
+            synchronized (filters) {
+                fits = TaskJournal.apply(store, f, filters);
+            }
+            if (!fits) return reread(Collections.emptyList(), store.publish()); // numbered otherwise after all
+            applied(Integer.parseInt(f[1]));
+            counts[kind(f)]++;
+        }
+        return changesOnDisk(counts);
+    }
+
+    // load() into a store with no tasks: the snapshot's rows go straight in, and
+    // are indexed and published after the first chunk and then each time they
+    // have doubled; then the journal is replayed. False, with the rows read so far
+    // left in for load() to line up with, if another writer replaced the snapshot
+    // meanwhile; on failure the store is emptied again.
+    private boolean stream(FileStamp[] stamp, int[] replayed) throws IOException {
+        try {
+            stamp[0] = FileStamp.of(saveFile);
+            int[] indexed = {0}, unread = {0};
+            String[] firstUnread = {null};
+            long crc = stamp[0] == null ? 0 : readSnapshotFile(saveFile, rows -> {
+                if (unread[0] == 0) firstUnread[0] = rows.firstUnread;
+                unread[0] += rows.unread;
+                synchronized (filters) {
+                    rows.addTo(store);
+                    if (store.slotCount() < 2 * indexed[0]) return;
+                    filters.indexFrom(indexed[0]);
+                    indexed[0] = store.slotCount();
+                }
+                TaskSnapshot partial = store.publish();
+                for (Listener l : listeners) l.published(partial, null);
+            });
+            synchronized (filters) {
+                if (indexed[0] < store.slotCount()) filters.indexFrom(indexed[0]);
+                replayed[0] = journal == null ? 0 : journal.open(store, crc, stamp[0], filters);
+            }
+            if (replayed[0] < 0) return false;
+            if (unread[0] > 0) keepUnread(unread[0], firstUnread[0]);
+        } catch (IOException | RuntimeException ex) {
+            synchronized (filters) {
+                store.reset(new TaskSnapshot(new TaskPage[0], 0, 0, 0, 0));
+                filters.rebuild();
+            }
+            changedAll = true;
+            throw ex;
+        }
+        history.clear();
+        snapshotStamp = stamp[0];
+        unsaved = false;
+        reminders.reset(store, reminderLead);
+        changedAll = true;
+        return true;
+    }
+
+    // Reads the snapshot and replays its journal into a new store, again if another
+    // writer replaces the snapshot meanwhile; fills in the snapshot's stamp and the
+    // records replayed.
+    private TaskStore readFiles(FileStamp[] stamp, int[] replayed) throws IOException {
+        while (true) {
+            stamp[0] = FileStamp.of(saveFile);
+            TaskStore fresh = new TaskStore();
+            int[] unread = {0};
+            String[] firstUnread = {null};
+            long crc = stamp[0] == null ? 0 : readSnapshotFile(saveFile, rows -> {
+                if (unread[0] == 0) firstUnread[0] = rows.firstUnread;
+                unread[0] += rows.unread;
+                rows.addTo(fresh);
+            });
+            replayed[0] = journal == null ? 0 : journal.open(fresh, crc, stamp[0], null);
+            if (replayed[0] < 0) continue;
+            if (unread[0] > 0) keepUnread(unread[0], firstUnread[0]);
+            return fresh;
+        }
+    }
+
+    // The snapshot just read had rows or cells the store cannot hold, which the next
+    // save would drop or rewrite: the file as it is goes to todo.csv.bak first.
+    private void keepUnread(int count, String first) {
+        Path backup = saveFile.resolveSibling(saveFile.getFileName() + ".bak");
+        try {
+            Files.copy(saveFile, backup, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            backup = null;
+        }
+        for (Listener l : listeners) l.unreadable(count, first, backup);
+    }
+
+    // Reads the files afresh and swaps them in, lined up with `base`, then replays
+    // `pending` (see replay()) on top.
+    private String reread(List<String[]> pending, TaskSnapshot base) throws IOException {
+        return reread(pending, base, store.publish());
+    }
+
+    // As above, for records written against `mine`, the tasks before the store was
+    // set back to `base` to take in another writer's records.
+    private String reread(List<String[]> pending, TaskSnapshot base, TaskSnapshot mine) throws IOException {
+        Operation.Span span = Operation.LOAD.start();
+        try {
+            FileStamp[] stamp = {null};
+            TaskStore fresh = readFiles(stamp, new int[1]);
+            Alignment a = adopt(fresh, stamp[0], base);
+            renumbered(mine.epoch, replay(pending, a.to, mine));
+            span.end(store.size());
+            return changesOnDisk(new int[] {a.added, a.updated, a.deleted});
+        } catch (IOException | RuntimeException ex) {
+            span.fail(ex);
+            throw ex;
+        }
+    }
+
+    // flush() found that another writer appended to or replaced the journal first:
+    // takes back this batch's records, catches up with the files, and replays them
+    // on top, so that the journal holds the other writer's changes first, as the
+    // file did.
+    private void resync() throws IOException {
+        List<String[]> pending = journal.takePending();
+        TaskSnapshot mine = store.publish();
+        FileStamp now = FileStamp.of(saveFile);
+        List<String[]> records = now == null || now.equals(snapshotStamp) ? journal.appended() : null;
+        if (records == null) {
+            fileChanged(reread(pending, synced, mine));
+            return;
+        }
+        int[] counts = new int[3];
+        boolean fits = true;
+        synchronized (filters) {
+            store.reset(synced);
+            for (String[] f : records) {
+                if (!(fits = TaskJournal.apply(store, f, null))) break;
+                counts[kind(f)]++;
+            }
+            filters.rebuild();
+        }
+        if (!fits) {
+            fileChanged(reread(pending, synced, mine)); // the store holds part of theirs now, not these
+            return;
+        }
+        int[] to = new int[synced.slotCount()];
+        for (int s = 0; s < to.length; s++) to[s] = s;
+        int[] moved = replay(pending, to, mine);
+        reminders.reset(store, reminderLead);
+        changedAll = true;
+        renumbered(mine.epoch, moved);
+        fileChanged(changesOnDisk(counts));
+    }
+
+    // Swaps in tasks just read from the files, lined up with `base`, the tasks as
+    // this engine last knew the files, so that tasks found in both keep their ids.
+    private Alignment adopt(TaskStore fresh, FileStamp stamp, TaskSnapshot base) {
+        Alignment a = Alignment.of(base, fresh);
+        synchronized (filters) {
+            store.adopt(fresh, a.ids);
+            filters.rebuild();
+        }
+        history.renamed(id -> {
+            int s = base.slotOf(id);
+            return s < 0 || a.to[s] < 0 ? id : store.id(a.to[s]);
+        });
+        snapshotStamp = stamp;
+        unsaved = false;
+        reminders.reset(store, reminderLead);
+        changedAll = true;
+        return a;
+    }
+
+    // Re-applies records of this engine's, written against `mine`, to the tasks as
+    // just rebuilt from the files, where the task in slot s of `mine` now is in
+    // to[s] (-1: gone) for s below to.length; later slots are tasks the records
+    // add. Changes to a task another writer deleted are dropped. Returns where
+    // each slot of `mine` went.
+    private int[] replay(List<String[]> records, int[] to, TaskSnapshot mine) throws IOException {
+        int[] moved = Arrays.copyOf(to, mine.slotCount());
+        Arrays.fill(moved, to.length, moved.length, -1);
+        for (String[] f : records) {
+            int slot = Integer.parseInt(f[1]);
+            boolean add = f[0].equals("A");
+            int target = add ? store.slotCount() : moved[slot];
+            if (target < 0) continue;
+            f[1] = Integer.toString(target);
+            boolean fits;
+            synchronized (filters) {
+                fits = TaskJournal.apply(store, f, filters);
+            }
+            if (!fits) continue;
+            if (add) {
+                moved[slot] = target;
+                history.readded(mine.id(slot), store.id(target));
+            }
+            applied(target);
+            journal.append(f[0].charAt(0), target, store, false);
+        }
+        return moved;
+    }
+
+    // Without a journal a save replaces whatever the file holds: refuses once if
+    // another program changed it since this engine last read or wrote it.
+    private void checkOverwrite() throws IOException {
+        FileStamp now = FileStamp.of(saveFile);
+        if (now == null || now.equals(snapshotStamp) || now.equals(warned)) return;
+        warned = now;
+        throw new OverwriteException(saveFile.getFileName() + " was changed by another program;"
+                + " Load takes its version, Save again overwrites it");
+    }
+
+    /** A save refused because another program changed the file; saving again overwrites it. */
+    static final class OverwriteException extends IOException {
+        OverwriteException(String message) { super(message); }
+    }
+
+    private static int kind(String[] record) {
+        return record[0].equals("A") ? 0 : record[0].equals("D") ? 2 : 1;
+    }
+
+    // "todo.csv changed on disk: 2 added, 1 changed", from {added, changed, deleted}
+    private String changesOnDisk(int[] counts) {
+        if (counts[0] + counts[1] + counts[2] == 0) return null;
+        StringBuilder sb = new StringBuilder().append(saveFile.getFileName()).append(" changed on disk:");
+        String[] what = {" added", " changed", " deleted"};
+        String sep = " ";
+        for (int i = 0; i < 3; i++) {
+            if (counts[i] == 0) continue;
+            sb.append(sep).append(counts[i]).append(what[i]);
+            sep = ", ";
+        }
+        return sb.toString();
+    }
+
+    private void fileChanged(String summary) {
+        if (summary != null) for (Listener l : listeners) l.fileChanged(summary);
+    }
+
+    private void renumbered(long fromEpoch, int[] to) {
+        for (Listener l : listeners) l.renumbered(fromEpoch, to);
+    }
+
+    /**
+     * Runs `change` as one batch and records what it did for undo(), named by
+     * `label` from the change's result. Returns that result.
+     */
+    public int undoable(IntFunction<String> label, IntSupplier change) {
+        synchronized (store) {
+            TaskSnapshot before = store.publish();
+            batchDepth++;
+            try {
+                int result = change.getAsInt();
+                TaskSnapshot after = store.publish();
+                if (after != before) history.record(label.apply(result), before, after);
+                return result;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /** Reverts the newest undoable action; returns its label, or null if there is none. */
+    public String undo() { return revert(true); }
+
+    /** Re-applies the newest undone action; returns its label, or null if there is none. */
+    public String redo() { return revert(false); }
+
+    public String undoLabel() { return history.undoLabel(); }
+    public String redoLabel() { return history.redoLabel(); }
+
+    private String revert(boolean undoing) {
+        synchronized (store) {
+            UndoHistory.Entry e = history.take(undoing);
+            if (e == null) return null;
+            TaskSnapshot before = store.publish();
+            batchDepth++;
+            try {
+                for (int id : e.ids) restore(e.before, id);
+                history.reverted(e, undoing, before, store.publish());
+                return e.label;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    // Puts one task back the way `then` has it: added back, deleted or changed.
+    private void restore(TaskSnapshot then, int id) {
+        int now = history.resolve(id);
+        if (now == UndoHistory.ARCHIVED) return;
+        int was = then.slotOf(id), slot = store.slotOf(now);
+        if (was < 0) {
+            if (slot >= 0) delete(slot);
+        } else if (slot < 0) {
+            slot = add(then.text(was), then.status(was), then.priority(was), then.due(was));
+            history.readded(id, store.id(slot));
+        } else {
+            if (!then.text(was).equals(store.text(slot)) || then.priority(was) != store.priority(slot)
+                    || then.due(was) != store.due(slot)) {
+                edit(slot, then.text(was), then.priority(was), then.due(was));
+            }
+            if (then.status(was) != store.status(slot)) setStatus(slot, then.status(was));
+        }
+    }
+
+    /** Adds a task; returns its slot. */
+    public int add(String text, byte status, byte priority, long due) {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                int slot;
+                synchronized (filters) {
+                    slot = store.add(text, status, priority, due);
+                    filters.index(slot);
+                }
+                changed(slot, TaskJournal.ADD);
+                return slot;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    // edit, setStatus and delete return false when the slot holds no live task
+
+    public boolean edit(int slot, String text, byte priority, long due) {
+        synchronized (store) {
+            if (!store.isLive(slot)) return false;
+            batchDepth++;
+            try {
+                synchronized (filters) {
+                    filters.unindex(slot);
+                    store.update(slot, text, priority, due);
+                    filters.index(slot);
+                }
+                changed(slot, TaskJournal.EDIT);
+                return true;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    boolean setStatus(int slot, byte status) {
+        synchronized (store) {
+            if (!store.isLive(slot)) return false;
+            batchDepth++;
+            try {
+                synchronized (filters) {
+                    byte from = store.status(slot);
+                    store.setStatus(slot, status);
+                    filters.statusChanged(slot, from);
+                }
+                changed(slot, TaskJournal.STATUS);
+                return true;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    boolean delete(int slot) {
+        synchronized (store) {
+            if (!store.isLive(slot)) return false;
+            batchDepth++;
+            try {
+                synchronized (filters) {
+                    filters.unindex(slot);
+                    store.remove(slot);
+                }
+                changed(slot, TaskJournal.DELETE);
+                return true;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    // Bulk forms of setStatus, edit and delete for the table's multi-row actions.
+    // Each is one batch, skips slots that are dead or already as asked, and
+    // returns how many tasks it changed.
+
+    public int setStatusAll(int[] slots, byte status) {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                int n = 0;
+                for (int slot : slots) {
+                    if (store.isLive(slot) && store.status(slot) != status && setStatus(slot, status)) n++;
+                }
+                return n;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    public int setPriorityAll(int[] slots, byte priority) {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                int n = 0;
+                for (int slot : slots) {
+                    if (!store.isLive(slot) || store.priority(slot) == priority) continue;
+                    synchronized (filters) {
+                        byte from = store.priority(slot);
+                        store.update(slot, store.text(slot), priority, store.due(slot));
+                        filters.priorityChanged(slot, from);
+                    }
+                    changed(slot, TaskJournal.EDIT);
+                    n++;
+                }
+                return n;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    public int deleteAll(int[] slots) {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                int[] live = new int[slots.length];
+                int n = 0;
+                BitSet seen = new BitSet();
+                for (int slot : slots) {
+                    if (store.isLive(slot) && !seen.get(slot)) {
+                        seen.set(slot);
+                        live[n++] = slot;
+                    }
+                }
+                synchronized (filters) {
+                    filters.unindexAll(live, n);
+                    for (int i = 0; i < n; i++) store.remove(live[i]);
+                }
+                for (int i = 0; i < n; i++) changed(live[i], TaskJournal.DELETE);
+                return n;
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /** Runs several changes under one hold of the lock, with one journal flush and one publish. */
+    void batch(Runnable changes) {
+        synchronized (store) {
+            batchDepth++;
+            try {
+                changes.run();
+            } finally {
+                endWrite();
+            }
+        }
+    }
+
+    /**
+     * Evaluates the table's query. Holding the store lock keeps writers out, so the
+     * result matches the last published snapshot, which it carries.
+     */
+    public FilterEngine.Matches query(String query, String filter, int sort) {
+        synchronized (store) {
+            return filters.query(query, filter, sort);
+        }
+    }
+
+    /** Slots matching a search string and filter; the table's active query is left alone. */
+    public int[] find(String query, String filter) {
+        synchronized (store) {
+            return filters.find(query.trim().toLowerCase(), filter);
+        }
+    }
+
+    // Brings reminders, journal and the pending change list in line with one
+    // changed slot; callers have already updated the store and filter indexes.
+    private void changed(int slot, char op) {
+        applied(slot);
+        if (journal == null) {
+            unsaved = true;
+            return;
+        }
+        try {
+            journal.append(op, slot, store, false);
+            if (journal.needsCompaction(store.size())) compactDue = true;
+        } catch (IOException ex) {
+            Operation.JOURNAL.failed(ex);
+            for (Listener l : listeners) l.journalFailed(ex);
+        }
+    }
+
+    // The same, for a change already in the files: no journal record.
+    private void applied(int slot) {
+        reminders.update(slot, store);
+        if (!changedAll) {
+            if (changed.size == MAX_CHANGED_SLOTS) changedAll = true;
+            else changed.add(slot);
+        }
+    }
+
+    // Ends one write; the outermost one flushes the journal and publishes.
+    private void endWrite() {
+        if (--batchDepth > 0) return;
+        if (journal != null) {
+            Operation.Span span = Operation.JOURNAL.start();
+            try {
+                while (!journal.flush()) resync();
+                synced = store.publish();
+                span.end(changedAll ? store.size() : changed.size);
+            } catch (IOException ex) {
+                span.fail(ex);
+                for (Listener l : listeners) l.journalFailed(ex);
+            }
+            if (compactDue && !compactQueued) {
+                compactQueued = true;
+                saveInBackground().whenComplete((v, ex) -> {
+                    if (ex == null) return;
+                    IOException io = ex instanceof IOException ? (IOException) ex : new IOException(ex);
+                    for (Listener l : listeners) l.journalFailed(io);
+                });
+            }
+        }
+        if (changed.size == 0 && !changedAll) return;
+        TaskSnapshot snapshot = store.publish();
+        int[] slots = changedAll ? null : Arrays.copyOf(changed.a, changed.size);
+        changed.size = 0;
+        changedAll = false;
+        for (Listener l : listeners) l.published(snapshot, slots);
+    }
+
+    // Called on the scheduler thread; the slot may have been deleted, finished
+    // or renumbered since the reminder was queued.
+    private void remind(int slot, long due, boolean overdue) {
+        String text;
+        synchronized (store) {
+            if (!store.isLive(slot) || store.status(slot) == STATUS_DONE || store.due(slot) != due) return;
+            text = store.text(slot);
+        }
+        for (Listener l : listeners) l.reminder(slot, text, due, overdue);
+    }
+}
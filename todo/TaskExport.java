@@ -0,0 +1,40 @@
+package todo;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntConsumer;
+
+import static todo.SnapshotFiles.moveAtomically;
+
+// Exports stream the given rows straight into the file. Each row is encoded and
+// written as it is read, so memory holds one row, one PDF page and the writers'
+// buffers, whatever the row count. `progress` is told the rows written every
+// STEP rows; it may throw (e.g. CancellationException) to abort.
+public final class TaskExport {
+    public static final int STEP = 4096;
+
+    private TaskExport() {}
+
+    public static boolean isPdf(Path p) { return p.getFileName().toString().toLowerCase().endsWith(".pdf"); }
+
+    /** Writes rows `slots[0..n)` of `tasks` as XLSX or PDF, by `target`'s name; returns its size. */
+    public static long write(TaskView tasks, int[] slots, int n, Path target, IntConsumer progress)
+            throws IOException {
+        Operation.Span span = Operation.EXPORT.start();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                if (isPdf(target)) PdfExport.write(tasks, slots, n, out, progress);
+                else XlsxExport.write(tasks, slots, n, out, progress);
+            }
+            moveAtomically(tmp, target);
+            span.end(n);
+            return Files.size(target);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            if (!(ex instanceof CancellationException)) span.fail(ex);
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package todo;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.nio.file.*;
+
+import static todo.Tasks.*;
+
+// java TodoApp --browse [todo.csv] pages through a CSV snapshot too big to load.
+// Only a row-offset index is kept, on disk next to the file; rows are parsed a
+// page at a time as the viewport reaches them, into a bounded LRU cache. The
+// view is read-only and shows the snapshot as saved, without its journal.
+//
+// The browse-mode window: the paged table and a status line, no editing.
+public final class TaskFileBrowser extends JFrame {
+    private final PagedTaskModel model;
+    private final JLabel status = new JLabel(" ");
+    private final Path file;
+
+    public TaskFileBrowser(Path file) throws IOException {
+        super("Todo List - " + file.getFileName() + " (read-only)");
+        this.file = file;
+        model = new PagedTaskModel(file);
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(980, 680);
+        setLocationRelativeTo(null);
+
+        JTable table = new JTable(model);
+        table.setRowHeight(34);
+        table.setFont(new Font("Segoe UI", Font.PLAIN, 14));
+        table.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 14));
+        table.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            public Component getTableCellRendererComponent(JTable t, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                Component comp = super.getTableCellRendererComponent(t, value, isSelected, hasFocus, row, column);
+                int style = model.style(row);
+                if (style < 0) style = PRIORITY_MEDIUM;
+                comp.setBackground(isSelected ? RowStyles.SELECTED : RowStyles.BACKGROUNDS[style & RowStyles.BACKGROUND_MASK]);
+                comp.setForeground((style & RowStyles.OVERDUE) != 0 ? RowStyles.OVERDUE_TEXT : Color.BLACK);
+                return comp;
+            }
+        });
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setBorder(new EmptyBorder(10,16,10,16));
+        scroll.getViewport().addChangeListener(e -> {
+            Rectangle view = scroll.getViewport().getViewRect();
+            int first = table.rowAtPoint(new Point(0, view.y));
+            int last = table.rowAtPoint(new Point(0, view.y + view.height - 1));
+            if (first >= 0) model.viewportMoved(first, last < 0 ? model.getRowCount() - 1 : last);
+        });
+
+        status.setOpaque(true);
+        status.setBackground(new Color(190,0,255));
+        status.setForeground(Color.WHITE);
+        status.setBorder(new EmptyBorder(8,12,8,12));
+        add(scroll, BorderLayout.CENTER);
+        add(status, BorderLayout.PAGE_END);
+
+        // follow the index build, then keep the cache figures current
+        javax.swing.Timer poll = new javax.swing.Timer(250, e -> {
+            model.grow();
+            updateStatus();
+        });
+        poll.start();
+        updateStatus();
+        addWindowListener(new WindowAdapter() {
+            public void windowClosed(WindowEvent e) {
+                poll.stop();
+                model.close();
+            }
+        });
+    }
+
+    private void updateStatus() {
+        CsvRowIndex index = model.index();
+        String rows = String.format("%,d", model.getRowCount());
+        String text;
+        if (index.failure() != null) text = "Indexing failed after " + rows + " rows: " + index.failure().getMessage();
+        else if (model.readFailure() != null) text = "Cannot read rows: " + model.readFailure().getMessage();
+        else if (!index.complete()) text = "Indexing " + file.getFileName() + ": " + rows + " rows so far";
+        else text = rows + " tasks in " + file.getFileName() + ", read-only";
+        status.setText(" " + text + String.format("  (pages cached %d/%d, read %d)",
+                model.cachedPages(), PagedTaskModel.CACHE_PAGES, model.pagesRead()));
+    }
+}
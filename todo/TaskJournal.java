@@ -0,0 +1,421 @@
+package todo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static todo.Tasks.*;
+import static todo.SnapshotFiles.*;
+
+// Each add, edit, status change and delete is appended as one line to a journal
+// next to the snapshot file, so saving costs the size of the change. When the
+// journal grows past the snapshot it is folded into a fresh snapshot, written in
+// the background; the records appended meanwhile carry over to the new journal.
+// The journal header carries the CRC of the snapshot it applies to; both files are
+// replaced by atomic renames, and a journal whose CRC no longer matches is discarded.
+// Before the renames, the old journal is handed over: a record naming the new
+// snapshot's CRC, followed by the records carried over, so that a crash between
+// the two renames leaves a journal that still applies to whichever snapshot won.
+// Other writers may append to the same journal (see Live reload): records are
+// written under a file lock, and only if the file still ends where this journal
+// last left it.
+final class TaskJournal {
+    static final char ADD = 'A', EDIT = 'E', STATUS = 'S', DELETE = 'D';
+    private static final String HANDOVER = "R,";
+    private static final String HEADER = "#todo-journal,1,";
+    private static final int COMPACT_MIN_RECORDS = 10_000;
+    // FileLock only keeps other processes out; journals in this one take turns here
+    private static final Object LOCAL_LOCK = new Object();
+
+    private final Path snapshot, journal;
+    private FileChannel ch;
+    private Object identity; // FileStamp.identity() of the file `ch` has open
+    private long length;     // bytes of it read or written here; anything past is another writer's
+    private int records;     // records up to `length`, plus those pending
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingRecords;
+
+    TaskJournal(Path snapshot) {
+        this.snapshot = snapshot;
+        this.journal = snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+    }
+
+    Path path() { return journal; }
+
+    /**
+     * Replays the journal onto a store freshly loaded from a snapshot with the given
+     * CRC, then opens it for appending. Returns the number of records replayed.
+     */
+    int open(TaskStore store, long snapshotCrc) throws IOException {
+        return open(store, snapshotCrc, FileStamp.of(snapshot), null);
+    }
+
+    /**
+     * As above, for a snapshot read when it looked like `read`, keeping the filter
+     * indexes up to date unless null; returns -1, with nothing replayed, if another
+     * writer has replaced it since, so the caller reads it again. A journal that
+     * does not match the snapshot is started over.
+     */
+    int open(TaskStore store, long snapshotCrc, FileStamp read, FilterEngine filters) throws IOException {
+        close();
+        pending.setLength(0);
+        pendingRecords = 0;
+        synchronized (LOCAL_LOCK) {
+            while (true) {
+                records = 0;
+                openChannel();
+                FileLock lock = ch.lock();
+                try {
+                    // another writer may have swapped the files while this one waited
+                    if (!identity.equals(FileStamp.identity(journal))) continue;
+                    if (!Objects.equals(FileStamp.of(snapshot), read)) return -1;
+                    long size = ch.size();
+                    long from = recordsFor(snapshotCrc, size);
+                    if (from < 0) {
+                        start(snapshotCrc, 0, 0);
+                        return 0;
+                    }
+                    long end = lines(ch, from, size, line -> {
+                        // a handover to a snapshot that never went in ends the records
+                        if (line.startsWith(HANDOVER) || !apply(store, parseCSVLine(line), filters)) return false;
+                        records++;
+                        return true;
+                    });
+                    if (end < size || from != (HEADER + snapshotCrc).length() + 1) {
+                        // drop what a crash left after the records, or before them
+                        // in a handover, so new appends stay readable
+                        start(snapshotCrc, from, end);
+                    } else {
+                        length = end;
+                    }
+                    return records;
+                } finally {
+                    if (lock.isValid()) lock.release();
+                    if (ch != null && !identity.equals(FileStamp.identity(journal))) close();
+                }
+            }
+        }
+    }
+
+    /** Appends the current state of one slot and writes it out. */
+    void append(char op, int slot, TaskStore store) throws IOException {
+        append(op, slot, store, false);
+        if (!flush()) throw new IOException(journal.getFileName() + " was changed by another writer");
+    }
+
+    /** As above; without flush the record waits for flush(). */
+    void append(char op, int slot, TaskStore store, boolean flush) throws IOException {
+        StringBuilder sb = pending.append(op).append(',').append(slot);
+        switch (op) {
+            case ADD:
+                sb.append(',').append(escapeCSV(store.text(slot)))
+                  .append(',').append(store.status(slot))
+                  .append(',').append(store.priority(slot))
+                  .append(',').append(store.due(slot));
+                break;
+            case EDIT:
+                sb.append(',').append(escapeCSV(store.text(slot)))
+                  .append(',').append(store.priority(slot))
+                  .append(',').append(store.due(slot));
+                break;
+            case STATUS:
+                sb.append(',').append(store.status(slot));
+                break;
+            default:
+                break;
+        }
+        sb.append('\n');
+        pendingRecords++;
+        records++;
+        if (flush && !flush()) throw new IOException(journal.getFileName() + " was changed by another writer");
+    }
+
+    /**
+     * Writes the pending records. Returns false, keeping them, if another writer
+     * appended to or replaced the journal since this one last read or wrote it;
+     * the caller catches up with appended() and takePending() and tries again.
+     */
+    boolean flush() throws IOException {
+        if (pendingRecords == 0) return true;
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pending));
+        synchronized (LOCAL_LOCK) {
+            FileLock lock = ch.lock();
+            try {
+                if (!current()) return false;
+                for (long at = length; bytes.hasRemaining(); ) at += ch.write(bytes, at);
+                length = ch.size();
+            } finally {
+                lock.release();
+            }
+        }
+        pending.setLength(0);
+        pendingRecords = 0;
+        return true;
+    }
+
+    /** Records in the journal so far, flushed or not. */
+    int records() { return records; }
+
+    /** Whether every record appended so far has been written. */
+    boolean flushed() { return pendingRecords == 0; }
+
+    /** The records not yet written, parsed, taking them out of the journal. */
+    List<String[]> takePending() {
+        List<String[]> out = new ArrayList<>(pendingRecords);
+        for (int from = 0, to; (to = pending.indexOf("\n", from)) >= 0; from = to + 1) {
+            out.add(parseCSVLine(pending.substring(from, to)));
+        }
+        records -= pendingRecords;
+        pending.setLength(0);
+        pendingRecords = 0;
+        return out;
+    }
+
+    /**
+     * Whole records another writer has appended since this journal last read or
+     * wrote the file, which now count as read; null if the file was replaced or
+     * cut short instead, and has to be read from the start.
+     */
+    List<String[]> appended() throws IOException {
+        Object now = FileStamp.identity(journal);
+        if (now != null && !now.equals(identity)) return null;
+        long size = ch.size();
+        if (size < length) return null;
+        List<String[]> out = new ArrayList<>();
+        if (size == length) return out;
+        length = lines(ch, length, size, line -> out.add(parseCSVLine(line)));
+        records += out.size();
+        return out;
+    }
+
+    /** Compaction is due once the journal is longer than the snapshot it patches. */
+    boolean needsCompaction(int liveTasks) {
+        return records > Math.max(COMPACT_MIN_RECORDS, liveTasks);
+    }
+
+    /**
+     * Installs `newSnapshot`, written from the tasks as of the first `mark` records,
+     * and restarts the journal against it with the records appended since, their
+     * slots moved per TaskStore.renumbering() (null: unchanged). The caller then
+     * compacts the store the same way. Returns false, installing nothing, if another
+     * writer has changed the journal since this one last read it, or replaced the
+     * snapshot, which no longer matches `expected`. The carried-over records are
+     * handed over in the old journal before either rename, so a crash between the
+     * two loses nothing: open() finds them there for the new snapshot.
+     */
+    boolean rebase(Path newSnapshot, long crc, int mark, int[] renumbering, FileStamp expected) throws IOException {
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        StringBuilder carried = new StringBuilder();
+        int[] kept = {0};
+        synchronized (LOCAL_LOCK) {
+            FileLock lock = ch.lock();
+            try {
+                if (!current() || !Objects.equals(FileStamp.of(snapshot), expected)) return false;
+                boolean installed = false;
+                FileChannel next = null;
+                try {
+                    int[] seen = {0};
+                    lines(ch, 0, length, line -> {
+                        if (seen[0]++ <= mark) return true; // header and folded records
+                        // op,slot[,fields]
+                        int from = line.indexOf(',') + 1, to = line.indexOf(',', from);
+                        if (to < 0) to = line.length();
+                        int slot = Integer.parseInt(line.substring(from, to));
+                        carried.append(line, 0, from).append(renumbering == null ? slot : renumbering[slot])
+                               .append(line, to, line.length()).append('\n');
+                        kept[0]++;
+                        return true;
+                    });
+                    writeHeader(tmp, crc);
+                    next = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    FileLock nextLock = next.lock();
+                    ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(carried));
+                    for (long at = next.size(); bytes.hasRemaining(); ) at += next.write(bytes, at);
+                    ByteBuffer handover = StandardCharsets.UTF_8.encode(CharBuffer.wrap(
+                            new StringBuilder(HANDOVER).append(crc).append('\n').append(carried)));
+                    for (long at = length; handover.hasRemaining(); ) at += ch.write(handover, at);
+                    ch.force(false);
+                    moveAtomically(newSnapshot, snapshot);
+                    installed = true;
+                    switchTo(next, nextLock, tmp);
+                    records = kept[0] + pendingRecords;
+                } catch (IOException | RuntimeException ex) {
+                    if (next != null && next != ch) next.close();
+                    Files.deleteIfExists(tmp);
+                    if (!installed) {
+                        ch.truncate(length);
+                        Files.deleteIfExists(newSnapshot);
+                    }
+                    throw ex;
+                }
+            } finally {
+                if (lock.isValid()) lock.release();
+            }
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        if (ch != null) { ch.close(); ch = null; }
+    }
+
+    // Where the records that apply to the snapshot with this CRC start: after the
+    // header, or after the handover to it that a rebase cut short left behind; -1
+    // if none do.
+    private long recordsFor(long snapshotCrc, long size) throws IOException {
+        String header = HEADER + snapshotCrc, handover = HANDOVER + snapshotCrc;
+        String[] found = {null};
+        lines(ch, 0, size, line -> {
+            found[0] = line;
+            return false;
+        });
+        if (found[0] == null || !found[0].startsWith(HEADER)) return -1;
+        if (found[0].equals(header)) return header.length() + 1;
+        found[0] = null;
+        long at = lines(ch, 0, size, line -> {
+            if (!line.equals(handover)) return true;
+            found[0] = line;
+            return false;
+        });
+        return found[0] == null ? -1 : at + handover.length() + 1;
+    }
+
+    // Starts the journal over for the given snapshot, keeping the records in [from, to).
+    private void start(long snapshotCrc, long from, long to) throws IOException {
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        writeHeader(tmp, snapshotCrc);
+        FileChannel next = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock nextLock = next.lock();
+            next.position(next.size());
+            for (long at = from; at < to; ) at += ch.transferTo(at, to - at, next);
+            switchTo(next, nextLock, tmp);
+        } catch (IOException | RuntimeException ex) {
+            if (next != ch) next.close();
+            throw ex;
+        }
+    }
+
+    // Moves `tmp` in as the journal and continues in `next`, its open channel. The
+    // caller locked `next` before the move and it stays locked until its length is
+    // read, so nothing another writer appends to the new file counts as read here.
+    private void switchTo(FileChannel next, FileLock nextLock, Path tmp) throws IOException {
+        moveAtomically(tmp, journal);
+        close();
+        ch = next;
+        identity = FileStamp.identity(journal);
+        length = ch.size();
+        nextLock.release();
+    }
+
+    // Opens the file at the path, making sure `identity` is the one opened.
+    private void openChannel() throws IOException {
+        while (true) {
+            Object before = FileStamp.identity(journal);
+            ch = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            identity = FileStamp.identity(journal);
+            if (identity != null && identity.equals(before)) return;
+            ch.close();
+        }
+    }
+
+    // The file still ends where this journal left it; a missing file counts, as
+    // deleting the journal is not another writer's change.
+    private boolean current() throws IOException {
+        Object now = FileStamp.identity(journal);
+        return (now == null || now.equals(identity)) && ch.size() == length;
+    }
+
+    // Feeds each '\n'-terminated line in [from, to) to `line` until it returns
+    // false; returns the position after the last line it accepted.
+    static long lines(FileChannel ch, long from, long to, Predicate<String> line)
+            throws IOException {
+        byte[] b = new byte[64 << 10];
+        int n = 0;
+        long pos = from, done = from;
+        while (pos < to) {
+            if (n == b.length) b = Arrays.copyOf(b, n * 2);
+            int r = ch.read(ByteBuffer.wrap(b, n, (int) Math.min(b.length - n, to - pos)), pos);
+            if (r < 0) break;
+            pos += r;
+            int start = 0, end = n + r;
+            for (int i = n; i < end; i++) {
+                if (b[i] != '\n') continue;
+                if (!line.test(new String(b, start, i - start, StandardCharsets.UTF_8))) return done;
+                done += i + 1 - start;
+                start = i + 1;
+            }
+            n = end - start;
+            System.arraycopy(b, start, b, 0, n);
+        }
+        return done;
+    }
+
+    private static void writeHeader(Path p, long snapshotCrc) throws IOException {
+        try (BufferedWriter w = Files.newBufferedWriter(p)) {
+            w.write(HEADER + snapshotCrc);
+            w.write('\n');
+        }
+    }
+
+    /**
+     * Applies one record to the store, and to the filter indexes unless null; false
+     * if it does not fit the store, as a torn or foreign record may not.
+     */
+    static boolean apply(TaskStore store, String[] f, FilterEngine filters) {
+        try {
+            int slot = Integer.parseInt(f[1]);
+            if (f[0].equals("A")) {
+                if (slot != store.slotCount()) return false;
+                store.add(f[2], statusCode(f[3]), priorityCode(f[4]), Long.parseLong(f[5]));
+                if (filters != null) filters.index(slot);
+                return true;
+            }
+            if (slot >= store.slotCount() || !store.isLive(slot)) return false;
+            switch (f[0]) {
+                case "E": {
+                    String text = f[2];
+                    byte pr = priorityCode(f[3]);
+                    long due = Long.parseLong(f[4]);
+                    if (filters != null) filters.unindex(slot);
+                    store.update(slot, text, pr, due);
+                    if (filters != null) filters.index(slot);
+                    return true;
+                }
+                case "S": {
+                    byte st = statusCode(f[2]), from = store.status(slot);
+                    store.setStatus(slot, st);
+                    if (filters != null) filters.statusChanged(slot, from);
+                    return true;
+                }
+                case "D":
+                    if (filters != null) filters.unindex(slot);
+                    store.remove(slot);
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException ex) { // truncated or garbled line
+            return false;
+        }
+    }
+
+    private static byte statusCode(String s) {
+        byte b = Byte.parseByte(s);
+        if (b != STATUS_PENDING && b != STATUS_DONE) throw new IllegalArgumentException(s);
+        return b;
+    }
+
+    private static byte priorityCode(String s) {
+        byte b = Byte.parseByte(s);
+        if (b < PRIORITY_HIGH || b > PRIORITY_LOW) throw new IllegalArgumentException(s);
+        return b;
+    }
+}
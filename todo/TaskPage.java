@@ -0,0 +1,32 @@
+package todo;
+
+// One page of the store: a column per field for PAGE_SIZE slots, plus their live bitmap.
+final class TaskPage {
+    static final int PAGE_SHIFT = 10, PAGE_SIZE = 1 << PAGE_SHIFT, PAGE_MASK = PAGE_SIZE - 1;
+    static final long PAGE_BYTES = 18L * PAGE_SIZE + PAGE_SIZE / 8 + 128; // rough heap of one TaskPage
+
+    final String[] text;
+    final byte[] status, priority;
+    final long[] due;
+    final int[] ids;
+    final long[] live;
+    boolean shared; // reachable from a snapshot; only the writer reads or sets this
+
+    TaskPage() {
+        this(new String[PAGE_SIZE], new byte[PAGE_SIZE], new byte[PAGE_SIZE], new long[PAGE_SIZE],
+                new int[PAGE_SIZE], new long[PAGE_SIZE / 64]);
+    }
+
+    private TaskPage(String[] text, byte[] status, byte[] priority, long[] due, int[] ids, long[] live) {
+        this.text = text;
+        this.status = status;
+        this.priority = priority;
+        this.due = due;
+        this.ids = ids;
+        this.live = live;
+    }
+
+    TaskPage copy() {
+        return new TaskPage(text.clone(), status.clone(), priority.clone(), due.clone(), ids.clone(), live.clone());
+    }
+}
@@ -0,0 +1,447 @@
+package todo;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static todo.Tasks.*;
+import static todo.SnapshotFiles.*;
+
+// Local JSON API over the engine, bound to the loopback interface and served
+// thread-per-request (virtual threads where the runtime has them).
+//   GET    /tasks?q=&filter=&offset=&limit=  matching tasks in list order, with the total
+//                                            (filter=Archive: archived tasks, without ids)
+//   POST   /tasks                            add a task, answers its id
+//   POST   /tasks/bulk                       [{"op":"add"|"update"|"done"|"delete", ...}, ...]
+//   GET    /tasks/{id}
+//   PATCH  /tasks/{id}  (or PUT)             change any of task, status, priority, due
+//   DELETE /tasks/{id}
+//   POST   /save                             same as the Save button
+// A task is {"id","task","status","priority","due"} with the labels the UI uses:
+// "Pending"/"Done", "High"/"Medium"/"Low", "yyyy-MM-dd HH:mm" or null. Ids stay
+// fixed while the process runs. A bulk request is validated as a whole and then
+// applied under one engine lock with a single journal flush.
+// Loopback alone does not keep web pages out: a page can post a form to it, or
+// rebind its own host name to 127.0.0.1 and read the answers. So every request
+// needs "Authorization: Bearer <token>", with the token made afresh per process
+// and left readable only by the user in todo.csv.api-token; requests that carry
+// an Origin or name a host other than the loopback are refused, and bodies must
+// be sent as application/json, which a page cannot post without asking first.
+public final class TaskServer {
+    public static final int DEFAULT_PORT = 8765;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final long MIN_DUE = Instant.parse("0001-01-02T00:00:00Z").toEpochMilli();
+    private static final long MAX_DUE = Instant.parse("9999-12-30T00:00:00Z").toEpochMilli();
+
+    private final TaskEngine engine;
+    private final String token;
+    private HttpServer http;
+
+    // -Dtodo.api.token fixes the token, for scripts that cannot read the token file
+    public TaskServer(TaskEngine engine) { this(engine, System.getProperty("todo.api.token", newToken())); }
+
+    TaskServer(TaskEngine engine, String token) {
+        this.engine = engine;
+        this.token = token;
+    }
+
+    String token() { return token; }
+
+    /** Where start() leaves the token for clients. */
+    public Path tokenFile() { return engine.saveFile().resolveSibling(engine.saveFile().getFileName() + ".api-token"); }
+
+    private static String newToken() {
+        byte[] b = new byte[24];
+        new SecureRandom().nextBytes(b);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(b);
+    }
+
+    public void start(int port) throws IOException {
+        writeToken();
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/tasks", ex -> handle(ex, this::tasks));
+        http.createContext("/save", ex -> handle(ex, this::save));
+        http.setExecutor(TaskEngine.newBackgroundExecutor("todo-api"));
+        http.start();
+    }
+
+    public int port() { return http.getAddress().getPort(); }
+
+    void stop() {
+        http.stop(0);
+        ((ExecutorService) http.getExecutor()).shutdown();
+    }
+
+    private interface Route { Reply serve(HttpExchange ex) throws IOException; }
+
+    private static final class Reply {
+        final int code;
+        final String json; // null for an empty body
+        Reply(int code, String json) { this.code = code; this.json = json; }
+    }
+
+    // answers a request with an error status and {"error": message}
+    private static final class ApiException extends RuntimeException {
+        final int code;
+        ApiException(int code, String message) { super(message); this.code = code; }
+    }
+
+    // one parsed task change; unset fields are null
+    private static final class Change {
+        String text;
+        Byte status, priority;
+        Long due;
+    }
+
+    // The token file is created owner-only where the file system has POSIX permissions.
+    private void writeToken() throws IOException {
+        Path file = tokenFile(), tmp = tempSibling(file);
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.createFile(tmp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            }
+            Files.write(tmp, token.getBytes(StandardCharsets.UTF_8));
+            moveAtomically(tmp, file);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // Requests the server fails on (500) count as errors of the Api operation.
+    private void handle(HttpExchange ex, Route route) throws IOException {
+        Operation.Span span = Operation.API.start();
+        Reply reply;
+        try {
+            admit(ex);
+            reply = route.serve(ex);
+            span.end(0);
+        } catch (ApiException e) {
+            reply = error(e.code, e.getMessage());
+            span.end(0);
+        } catch (IllegalArgumentException e) {
+            reply = error(400, e.getMessage());
+            span.end(0);
+        } catch (IOException | RuntimeException e) {
+            span.fail(e);
+            reply = error(500, String.valueOf(e));
+        }
+        try {
+            if (reply.json == null) {
+                ex.sendResponseHeaders(reply.code, -1);
+            } else {
+                byte[] body = reply.json.getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                ex.sendResponseHeaders(reply.code, body.length);
+                try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Refuses requests from web pages and without the token; see the class comment.
+    private void admit(HttpExchange ex) {
+        Headers h = ex.getRequestHeaders();
+        if (h.containsKey("Origin")) throw new ApiException(403, "Cross-origin requests are not allowed");
+        String host = h.getFirst("Host");
+        if (host == null || !isLoopbackHost(host)) throw new ApiException(403, "Host not allowed: " + host);
+        String auth = h.getFirst("Authorization");
+        boolean bearer = auth != null && auth.regionMatches(true, 0, "Bearer ", 0, 7);
+        byte[] given = (bearer ? auth.substring(7) : "").getBytes(StandardCharsets.UTF_8);
+        if (!bearer || !MessageDigest.isEqual(given, token.getBytes(StandardCharsets.UTF_8))) {
+            ex.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new ApiException(401, "Missing or wrong bearer token; see " + tokenFile().getFileName());
+        }
+    }
+
+    // "127.0.0.1", "localhost" or "[::1]", with or without a port
+    static boolean isLoopbackHost(String host) {
+        String name = host.startsWith("[") ? host.substring(0, host.indexOf(']') + 1)
+                : host.indexOf(':') < 0 ? host : host.substring(0, host.indexOf(':'));
+        String port = host.substring(name.length());
+        if (!port.isEmpty() && !port.matches(":[0-9]{1,5}")) return false;
+        return name.equals("127.0.0.1") || name.equalsIgnoreCase("localhost") || name.equals("[::1]");
+    }
+
+    private Reply tasks(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath(), method = ex.getRequestMethod();
+        String rest = path.startsWith("/tasks/") ? path.substring("/tasks/".length()) : "";
+        if (!rest.isEmpty() || path.equals("/tasks") || path.equals("/tasks/")) {
+            if (rest.isEmpty()) {
+                if (method.equals("GET")) return list(queryParams(ex));
+                if (method.equals("POST")) return create(change(Json.parse(body(ex)), true));
+            } else if (rest.equals("bulk")) {
+                if (method.equals("POST")) return bulk(Json.parse(body(ex)));
+            } else {
+                int id = parseId(rest);
+                switch (method) {
+                    case "GET": return get(id);
+                    case "PUT":
+                    case "PATCH": return update(id, change(Json.parse(body(ex)), false));
+                    case "DELETE": return delete(id);
+                    default: break;
+                }
+            }
+            throw new ApiException(405, method + " not allowed on " + path);
+        }
+        throw new ApiException(404, "No such resource: " + path);
+    }
+
+    private Reply save(HttpExchange ex) throws IOException {
+        if (!ex.getRequestMethod().equals("POST")) throw new ApiException(405, "Use POST /save");
+        try {
+            engine.save();
+        } catch (TaskEngine.OverwriteException e) {
+            throw new ApiException(409, e.getMessage());
+        }
+        StringBuilder sb = new StringBuilder("{\"saved\":");
+        Json.quote(engine.saveFile().toString(), sb);
+        return new Reply(200, sb.append('}').toString());
+    }
+
+    private Reply list(Map<String, String> params) throws IOException {
+        String q = params.getOrDefault("q", "");
+        String filter = params.getOrDefault("filter", "All");
+        int offset = intParam(params, "offset", 0), limit = intParam(params, "limit", DEFAULT_LIMIT);
+        StringBuilder sb = new StringBuilder(128 + Math.min(limit, 10_000) * 96);
+        if (filter.equals("Archive")) {
+            // archived tasks have no ids; the total counts only as far as the page asked for
+            int want = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+            FilterEngine.Matches m = engine.searchArchive(q, FilterEngine.SORT_LIST, want);
+            sb.append("{\"total\":").append(m.slots.length).append(",\"tasks\":[");
+            for (int i = offset; i < m.slots.length; i++) {
+                if (i > offset) sb.append(',');
+                writeTask(m.snapshot, m.slots[i], false, sb);
+            }
+            return new Reply(200, sb.append("]}").toString());
+        }
+        synchronized (engine.store) {
+            int[] slots = engine.find(q, filter);
+            sb.append("{\"total\":").append(slots.length).append(",\"tasks\":[");
+            int end = (int) Math.min(slots.length, (long) offset + limit);
+            for (int i = offset; i < end; i++) {
+                if (i > offset) sb.append(',');
+                writeTask(slots[i], sb);
+            }
+        }
+        return new Reply(200, sb.append("]}").toString());
+    }
+
+    private Reply get(int id) {
+        StringBuilder sb = new StringBuilder(128);
+        synchronized (engine.store) {
+            writeTask(slotOf(id), sb);
+        }
+        return new Reply(200, sb.toString());
+    }
+
+    private Reply create(Change c) {
+        int id;
+        synchronized (engine.store) {
+            id = engine.store.id(add(c));
+        }
+        return new Reply(201, "{\"id\":" + id + "}");
+    }
+
+    private Reply update(int id, Change c) {
+        StringBuilder sb = new StringBuilder(128);
+        engine.batch(() -> {
+            int slot = slotOf(id);
+            apply(slot, c);
+            writeTask(slot, sb);
+        });
+        return new Reply(200, sb.toString());
+    }
+
+    private Reply delete(int id) {
+        synchronized (engine.store) {
+            engine.delete(slotOf(id));
+        }
+        return new Reply(204, null);
+    }
+
+    private Reply bulk(Object body) {
+        if (!(body instanceof List)) throw new IllegalArgumentException("Expected an array of operations");
+        List<?> items = (List<?>) body;
+        int n = items.size();
+        char[] ops = new char[n];
+        int[] ids = new int[n];
+        Change[] changes = new Change[n];
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> item = object(items.get(i));
+            String op = String.valueOf(item.get("op"));
+            switch (op) {
+                case "add": ops[i] = TaskJournal.ADD; changes[i] = change(item, true); continue;
+                case "update": ops[i] = TaskJournal.EDIT; changes[i] = change(item, false); break;
+                case "done": ops[i] = TaskJournal.STATUS; break;
+                case "delete": ops[i] = TaskJournal.DELETE; break;
+                default: throw new IllegalArgumentException("Operation " + i + ": unknown op " + op);
+            }
+            ids[i] = parseId(item.get("id"));
+        }
+        StringBuilder added = new StringBuilder("["), missing = new StringBuilder("[");
+        int[] applied = new int[1];
+        engine.batch(() -> {
+            for (int i = 0; i < n; i++) {
+                if (ops[i] == TaskJournal.ADD) {
+                    if (added.length() > 1) added.append(',');
+                    added.append(engine.store.id(add(changes[i])));
+                    applied[0]++;
+                    continue;
+                }
+                int slot = engine.store.slotOf(ids[i]);
+                if (slot < 0) {
+                    if (missing.length() > 1) missing.append(',');
+                    missing.append(ids[i]);
+                    continue;
+                }
+                if (ops[i] == TaskJournal.EDIT) apply(slot, changes[i]);
+                else if (ops[i] == TaskJournal.STATUS) engine.setStatus(slot, STATUS_DONE);
+                else engine.delete(slot);
+                applied[0]++;
+            }
+        });
+        return new Reply(200, "{\"applied\":" + applied[0] + ",\"added\":" + added.append(']')
+                + ",\"missing\":" + missing.append(']') + "}");
+    }
+
+    // the helpers below expect the store lock to be held
+
+    private int add(Change c) {
+        return engine.add(c.text, c.status != null ? c.status : STATUS_PENDING,
+                c.priority != null ? c.priority : PRIORITY_MEDIUM, c.due != null ? c.due : NO_DUE);
+    }
+
+    private void apply(int slot, Change c) {
+        TaskStore s = engine.store;
+        if (c.text != null || c.priority != null || c.due != null) {
+            engine.edit(slot, c.text != null ? c.text : s.text(slot),
+                    c.priority != null ? c.priority : s.priority(slot), c.due != null ? c.due : s.due(slot));
+        }
+        if (c.status != null && c.status != s.status(slot)) engine.setStatus(slot, c.status);
+    }
+
+    private int slotOf(int id) {
+        int slot = engine.store.slotOf(id);
+        if (slot < 0) throw new ApiException(404, "No task " + id);
+        return slot;
+    }
+
+    private void writeTask(int slot, StringBuilder sb) { writeTask(engine.store, slot, true, sb); }
+
+    private static void writeTask(TaskView s, int slot, boolean withId, StringBuilder sb) {
+        sb.append('{');
+        if (withId) sb.append("\"id\":").append(s.id(slot)).append(',');
+        sb.append("\"task\":");
+        Json.quote(s.text(slot), sb);
+        sb.append(",\"status\":\"").append(s.status(slot) == STATUS_DONE ? "Done" : "Pending")
+          .append("\",\"priority\":\"").append(PRIORITY_LABELS[s.priority(slot)]).append("\",\"due\":");
+        long due = s.due(slot);
+        if (due == NO_DUE) sb.append("null");
+        else sb.append('"').append(formatDue(due)).append('"');
+        sb.append('}');
+    }
+
+    private static Change change(Object body, boolean create) {
+        Map<String, Object> m = object(body);
+        Change c = new Change();
+        Object v = m.get("task");
+        if (v != null || create) {
+            if (!(v instanceof String) || ((String) v).trim().isEmpty())
+                throw new IllegalArgumentException("task must be a non-empty string");
+            c.text = ((String) v).trim();
+        }
+        if ((v = m.get("status")) != null) {
+            if ("pending".equalsIgnoreCase(String.valueOf(v))) c.status = STATUS_PENDING;
+            else if ("done".equalsIgnoreCase(String.valueOf(v)) || STATUS_LABELS[STATUS_DONE].equals(v)) c.status = STATUS_DONE;
+            else throw new IllegalArgumentException("status must be Pending or Done");
+        }
+        if ((v = m.get("priority")) != null) {
+            byte p = parsePriority(String.valueOf(v));
+            if (p == PRIORITY_MEDIUM && !"medium".equalsIgnoreCase(String.valueOf(v)))
+                throw new IllegalArgumentException("priority must be High, Medium or Low");
+            c.priority = p;
+        }
+        if (m.containsKey("due")) {
+            v = m.get("due");
+            if (v == null || "".equals(v)) {
+                c.due = NO_DUE;
+            } else if (v instanceof Long) {
+                long ms = (Long) v; // epoch millis, within years that "yyyy-MM-dd HH:mm" can write back
+                if (ms < MIN_DUE || ms > MAX_DUE) throw new IllegalArgumentException("due out of range: " + ms);
+                c.due = truncateToMinute(ms);
+            } else {
+                c.due = parseDue(String.valueOf(v));
+                if (c.due == NO_DUE) throw new IllegalArgumentException("due must look like 2025-01-31 17:00");
+            }
+        }
+        return c;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object v) {
+        if (!(v instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) v;
+    }
+
+    private static int parseId(Object v) {
+        try {
+            return v instanceof Long ? Math.toIntExact((Long) v) : Integer.parseInt(String.valueOf(v));
+        } catch (ArithmeticException | NumberFormatException ex) {
+            throw new ApiException(404, "No task " + v);
+        }
+    }
+
+    private static int intParam(Map<String, String> params, String name, int def) {
+        String v = params.get(name);
+        if (v == null) return def;
+        try {
+            int n = Integer.parseInt(v);
+            if (n >= 0) return n;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException(name + " must be a non-negative integer");
+    }
+
+    private static Map<String, String> queryParams(HttpExchange ex) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq), v = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(k, "UTF-8"), URLDecoder.decode(v, "UTF-8"));
+        }
+        return params;
+    }
+
+    private static String body(HttpExchange ex) throws IOException {
+        String type = ex.getRequestHeaders().getFirst("Content-Type");
+        if (type == null || !type.split(";")[0].trim().equalsIgnoreCase("application/json")) {
+            throw new ApiException(415, "Content-Type must be application/json");
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] b = new byte[8192];
+            for (int n; (n = in.read(b)) > 0; ) buf.write(b, 0, n);
+        }
+        return buf.toString("UTF-8");
+    }
+
+    private static Reply error(int code, String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        Json.quote(message, sb);
+        return new Reply(code, sb.append('}').toString());
+    }
+}
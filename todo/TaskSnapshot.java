@@ -0,0 +1,20 @@
+package todo;
+
+/** The store's contents as of one publish(); never changes afterwards. */
+public final class TaskSnapshot extends TaskView {
+    public final long epoch;   // TaskStore.epoch() when published: slot numbers are only comparable within one epoch
+    public final long version; // publish count, to tell which of two snapshots is newer
+
+    TaskSnapshot(TaskPage[] pages, int slots, int liveCount, long epoch, long version) {
+        this(pages, slots, liveCount, null, epoch, version);
+    }
+
+    TaskSnapshot(TaskPage[] pages, int slots, int liveCount, int[] byId, long epoch, long version) {
+        this.byId = byId;
+        this.pages = pages;
+        this.slots = slots;
+        this.liveCount = liveCount;
+        this.epoch = epoch;
+        this.version = version;
+    }
+}
@@ -0,0 +1,195 @@
+package todo;
+
+import java.util.*;
+
+import static todo.TaskPage.*;
+
+// Tasks are kept column-wise in pages of PAGE_SIZE slots: one primitive array
+// per field plus a live bitmap. A slot keeps its number until compact(); deleting
+// a task only tombstones it, so anything keyed by slot stays valid across deletes.
+// Each task also gets an id that never changes while the process runs, for
+// clients outside the UI; re-reading the files keeps the ids of tasks found again.
+// The store has a single writer at a time: TaskEngine changes it while holding
+// the store's monitor. publish() freezes the contents as an immutable TaskSnapshot
+// that any thread can read without locking. Pages are copy-on-write: a page
+// reachable from a published snapshot is cloned before its next change, so
+// publishing costs a flag per page rather than a copy of the tasks.
+public final class TaskStore extends TaskView {
+    private boolean directoryShared; // pages[] itself belongs to the published snapshot
+    private boolean dirty;           // changed since the last publish()
+    private long epoch;              // bumped when slots are renumbered: compact(), adopt() and reset()
+    private int nextId;
+    private volatile TaskSnapshot published;
+
+    // lossy intern table: repeated descriptions share one String instance
+    private final String[] pool = new String[4096];
+
+    public TaskStore() {
+        pages = new TaskPage[4];
+        published = new TaskSnapshot(new TaskPage[0], 0, 0, 0, 0);
+    }
+
+    int add(String t, byte st, byte pr, long d) {
+        int slot = slots;
+        put(writable(slot), slot & PAGE_MASK, intern(t), st, pr, d, nextId++);
+        slots++;
+        liveCount++;
+        return slot;
+    }
+
+    /** Appends n parsed rows in one go, a page at a time. */
+    void addAll(String[] t, byte[] st, byte[] pr, long[] d, int n) {
+        for (int off = 0; off < n; ) {
+            TaskPage p = writable(slots);
+            int i = slots & PAGE_MASK, k = Math.min(n - off, PAGE_SIZE - i);
+            for (int j = 0; j < k; j++) {
+                p.text[i + j] = intern(t[off + j]);
+                p.ids[i + j] = nextId++;
+                p.live[(i + j) >>> 6] |= 1L << (i + j);
+            }
+            System.arraycopy(st, off, p.status, i, k);
+            System.arraycopy(pr, off, p.priority, i, k);
+            System.arraycopy(d, off, p.due, i, k);
+            slots += k;
+            liveCount += k;
+            off += k;
+        }
+    }
+
+    void update(int slot, String t, byte pr, long d) {
+        TaskPage p = writable(slot);
+        int i = slot & PAGE_MASK;
+        p.text[i] = intern(t);
+        p.priority[i] = pr;
+        p.due[i] = d;
+    }
+
+    void setStatus(int slot, byte st) { writable(slot).status[slot & PAGE_MASK] = st; }
+
+    void remove(int slot) {
+        if (!isLive(slot)) return;
+        TaskPage p = writable(slot);
+        int i = slot & PAGE_MASK;
+        p.live[i >>> 6] &= ~(1L << i);
+        p.text[i] = null;
+        liveCount--;
+    }
+
+    /**
+     * New slot numbers for a snapshot file written from `frozen`: the slots live in
+     * it, then every slot added since, tombstones included, keep their order and
+     * close up; the rest map to -1. Replaying the journal written since `frozen`
+     * onto that file numbers the slots the same way.
+     */
+    int[] renumbering(TaskView frozen) {
+        int[] to = new int[slots];
+        for (int s = 0, n = 0; s < slots; s++) to[s] = s >= frozen.slots || frozen.isLive(s) ? n++ : -1;
+        return to;
+    }
+
+    /** Moves every slot to its number in `renumbering` (see above) and bumps the epoch. */
+    void compact(int[] renumbering) {
+        TaskSnapshot old = new TaskSnapshot(pages, slots, liveCount, byId, epoch, -1);
+        pages = new TaskPage[Math.max(4, (liveCount >>> PAGE_SHIFT) + 1)];
+        directoryShared = false;
+        slots = 0;
+        for (int s = 0; s < old.slots; s++) {
+            if (renumbering[s] < 0) continue;
+            TaskPage p = writable(slots);
+            int i = slots++ & PAGE_MASK;
+            put(p, i, old.text(s), old.status(s), old.priority(s), old.due(s), old.id(s));
+            if (!old.isLive(s)) p.live[i >>> 6] &= ~(1L << i);
+        }
+        if (byId != null) {
+            // slots keep their order, so the ones indexed by id stay first
+            int n = 0;
+            for (int s : byId) if (renumbering[s] >= 0) n++;
+            byId = sortedById(n);
+        }
+        epoch++;
+        dirty = true;
+    }
+
+    /**
+     * Takes over the tasks of `from`, a store nothing else has seen, as a new epoch;
+     * slot s gets id ids[s], or a new one if that is -1.
+     */
+    void adopt(TaskStore from, int[] ids) {
+        pages = from.pages;
+        directoryShared = false;
+        slots = from.slots;
+        liveCount = from.liveCount;
+        for (int s = 0; s < slots; s++) pages[s >>> PAGE_SHIFT].ids[s & PAGE_MASK] = ids[s] >= 0 ? ids[s] : nextId++;
+        byId = sortedById(slots);
+        epoch++;
+        dirty = true;
+    }
+
+    // Slots 0..n-1 in id order, or null if that is their own order.
+    private int[] sortedById(int n) {
+        boolean ascending = true;
+        for (int s = 1; s < n && ascending; s++) ascending = id(s - 1) < id(s);
+        if (ascending) return null;
+        long[] keys = new long[n];
+        for (int s = 0; s < n; s++) keys[s] = (long) id(s) << 32 | s;
+        Arrays.sort(keys);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = (int) keys[i];
+        return order;
+    }
+
+    /** Goes back to the tasks of an earlier snapshot of this store, as a new epoch. */
+    void reset(TaskSnapshot to) {
+        byId = to.byId;
+        pages = to.pages;
+        directoryShared = true;
+        slots = to.slots;
+        liveCount = to.liveCount;
+        epoch++;
+        dirty = true;
+    }
+
+    public long epoch() { return epoch; }
+
+    /** Freezes the current contents for lock-free readers; the writer calls this. */
+    TaskSnapshot publish() {
+        if (!dirty) return published;
+        for (int i = 0, n = (slots + PAGE_MASK) >>> PAGE_SHIFT; i < n; i++) pages[i].shared = true;
+        directoryShared = true;
+        dirty = false;
+        return published = new TaskSnapshot(pages, slots, liveCount, byId, epoch, published.version + 1);
+    }
+
+    /** The last published snapshot; safe from any thread. */
+    public TaskSnapshot published() { return published; }
+
+    private static void put(TaskPage p, int i, String t, byte st, byte pr, long d, int id) {
+        p.text[i] = t;
+        p.status[i] = st;
+        p.priority[i] = pr;
+        p.due[i] = d;
+        p.ids[i] = id;
+        p.live[i >>> 6] |= 1L << i;
+    }
+
+    // The page holding `slot`, private to the writer: created if new, cloned if
+    // a snapshot can see it. The page directory is copied on the same terms.
+    private TaskPage writable(int slot) {
+        dirty = true;
+        int pi = slot >>> PAGE_SHIFT;
+        TaskPage p = pi < pages.length ? pages[pi] : null;
+        if (p != null && !p.shared) return p;
+        if (pi >= pages.length) pages = Arrays.copyOf(pages, Math.max(pi + 1, pages.length * 2));
+        else if (directoryShared) pages = pages.clone();
+        directoryShared = false;
+        return pages[pi] = p == null ? new TaskPage() : p.copy();
+    }
+
+    private String intern(String s) {
+        int i = s.hashCode() & (pool.length - 1);
+        String p = pool[i];
+        if (s.equals(p)) return p;
+        pool[i] = s;
+        return s;
+    }
+}
@@ -0,0 +1,132 @@
+package todo;
+
+import javax.swing.table.*;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+import static todo.Tasks.*;
+
+// Table view over a store snapshot: model row i shows slot rows[i]. The row list
+// is the filtered view produced by FilterEngine, kept in the order of its sort
+// mode (FilterEngine.compare), so a slot's row is found by binary search.
+// Used on the EDT only; cells read the snapshot, so painting never locks.
+public final class TaskTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"Task","Status","Priority","Due"};
+    private TaskSnapshot snapshot = new TaskSnapshot(new TaskPage[0], 0, 0, -1, 0);
+    private int[] rows = new int[64];
+    private int rowCount;
+    private int sort = FilterEngine.SORT_LIST;
+    // during patch(): slots still ordered by their keys in `placed` rather than the snapshot
+    private final BitSet moving = new BitSet();
+    private TaskSnapshot placed;
+
+    public TaskSnapshot snapshot() { return snapshot; }
+
+    /**
+     * Switches to another snapshot of the same epoch without moving any row; callers
+     * repaint, and re-run the query when rows may now be out of order.
+     */
+    public void setSnapshot(TaskSnapshot s) { snapshot = s; }
+
+    int sort() { return sort; }
+
+    public int slotAt(int row) { return rows[row]; }
+
+    /** The slots of all rows, in order; a copy, as patch() moves rows in place. */
+    public int[] rowSlots() { return Arrays.copyOf(rows, rowCount); }
+
+    /** Model row showing the slot, or -1 when it is filtered out. */
+    public int rowOf(int slot) {
+        TaskView keys = keysOf(slot);
+        if (!keys.isLive(slot)) return -1;
+        int i = search(slot, keys);
+        return i < 0 ? -1 : i;
+    }
+
+    /** Replaces all rows; `slots` must be ordered by the sort mode over `s`. */
+    public void setRows(TaskSnapshot s, int[] slots, int n, int sort) {
+        snapshot = s;
+        rows = slots;
+        rowCount = n;
+        this.sort = sort;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Moves to a newer snapshot of the same epoch, re-placing the given slots:
+     * each leaves the row its old keys put it in, and comes back where its new
+     * keys sort it if `visible` accepts it. A row that stays put is only updated.
+     */
+    public void patch(TaskSnapshot next, int[] slots, int n, IntPredicate visible) {
+        placed = snapshot;
+        snapshot = next;
+        for (int i = 0; i < n; i++) moving.set(slots[i]);
+        try {
+            for (int i = 0; i < n; i++) {
+                int slot = slots[i];
+                int row = rowOf(slot);
+                moving.clear(slot);
+                if (row >= 0) {
+                    System.arraycopy(rows, row + 1, rows, row, rowCount - row - 1);
+                    rowCount--;
+                }
+                if (!visible.test(slot)) {
+                    if (row >= 0) fireTableRowsDeleted(row, row);
+                    continue;
+                }
+                int at = -search(slot, next) - 1;
+                if (at < 0) continue; // already shown
+                if (rowCount == rows.length) rows = Arrays.copyOf(rows, Math.max(64, rowCount * 2));
+                System.arraycopy(rows, at, rows, at + 1, rowCount - at);
+                rows[at] = slot;
+                rowCount++;
+                if (at == row) {
+                    fireTableRowsUpdated(row, row);
+                } else {
+                    if (row >= 0) fireTableRowsDeleted(row, row);
+                    fireTableRowsInserted(at, at);
+                }
+            }
+        } finally {
+            moving.clear();
+            placed = null;
+        }
+    }
+
+    public void rowUpdated(int row) { fireTableRowsUpdated(row, row); }
+
+    // the snapshot whose keys ordered this slot's row
+    private TaskView keysOf(int slot) {
+        return placed != null && moving.get(slot) ? placed : snapshot;
+    }
+
+    private int search(int slot, TaskView keys) {
+        int lo = 0, hi = rowCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, other = rows[mid];
+            int c = FilterEngine.compare(keysOf(other), other, keys, slot, sort);
+            if (c < 0) lo = mid + 1;
+            else if (c > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    public int getRowCount() { return rowCount; }
+    public int getColumnCount() { return COLUMNS.length; }
+    public String getColumnName(int c) { return COLUMNS[c]; }
+    public Class<?> getColumnClass(int c) { return String.class; }
+    public boolean isCellEditable(int r, int c) { return false; }
+
+    public Object getValueAt(int r, int c) {
+        int slot = rows[r];
+        TaskSnapshot s = snapshot;
+        if (!s.isLive(slot)) return ""; // added or deleted after this snapshot; a refresh is queued
+        switch (c) {
+            case 0: return s.text(slot);
+            case 1: return STATUS_LABELS[s.status(slot)];
+            case 2: return PRIORITY_LABELS[s.priority(slot)];
+            default: return formatDue(s.due(slot));
+        }
+    }
+}
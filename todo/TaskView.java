@@ -0,0 +1,86 @@
+package todo;
+
+import static todo.TaskPage.*;
+
+// Read access shared by the store and its snapshots.
+public abstract class TaskView {
+    TaskPage[] pages;
+    int slots;      // slots handed out so far, live or tombstoned
+    int liveCount;
+    // Slots 0..byId.length-1 sorted by id, when re-reading the files gave new ids
+    // to tasks between ones that kept theirs; null while ids ascend with slots.
+    // Slots past these were added since, so their ids ascend and are higher.
+    int[] byId;
+
+    public final boolean isLive(int slot) {
+        return slot >= 0 && slot < slots
+                && (pages[slot >>> PAGE_SHIFT].live[(slot & PAGE_MASK) >>> 6] & (1L << slot)) != 0;
+    }
+
+    /** First live slot at or after `from`, or -1. */
+    public final int nextLive(int from) {
+        for (int s = Math.max(from, 0); s < slots; s = (s | PAGE_MASK) + 1) {
+            long[] live = pages[s >>> PAGE_SHIFT].live;
+            int w = (s & PAGE_MASK) >>> 6;
+            long word = live[w] & (-1L << s);
+            while (true) {
+                if (word != 0) {
+                    int found = (s & ~PAGE_MASK) | (w << 6) | Long.numberOfTrailingZeros(word);
+                    return found < slots ? found : -1;
+                }
+                if (++w == live.length) break;
+                word = live[w];
+            }
+        }
+        return -1;
+    }
+
+    final int slotCount() { return slots; }
+    public final int size() { return liveCount; }
+
+    public final String text(int slot) { return pages[slot >>> PAGE_SHIFT].text[slot & PAGE_MASK]; }
+    public final byte status(int slot) { return pages[slot >>> PAGE_SHIFT].status[slot & PAGE_MASK]; }
+    public final byte priority(int slot) { return pages[slot >>> PAGE_SHIFT].priority[slot & PAGE_MASK]; }
+    public final long due(int slot) { return pages[slot >>> PAGE_SHIFT].due[slot & PAGE_MASK]; }
+    final int id(int slot) { return pages[slot >>> PAGE_SHIFT].ids[slot & PAGE_MASK]; }
+
+    /**
+     * Rough heap held by these tasks: the page arrays plus the description Strings,
+     * each shared String counted about once. Walks every slot, so keep it off the EDT.
+     */
+    public final long estimatedBytes() {
+        long bytes = (long) ((slots + PAGE_MASK) >>> PAGE_SHIFT) * PAGE_BYTES;
+        String[] seen = new String[4096]; // lossy, like the store's intern pool
+        for (int s = nextLive(0); s >= 0; s = nextLive(s + 1)) {
+            String t = text(s);
+            int h = System.identityHashCode(t) & (seen.length - 1);
+            if (seen[h] == t) continue;
+            seen[h] = t;
+            bytes += 40 + t.length(); // String and its array, compact Latin-1 chars
+        }
+        return bytes;
+    }
+
+    /** Slot of the live task with the given id, or -1. */
+    final int slotOf(int id) {
+        int lo = 0, hi = slots - 1;
+        int[] b = byId;
+        if (b != null && id <= id(b[b.length - 1])) {
+            for (int l = 0, h = b.length - 1; l <= h; ) {
+                int mid = (l + h) >>> 1, v = id(b[mid]);
+                if (v < id) l = mid + 1;
+                else if (v > id) h = mid - 1;
+                else return isLive(b[mid]) ? b[mid] : -1;
+            }
+            return -1;
+        }
+        if (b != null) lo = b.length;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1, v = id(mid);
+            if (v < id) lo = mid + 1;
+            else if (v > id) hi = mid - 1;
+            else return isLive(mid) ? mid : -1;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,93 @@
+package todo;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/** The task fields' encodings, and their text in the CSV file, the table and the API. */
+public final class Tasks {
+    public static final byte STATUS_PENDING = 0, STATUS_DONE = 1;
+    public static final byte PRIORITY_HIGH = 0, PRIORITY_MEDIUM = 1, PRIORITY_LOW = 2;
+    public static final String[] STATUS_LABELS = {"Pending", "✔ Done"};
+    public static final String[] PRIORITY_LABELS = {"High", "Medium", "Low"};
+    public static final long NO_DUE = Long.MAX_VALUE; // unparseable/missing due date, never overdue
+    public static final DateTimeFormatter DUE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private Tasks() {}
+
+    public static byte parseStatus(String s) {
+        return STATUS_LABELS[STATUS_DONE].equals(s) ? STATUS_DONE : STATUS_PENDING;
+    }
+
+    public static byte parsePriority(String s) {
+        if ("High".equalsIgnoreCase(s)) return PRIORITY_HIGH;
+        if ("Low".equalsIgnoreCase(s)) return PRIORITY_LOW;
+        return PRIORITY_MEDIUM;
+    }
+
+    public static long parseDue(String s) {
+        try {
+            return LocalDateTime.parse(s.trim(), DUE_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException ex) {
+            return NO_DUE;
+        }
+    }
+
+    // Formatted due strings are cached, since the table and the CSV writer format
+    // the same timestamps over and over. Entries are immutable pairs, so threads
+    // can share the cache without locking.
+    private static final class DueText {
+        final long due;
+        final String text;
+        DueText(long due, String text) { this.due = due; this.text = text; }
+    }
+
+    private static final DueText[] dueTextCache = new DueText[4096];
+
+    public static String formatDue(long due) {
+        if (due == NO_DUE) return "";
+        int i = (int) ((due / 60_000L) & (dueTextCache.length - 1));
+        DueText e = dueTextCache[i];
+        if (e != null && e.due == due) return e.text;
+        String text = DUE_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(due), ZoneId.systemDefault()));
+        dueTextCache[i] = new DueText(due, text);
+        return text;
+    }
+
+    // due dates are stored at the same minute precision they are saved with
+    public static long truncateToMinute(long millis) { return millis - Math.floorMod(millis, 60_000L); }
+
+    public static String escapeCSV(String s) {
+        if (s == null) return "";
+        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+            s = s.replace("\"", "\"\"");
+            return "\"" + s + "\"";
+        }
+        return s;
+    }
+
+    public static String[] parseCSVLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i=0;i<line.length();i++) {
+            char ch = line.charAt(i);
+            if (inQuotes) {
+                if (ch == '"') {
+                    if (i+1 < line.length() && line.charAt(i+1) == '"') {
+                        cur.append('"'); i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                } else cur.append(ch);
+            } else {
+                if (ch == '"') inQuotes = true;
+                else if (ch == ',') { fields.add(cur.toString()); cur.setLength(0); }
+                else cur.append(ch);
+            }
+        }
+        fields.add(cur.toString());
+        return fields.toArray(new String[0]);
+    }
+}
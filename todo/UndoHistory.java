@@ -0,0 +1,153 @@
+package todo;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+import static todo.TaskPage.*;
+
+// An action is remembered as the store snapshots from just before and just after
+// it, plus the ids of the tasks it touched, found by comparing the two page by
+// page. Snapshots share every page the action left alone, so an entry costs about
+// the pages it touched; past the memory cap the oldest entries are dropped.
+// Reverting an entry writes its tasks back to their "before" state as an ordinary
+// change, and records that change on the opposite stack, so redo is the undo of
+// an undo. Entries hold ids rather than slots, as saves renumber slots.
+final class UndoHistory {
+    static final class Entry {
+        final String label;
+        final TaskSnapshot before, after;
+        final int[] ids; // in slot order
+        long bytes;      // rough heap kept alive only by this entry
+        boolean kept = true;
+
+        Entry(String label, TaskSnapshot before, TaskSnapshot after, int[] ids, long bytes) {
+            this.label = label;
+            this.before = before;
+            this.after = after;
+            this.ids = ids;
+            this.bytes = bytes;
+        }
+    }
+
+    static final int ARCHIVED = Integer.MIN_VALUE; // resolve() of a task now in the archive
+
+    private final long capBytes;
+    private final ArrayDeque<Entry> undo = new ArrayDeque<>(), redo = new ArrayDeque<>();
+    // id a task had -> the id it got when a revert added it back, or the files were re-read
+    private final Map<Integer, Integer> readded = new HashMap<>();
+    private Entry last; // most recently recorded
+    private long bytes;
+    private volatile String undoLabel, redoLabel;
+
+    UndoHistory(long capBytes) { this.capBytes = capBytes; }
+
+    /** What undo() and redo() would revert; null if nothing. Safe from any thread. */
+    String undoLabel() { return undoLabel; }
+    String redoLabel() { return redoLabel; }
+
+    /** Records a new action; whatever could be redone is forgotten. */
+    void record(String label, TaskSnapshot before, TaskSnapshot after) {
+        Entry e = entry(label, before, after);
+        if (e == null) return;
+        for (Entry r : redo) drop(r);
+        redo.clear();
+        push(undo, e);
+    }
+
+    /** Takes the next entry to undo (or redo) off its stack; null if there is none. */
+    Entry take(boolean undoing) {
+        Entry e = (undoing ? undo : redo).pollFirst();
+        if (e != null) drop(e);
+        return e;
+    }
+
+    /** Records the revert of an entry taken with take(undoing) as one for the other stack. */
+    void reverted(Entry taken, boolean undoing, TaskSnapshot before, TaskSnapshot after) {
+        Entry e = entry(taken.label, before, after);
+        if (e != null) push(undoing ? redo : undo, e);
+        else labels();
+    }
+
+    void readded(int id, int newId) {
+        if (!undo.isEmpty() || !redo.isEmpty()) readded.put(id, newId);
+    }
+
+    /** The task moved to the archive; reverting an entry leaves it there. */
+    void archived(int id) { readded(id, ARCHIVED); }
+
+    /** After the files were re-read: `newId` gives the id each task has now, by the one it had. */
+    void renamed(IntUnaryOperator newId) {
+        for (Deque<Entry> stack : Arrays.asList(undo, redo)) {
+            for (Entry e : stack) {
+                for (int id : e.ids) {
+                    int was = resolve(id), now = newId.applyAsInt(was);
+                    if (now != was) readded.put(was, now);
+                }
+            }
+        }
+    }
+
+    /** The id the task known by `id` when an entry was recorded has now. */
+    int resolve(int id) {
+        for (Integer next; (next = readded.get(id)) != null; ) id = next;
+        return id;
+    }
+
+    void clear() {
+        undo.clear();
+        redo.clear();
+        readded.clear();
+        last = null;
+        bytes = 0;
+        labels();
+    }
+
+    private Entry entry(String label, TaskSnapshot before, TaskSnapshot after) {
+        IntList ids = new IntList();
+        int pages = 0;
+        for (int p = 0, n = (after.slots + PAGE_MASK) >>> PAGE_SHIFT; p < n; p++) {
+            if (p < before.pages.length && before.pages[p] == after.pages[p]) continue;
+            pages++;
+            for (int s = p << PAGE_SHIFT, end = Math.min(after.slots, s + PAGE_SIZE); s < end; s++) {
+                if (differs(before, after, s)) ids.add(after.id(s));
+            }
+        }
+        if (ids.size == 0) return null;
+        return new Entry(label, before, after, Arrays.copyOf(ids.a, ids.size), pages * PAGE_BYTES + 4L * ids.size);
+    }
+
+    // Both snapshots are of one epoch, so a slot holds the same task in each.
+    private static boolean differs(TaskSnapshot before, TaskSnapshot after, int s) {
+        boolean was = before.isLive(s), is = after.isLive(s);
+        if (was != is) return true;
+        return is && (before.status(s) != after.status(s) || before.priority(s) != after.priority(s)
+                || before.due(s) != after.due(s) || !before.text(s).equals(after.text(s)));
+    }
+
+    private void push(ArrayDeque<Entry> stack, Entry e) {
+        // a save renumbered slots since the last entry: older entries now keep the
+        // whole previous version of the store alive, until the last of them goes
+        if (last != null && last.kept && last.after.epoch != e.before.epoch) {
+            long whole = (long) ((last.after.slots + PAGE_MASK) >>> PAGE_SHIFT) * PAGE_BYTES;
+            last.bytes += whole;
+            bytes += whole;
+        }
+        stack.addFirst(e);
+        bytes += e.bytes;
+        last = e;
+        // the newest entry stays however big it is
+        while (bytes > capBytes && undo.size() + redo.size() > 1) drop((undo.isEmpty() ? redo : undo).pollLast());
+        labels();
+    }
+
+    private void drop(Entry e) {
+        e.kept = false;
+        bytes -= e.bytes;
+    }
+
+    private void labels() {
+        undoLabel = undo.isEmpty() ? null : undo.peekFirst().label;
+        redoLabel = redo.isEmpty() ? null : redo.peekFirst().label;
+        if (undo.isEmpty() && redo.isEmpty()) readded.clear();
+    }
+}
@@ -0,0 +1,162 @@
+package todo;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.zone.ZoneRules;
+import java.util.function.IntConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static todo.Tasks.*;
+
+// Office Open XML workbook. Task text goes inline into each cell, so there is no
+// shared string table to build; only the fixed column, status and priority labels
+// are shared. A sheet holds up to SHEET_ROWS tasks, more spill onto further sheets,
+// and the workbook parts listing them are written after the last one.
+final class XlsxExport {
+    static final int SHEET_ROWS = 1_048_575; // Excel's row limit, less the header
+    private static final String NS = "http://schemas.openxmlformats.org/";
+    private static final String HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    // shared strings: column titles, then STATUS_LABELS, then PRIORITY_LABELS
+    private static final String[] SHARED = {"Task", "Status", "Priority", "Due",
+            STATUS_LABELS[0], STATUS_LABELS[1], PRIORITY_LABELS[0], PRIORITY_LABELS[1], PRIORITY_LABELS[2]};
+    private static final int STATUS_BASE = 4, PRIORITY_BASE = 6;
+    private static final int MAX_CELL = 32_767;
+    private static final long EXCEL_EPOCH_DAYS = 25_569; // 1970-01-01 as an Excel serial day
+
+    static void write(TaskView tasks, int[] slots, int n, OutputStream out, IntConsumer progress)
+            throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        zip.setLevel(Deflater.BEST_SPEED);
+        Writer w = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 1 << 16);
+        ZoneRules zone = ZoneId.systemDefault().getRules();
+        int sheets = Math.max(1, (n + SHEET_ROWS - 1) / SHEET_ROWS);
+        for (int sheet = 0, i = 0; sheet < sheets; sheet++) {
+            zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + (sheet + 1) + ".xml"));
+            w.write(HEAD + "<worksheet xmlns=\"" + NS + "spreadsheetml/2006/main\"><sheetViews>"
+                    + "<sheetView workbookViewId=\"0\"><pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\""
+                    + " state=\"frozen\"/></sheetView></sheetViews><cols><col min=\"1\" max=\"1\" width=\"60\"/>"
+                    + "<col min=\"2\" max=\"3\" width=\"10\"/><col min=\"4\" max=\"4\" width=\"17\"/></cols><sheetData>"
+                    + "<row r=\"1\"><c s=\"1\" t=\"s\"><v>0</v></c><c s=\"1\" t=\"s\"><v>1</v></c>"
+                    + "<c s=\"1\" t=\"s\"><v>2</v></c><c s=\"1\" t=\"s\"><v>3</v></c></row>");
+            for (int row = 2, end = Math.min(n, i + SHEET_ROWS); i < end; i++, row++) {
+                if (i % TaskExport.STEP == 0) progress.accept(i);
+                int s = slots[i];
+                w.write("<row r=\"");
+                w.write(Integer.toString(row));
+                w.write("\"><c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                writeText(w, tasks.text(s));
+                w.write("</t></is></c><c t=\"s\"><v>");
+                w.write(Integer.toString(STATUS_BASE + tasks.status(s)));
+                w.write("</v></c><c t=\"s\"><v>");
+                w.write(Integer.toString(PRIORITY_BASE + tasks.priority(s)));
+                w.write("</v></c>");
+                long due = tasks.due(s);
+                if (due != NO_DUE) {
+                    w.write("<c s=\"2\"><v>");
+                    writeSerial(w, due + zone.getOffset(Instant.ofEpochMilli(due)).getTotalSeconds() * 1000L);
+                    w.write("</v></c>");
+                }
+                w.write("</row>");
+            }
+            w.write("</sheetData></worksheet>");
+            w.flush();
+            zip.closeEntry();
+        }
+        progress.accept(n);
+        writeParts(zip, w, sheets);
+        zip.finish();
+    }
+
+    private static void writeParts(ZipOutputStream zip, Writer w, int sheets) throws IOException {
+        StringBuilder types = new StringBuilder(HEAD).append("<Types xmlns=\"").append(NS)
+                .append("package/2006/content-types\"><Default Extension=\"rels\" ContentType=\"application/")
+                .append("vnd.openxmlformats-package.relationships+xml\"/><Default Extension=\"xml\"")
+                .append(" ContentType=\"application/xml\"/>");
+        String ml = "application/vnd.openxmlformats-officedocument.spreadsheetml.";
+        types.append("<Override PartName=\"/xl/workbook.xml\" ContentType=\"").append(ml).append("sheet.main+xml\"/>")
+                .append("<Override PartName=\"/xl/styles.xml\" ContentType=\"").append(ml).append("styles+xml\"/>")
+                .append("<Override PartName=\"/xl/sharedStrings.xml\" ContentType=\"").append(ml)
+                .append("sharedStrings+xml\"/>");
+        StringBuilder book = new StringBuilder(HEAD).append("<workbook xmlns=\"").append(NS)
+                .append("spreadsheetml/2006/main\" xmlns:r=\"").append(NS)
+                .append("officeDocument/2006/relationships\"><sheets>");
+        StringBuilder rels = new StringBuilder(HEAD).append("<Relationships xmlns=\"").append(NS)
+                .append("package/2006/relationships\">");
+        String rel = NS + "officeDocument/2006/relationships/";
+        for (int i = 1; i <= sheets; i++) {
+            types.append("<Override PartName=\"/xl/worksheets/sheet").append(i).append(".xml\" ContentType=\"")
+                    .append(ml).append("worksheet+xml\"/>");
+            book.append("<sheet name=\"Tasks").append(i == 1 ? "" : " " + i).append("\" sheetId=\"").append(i)
+                    .append("\" r:id=\"rId").append(i).append("\"/>");
+            rels.append("<Relationship Id=\"rId").append(i).append("\" Type=\"").append(rel)
+                    .append("worksheet\" Target=\"worksheets/sheet").append(i).append(".xml\"/>");
+        }
+        rels.append("<Relationship Id=\"rId").append(sheets + 1).append("\" Type=\"").append(rel)
+                .append("styles\" Target=\"styles.xml\"/><Relationship Id=\"rId").append(sheets + 2)
+                .append("\" Type=\"").append(rel).append("sharedStrings\" Target=\"sharedStrings.xml\"/>");
+        StringBuilder shared = new StringBuilder(HEAD).append("<sst xmlns=\"").append(NS)
+                .append("spreadsheetml/2006/main\" count=\"").append(SHARED.length).append("\" uniqueCount=\"")
+                .append(SHARED.length).append("\">");
+        for (String s : SHARED) shared.append("<si><t>").append(s).append("</t></si>");
+
+        entry(zip, w, "[Content_Types].xml", types.append("</Types>"));
+        entry(zip, w, "_rels/.rels", new StringBuilder(HEAD).append("<Relationships xmlns=\"").append(NS)
+                .append("package/2006/relationships\"><Relationship Id=\"rId1\" Type=\"").append(rel)
+                .append("officeDocument\" Target=\"xl/workbook.xml\"/></Relationships>"));
+        entry(zip, w, "xl/workbook.xml", book.append("</sheets></workbook>"));
+        entry(zip, w, "xl/_rels/workbook.xml.rels", rels.append("</Relationships>"));
+        entry(zip, w, "xl/sharedStrings.xml", shared.append("</sst>"));
+        // cell styles: 0 plain, 1 bold header, 2 date and time
+        entry(zip, w, "xl/styles.xml", new StringBuilder(HEAD).append("<styleSheet xmlns=\"").append(NS)
+                .append("spreadsheetml/2006/main\"><numFmts count=\"1\"><numFmt numFmtId=\"164\"")
+                .append(" formatCode=\"yyyy-mm-dd hh:mm\"/></numFmts><fonts count=\"2\"><font><sz val=\"11\"/>")
+                .append("<name val=\"Calibri\"/></font><font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font>")
+                .append("</fonts><fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill>")
+                .append("<patternFill patternType=\"gray125\"/></fill></fills><borders count=\"1\"><border>")
+                .append("<left/><right/><top/><bottom/><diagonal/></border></borders><cellStyleXfs count=\"1\">")
+                .append("<xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>")
+                .append("<cellXfs count=\"3\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>")
+                .append("<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/>")
+                .append("<xf numFmtId=\"164\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"")
+                .append(" applyNumberFormat=\"1\"/></cellXfs></styleSheet>"));
+    }
+
+    private static void entry(ZipOutputStream zip, Writer w, String name, CharSequence xml) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        w.append(xml);
+        w.flush();
+        zip.closeEntry();
+    }
+
+    // XML-escapes text, dropping characters XML 1.0 cannot carry, up to Excel's cell limit.
+    private static void writeText(Writer w, String s) throws IOException {
+        int end = Math.min(s.length(), MAX_CELL), from = 0;
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            String esc;
+            if (c == '&') esc = "&amp;";
+            else if (c == '<') esc = "&lt;";
+            else if (c == '>') esc = "&gt;";
+            else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || c == 0xFFFE || c == 0xFFFF) esc = "";
+            else continue;
+            w.write(s, from, i - from);
+            w.write(esc);
+            from = i + 1;
+        }
+        w.write(s, from, end - from);
+    }
+
+    // Local wall-clock millis as an Excel date serial, to the millisecond.
+    private static void writeSerial(Writer w, long localMillis) throws IOException {
+        long days = Math.floorDiv(localMillis, 86_400_000L);
+        long millis = Math.floorMod(localMillis, 86_400_000L);
+        w.write(Long.toString(EXCEL_EPOCH_DAYS + days));
+        if (millis == 0) return;
+        String frac = Long.toString(100_000_000L + millis * 100_000_000L / 86_400_000L);
+        w.write('.');
+        w.write(frac, 1, 8);
+    }
+}